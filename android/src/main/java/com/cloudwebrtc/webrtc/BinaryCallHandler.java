@@ -0,0 +1,159 @@
+package com.cloudwebrtc.webrtc;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.AnyThreadResult;
+import com.cloudwebrtc.webrtc.utils.BinaryCallCodec;
+
+import org.webrtc.IceCandidate;
+
+import java.nio.ByteBuffer;
+
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Handles the high-frequency calls sent on the {@code FlutterWebRTC.BinaryMethod} channel.
+ *
+ * Arguments are decoded straight from the message buffer with {@link BinaryCallCodec} instead of
+ * being unpacked from maps, then the calls run through the same dispatcher and implementation as
+ * their {@code FlutterWebRTC.Method} counterparts.
+ */
+class BinaryCallHandler implements BasicMessageChannel.MessageHandler<ByteBuffer> {
+  private static final String TAG = "BinaryCallHandler";
+
+  private final MethodCallHandlerImpl handler;
+
+  BinaryCallHandler(MethodCallHandlerImpl handler) {
+    this.handler = handler;
+  }
+
+  @Override
+  public void onMessage(@Nullable ByteBuffer message, @NonNull BasicMessageChannel.Reply<ByteBuffer> reply) {
+    final Result result = new AnyThreadResult(new BinaryReply(reply));
+    if (message == null || !message.hasRemaining()) {
+      result.error("binaryCall", "Empty message", null);
+      return;
+    }
+    try {
+      handle(new BinaryCallCodec.Reader(message), result);
+    } catch (RuntimeException e) {
+      Log.e(TAG, "Malformed binary call", e);
+      result.error("binaryCall", "Malformed message: " + e.getMessage(), null);
+    }
+  }
+
+  private void handle(BinaryCallCodec.Reader reader, Result result) {
+    byte opcode = reader.readByte();
+    switch (opcode) {
+      case BinaryCallCodec.OP_ADD_CANDIDATE: {
+        final String peerConnectionId = reader.readString();
+        final String sdp = reader.readString();
+        final String sdpMid = reader.readNullableString();
+        final int sdpMLineIndex = reader.readInt();
+        handler.dispatch("addCandidate", peerConnectionId, result, () ->
+            handler.peerConnectionAddICECandidate(
+                new IceCandidate(sdpMid, sdpMLineIndex, sdp), peerConnectionId, result));
+        break;
+      }
+      case BinaryCallCodec.OP_DATA_CHANNEL_SEND: {
+        final String peerConnectionId = reader.readString();
+        final String dataChannelId = reader.readString();
+        final boolean isBinary = reader.readBoolean();
+        final ByteBuffer data = reader.readBytes();
+        handler.dispatch("dataChannelSend", peerConnectionId, result, () -> {
+          handler.dataChannelSend(peerConnectionId, dataChannelId, data, isBinary);
+          result.success(null);
+        });
+        break;
+      }
+      case BinaryCallCodec.OP_TRACK_SET_ENABLED: {
+        final String trackId = reader.readString();
+        final String peerConnectionId = reader.readNullableString();
+        final boolean enabled = reader.readBoolean();
+        handler.dispatch("mediaStreamTrackSetEnable", peerConnectionId, result, () -> {
+          handler.mediaStreamTrackSetEnabled(trackId, enabled, peerConnectionId);
+          result.success(null);
+        });
+        break;
+      }
+      case BinaryCallCodec.OP_TRACK_SET_VOLUME: {
+        final String trackId = reader.readString();
+        final String peerConnectionId = reader.readNullableString();
+        final double volume = reader.readDouble();
+        handler.dispatch("setVolume", peerConnectionId, result, () -> {
+          handler.mediaStreamTrackSetVolume(trackId, volume, peerConnectionId);
+          result.success(null);
+        });
+        break;
+      }
+      case BinaryCallCodec.OP_RENDERER_SET_VSYNC_PACED: {
+        FlutterRTCVideoRenderer renderer = getRenderer(reader.readVarint(), result);
+        if (renderer != null) {
+          renderer.setVsyncPaced(reader.readBoolean(), handler.getDisplayRefreshRate());
+          result.success(null);
+        }
+        break;
+      }
+      case BinaryCallCodec.OP_RENDERER_SET_NIGHT_VISION: {
+        FlutterRTCVideoRenderer renderer = getRenderer(reader.readVarint(), result);
+        if (renderer != null) {
+          if (reader.readBoolean()) {
+            renderer.enableNightVision(FlutterRTCVideoRenderer.DEFAULT_NIGHT_VISION_INTENSITY);
+          } else {
+            renderer.disableNightVision();
+          }
+          result.success(null);
+        }
+        break;
+      }
+      case BinaryCallCodec.OP_RENDERER_SET_NIGHT_VISION_INTENSITY: {
+        FlutterRTCVideoRenderer renderer = getRenderer(reader.readVarint(), result);
+        if (renderer != null) {
+          renderer.setNightVisionIntensity((float) reader.readDouble());
+          result.success(null);
+        }
+        break;
+      }
+      default:
+        result.notImplemented();
+        break;
+    }
+  }
+
+  /** Renderer calls arrive on the main thread, where renderers live. */
+  @Nullable
+  private FlutterRTCVideoRenderer getRenderer(long textureId, Result result) {
+    FlutterRTCVideoRenderer renderer = handler.getRenderer(textureId);
+    if (renderer == null) {
+      result.error("binaryCall", "Renderer not found", null);
+    }
+    return renderer;
+  }
+
+  private static class BinaryReply implements Result {
+    private final BasicMessageChannel.Reply<ByteBuffer> reply;
+
+    BinaryReply(BasicMessageChannel.Reply<ByteBuffer> reply) {
+      this.reply = reply;
+    }
+
+    @Override
+    public void success(@Nullable Object value) {
+      reply.reply(BinaryCallCodec.encodeReply(value));
+    }
+
+    @Override
+    public void error(@NonNull String code, @Nullable String message, @Nullable Object details) {
+      reply.reply(BinaryCallCodec.encodeError(code, message));
+    }
+
+    @Override
+    public void notImplemented() {
+      reply.reply(null);
+    }
+  }
+}
@@ -0,0 +1,155 @@
+package com.cloudwebrtc.webrtc;
+
+import org.webrtc.CapturerObserver;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoSource;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Opens a physical camera once and fans its frames out to the {@link VideoSource} of every
+ * track using it, so a preview and a send track at different resolutions share one capture
+ * session. The camera runs at the largest format any output asks for. While more than one
+ * output is attached, each source is adapted to its own format with
+ * {@link VideoSource#adaptOutputFormat}; camera frames are texture buffers, so that scaling
+ * is a crop/scale transform applied on the GPU when the frame is drawn or encoded, not a copy.
+ */
+class CameraCaptureHub implements CapturerObserver {
+    static class Output {
+        final VideoSource videoSource;
+        final int width;
+        final int height;
+        final int fps;
+
+        Output(VideoSource videoSource, int width, int height, int fps) {
+            this.videoSource = videoSource;
+            this.width = width;
+            this.height = height;
+            this.fps = fps;
+        }
+    }
+
+    volatile String deviceId;
+    volatile boolean frontFacing;
+    final VideoCapturer capturer;
+    final CameraEventsHandler cameraEventsHandler;
+    final SurfaceTextureHelper surfaceTextureHelper;
+    private final List<Output> outputs = new CopyOnWriteArrayList<>();
+    private volatile boolean started = false;
+
+    CameraCaptureHub(String deviceId, boolean frontFacing, VideoCapturer capturer,
+            CameraEventsHandler cameraEventsHandler, SurfaceTextureHelper surfaceTextureHelper) {
+        this.deviceId = deviceId;
+        this.frontFacing = frontFacing;
+        this.capturer = capturer;
+        this.cameraEventsHandler = cameraEventsHandler;
+        this.surfaceTextureHelper = surfaceTextureHelper;
+    }
+
+    boolean matches(String sourceId, boolean isFacing) {
+        if (sourceId != null && !sourceId.isEmpty()) {
+            return sourceId.equals(deviceId);
+        }
+        return frontFacing == isFacing;
+    }
+
+    /**
+     * Attaches {@code videoSource}. Returns true if the camera format has to grow to serve it,
+     * in which case the caller applies {@link #getCaptureFormat}.
+     */
+    synchronized boolean addOutput(VideoSource videoSource, int width, int height, int fps) {
+        int[] before = getCaptureFormat();
+        outputs.add(new Output(videoSource, width, height, fps));
+        if (started) {
+            videoSource.getCapturerObserver().onCapturerStarted(true);
+        }
+        adaptOutputs();
+        int[] after = getCaptureFormat();
+        return after[0] * after[1] > before[0] * before[1] || after[2] > before[2];
+    }
+
+    /**
+     * Detaches {@code videoSource} and returns the number of outputs left. Returns true through
+     * {@code formatChanged[0]} if the camera can drop to a smaller format.
+     */
+    synchronized int removeOutput(VideoSource videoSource, boolean[] formatChanged) {
+        int[] before = getCaptureFormat();
+        for (Output output : outputs) {
+            if (output.videoSource == videoSource) {
+                outputs.remove(output);
+                videoSource.getCapturerObserver().onCapturerStopped();
+                break;
+            }
+        }
+        if (!outputs.isEmpty()) {
+            adaptOutputs();
+            int[] after = getCaptureFormat();
+            formatChanged[0] = after[0] * after[1] < before[0] * before[1] || after[2] < before[2];
+        }
+        return outputs.size();
+    }
+
+    /** Records a new requested format for an attached output. */
+    synchronized void updateOutput(VideoSource videoSource, int width, int height, int fps) {
+        for (int i = 0; i < outputs.size(); i++) {
+            if (outputs.get(i).videoSource == videoSource) {
+                outputs.set(i, new Output(videoSource, width, height, fps));
+            }
+        }
+        adaptOutputs();
+    }
+
+    synchronized int getOutputCount() {
+        return outputs.size();
+    }
+
+    /** Width, height and frame rate covering every output. */
+    synchronized int[] getCaptureFormat() {
+        int width = 0;
+        int height = 0;
+        int fps = 0;
+        for (Output output : outputs) {
+            if (output.width * output.height > width * height) {
+                width = output.width;
+                height = output.height;
+            }
+            fps = Math.max(fps, output.fps);
+        }
+        return new int[] {width, height, fps};
+    }
+
+    private void adaptOutputs() {
+        if (outputs.size() < 2) {
+            return;
+        }
+        for (Output output : outputs) {
+            output.videoSource.adaptOutputFormat(output.width, output.height, output.fps);
+        }
+    }
+
+    @Override
+    public void onCapturerStarted(boolean success) {
+        started = success;
+        for (Output output : outputs) {
+            output.videoSource.getCapturerObserver().onCapturerStarted(success);
+        }
+    }
+
+    @Override
+    public void onCapturerStopped() {
+        started = false;
+        for (Output output : outputs) {
+            output.videoSource.getCapturerObserver().onCapturerStopped();
+        }
+    }
+
+    @Override
+    public void onFrameCaptured(VideoFrame frame) {
+        for (Output output : outputs) {
+            output.videoSource.getCapturerObserver().onFrameCaptured(frame);
+        }
+    }
+}
@@ -1,9 +1,29 @@
 package com.cloudwebrtc.webrtc;
 
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
 import org.webrtc.CameraVideoCapturer;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the state of one camera capturer and completes the listeners waiting for it to open
+ * or close. The capturer callbacks arrive on the camera thread, so nothing here blocks the
+ * caller: {@link #whenOpened} and {@link #whenClosed} run their listener as soon as the state is
+ * reached (or immediately if it already was). The time from {@link #markOpenRequested} to the
+ * first frame and from {@link #markCloseRequested} to the close callback is recorded.
+ */
 class CameraEventsHandler implements CameraVideoCapturer.CameraEventsHandler {
     public enum CameraState {
         NEW,
@@ -14,28 +34,156 @@ class CameraEventsHandler implements CameraVideoCapturer.CameraEventsHandler {
         ERROR,
         FREEZED
     }
+
+    /** Receives the outcome of an open or close, {@code error} is null on success. */
+    interface Listener {
+        void onComplete(@Nullable String error);
+    }
+
     private final static String TAG = FlutterWebRTCPlugin.TAG;
-    private CameraState state = CameraState.NEW;
-
-    public void waitForCameraOpen() {
-        Log.d(TAG, "CameraEventsHandler.waitForCameraOpen");
-        while (state != CameraState.OPENED && state != CameraState.ERROR) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+    // libwebrtc reports open failures itself (CameraCapturer times out after 10 s), but a stop
+    // issued while no session exists never produces onCameraClosed.
+    private static final long CLOSE_TIMEOUT_MS = 3000;
+    private static final Handler timeoutHandler = new Handler(Looper.getMainLooper());
+
+    private volatile CameraState state = CameraState.NEW;
+    private final List<Listener> openListeners = new ArrayList<>();
+    private final List<Listener> closeListeners = new ArrayList<>();
+    private final CountDownLatch closedLatch = new CountDownLatch(1);
+    @Nullable
+    private String lastError;
+    private long openRequestedMs = -1;
+    private long closeRequestedMs = -1;
+    private long openLatencyMs = -1;
+    private long closeLatencyMs = -1;
+
+    CameraState getState() {
+        return state;
+    }
+
+    /** Called right before {@code startCapture}. */
+    synchronized void markOpenRequested() {
+        openRequestedMs = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Called right after {@code stopCapture}. A camera that never opened, or already closed or
+     * failed, completes the close listeners right away.
+     */
+    void markCloseRequested() {
+        synchronized (this) {
+            closeRequestedMs = SystemClock.elapsedRealtime();
+        }
+        if (state == CameraState.NEW || state == CameraState.CLOSED || state == CameraState.ERROR) {
+            completeClose(lastError);
+            return;
+        }
+        timeoutHandler.postDelayed(() -> {
+            if (closedLatch.getCount() > 0) {
+                Log.w(TAG, "CameraEventsHandler: no close callback within " + CLOSE_TIMEOUT_MS + " ms");
+                completeClose("Camera did not report closing in time");
+            }
+        }, CLOSE_TIMEOUT_MS);
+    }
+
+    /** Runs {@code listener} once the first frame arrives or opening fails. */
+    void whenOpened(Listener listener) {
+        synchronized (this) {
+            if (state != CameraState.OPENED && state != CameraState.ERROR) {
+                openListeners.add(listener);
+                return;
+            }
+        }
+        listener.onComplete(state == CameraState.ERROR ? lastError : null);
+    }
+
+    /** Runs {@code listener} once the camera has closed (or failed). */
+    void whenClosed(Listener listener) {
+        synchronized (this) {
+            if (closedLatch.getCount() > 0) {
+                closeListeners.add(listener);
+                return;
+            }
+        }
+        listener.onComplete(lastError);
+    }
+
+    /**
+     * Waits up to {@code timeoutMs} for the camera to close. Only for callers that are off the
+     * main thread and must not reuse the camera before it is released.
+     */
+    boolean awaitClosed(long timeoutMs) {
+        try {
+            return closedLatch.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    synchronized boolean isClosing() {
+        return closeRequestedMs >= 0 && closedLatch.getCount() > 0;
+    }
+
+    private synchronized boolean isCloseRequested() {
+        return closeRequestedMs >= 0;
+    }
+
+    synchronized long getOpenLatencyMs() {
+        return openLatencyMs;
+    }
+
+    synchronized long getCloseLatencyMs() {
+        return closeLatencyMs;
+    }
+
+    synchronized ConstraintsMap toConstraintsMap() {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putString("state", state.name().toLowerCase(Locale.ROOT));
+        if (openLatencyMs >= 0) {
+            params.putLong("openLatencyMs", openLatencyMs);
+        }
+        if (closeLatencyMs >= 0) {
+            params.putLong("closeLatencyMs", closeLatencyMs);
+        }
+        if (lastError != null) {
+            params.putString("error", lastError);
+        }
+        return params;
+    }
+
+    private void completeOpen(@Nullable String error) {
+        List<Listener> listeners;
+        synchronized (this) {
+            if (error == null && openRequestedMs >= 0) {
+                openLatencyMs = SystemClock.elapsedRealtime() - openRequestedMs;
+                openRequestedMs = -1;
+                Log.d(TAG, "CameraEventsHandler: camera opened in " + openLatencyMs + " ms");
             }
+            listeners = new ArrayList<>(openListeners);
+            openListeners.clear();
+        }
+        for (Listener listener : listeners) {
+            listener.onComplete(error);
         }
     }
 
-    public void waitForCameraClosed() {
-        Log.d(TAG, "CameraEventsHandler.waitForCameraClosed");
-        while (state != CameraState.CLOSED && state != CameraState.ERROR) {
-            try {
-                Thread.sleep(1);
-            } catch (InterruptedException e) {
-                e.printStackTrace();
+    private void completeClose(@Nullable String error) {
+        List<Listener> listeners;
+        synchronized (this) {
+            if (closedLatch.getCount() == 0) {
+                return;
             }
+            if (closeRequestedMs >= 0) {
+                closeLatencyMs = SystemClock.elapsedRealtime() - closeRequestedMs;
+                Log.d(TAG, "CameraEventsHandler: camera closed in " + closeLatencyMs + " ms");
+            }
+            closedLatch.countDown();
+            listeners = new ArrayList<>(closeListeners);
+            closeListeners.clear();
+        }
+        for (Listener listener : listeners) {
+            listener.onComplete(error);
         }
     }
 
@@ -44,7 +192,14 @@ class CameraEventsHandler implements CameraVideoCapturer.CameraEventsHandler {
     @Override
     public void onCameraError(String errorDescription) {
         Log.d(TAG, String.format("CameraEventsHandler.onCameraError: errorDescription=%s", errorDescription));
-        state = CameraState.ERROR;
+        synchronized (this) {
+            lastError = errorDescription;
+            state = CameraState.ERROR;
+        }
+        completeOpen(errorDescription);
+        if (isCloseRequested()) {
+            completeClose(errorDescription);
+        }
     }
 
     // Called when camera is disconnected.
@@ -73,12 +228,17 @@ class CameraEventsHandler implements CameraVideoCapturer.CameraEventsHandler {
     public void onFirstFrameAvailable() {
         Log.d(TAG, "CameraEventsHandler.onFirstFrameAvailable");
         state = CameraState.OPENED;
+        completeOpen(null);
     }
 
     // Callback invoked when camera closed.
     @Override
     public void onCameraClosed() {
-        Log.d(TAG, "CameraEventsHandler.onFirstFrameAvailable");
+        Log.d(TAG, "CameraEventsHandler.onCameraClosed");
         state = CameraState.CLOSED;
+        // Switching cameras closes the previous session too, only a requested stop completes.
+        if (isCloseRequested()) {
+            completeClose(null);
+        }
     }
 }
@@ -0,0 +1,229 @@
+package com.cloudwebrtc.webrtc;
+
+import android.content.Context;
+import android.hardware.camera2.CameraManager;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.EglUtils;
+
+import org.webrtc.Camera1Enumerator;
+import org.webrtc.Camera1Helper;
+import org.webrtc.Camera2Enumerator;
+import org.webrtc.Camera2Helper;
+import org.webrtc.CameraEnumerator;
+import org.webrtc.Size;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoSource;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps what {@code getUserVideo} otherwise rebuilds for every camera start: the camera
+ * enumerator, the facing and closest capture format of each device, a spare
+ * {@link SurfaceTextureHelper} with its thread and EGL context already created and, after
+ * {@code prewarmCamera} with {@code open}, a camera session that is already delivering frames.
+ */
+class CameraPrewarmer {
+    private final static String TAG = FlutterWebRTCPlugin.TAG;
+
+    /** A started camera waiting to be adopted by the next matching {@code getUserMedia}. */
+    static class WarmSession {
+        final GetUserMediaImpl.VideoCapturerInfoEx info;
+        final boolean frontFacing;
+        final VideoSource videoSource;
+        final SurfaceTextureHelper surfaceTextureHelper;
+
+        WarmSession(GetUserMediaImpl.VideoCapturerInfoEx info, boolean frontFacing,
+                VideoSource videoSource, SurfaceTextureHelper surfaceTextureHelper) {
+            this.info = info;
+            this.frontFacing = frontFacing;
+            this.videoSource = videoSource;
+            this.surfaceTextureHelper = surfaceTextureHelper;
+        }
+
+        boolean matches(@Nullable String sourceId, boolean isFacing) {
+            if (sourceId != null && !sourceId.isEmpty()) {
+                return sourceId.equals(info.cameraName);
+            }
+            return frontFacing == isFacing;
+        }
+    }
+
+    private final Context applicationContext;
+    @Nullable
+    private CameraEnumerator enumerator;
+    private final Map<String, Boolean> frontFacing = new ConcurrentHashMap<>();
+    private final Map<String, Size> closestFormats = new ConcurrentHashMap<>();
+    @Nullable
+    private SurfaceTextureHelper spareHelper;
+    private boolean keepSpareHelper = false;
+    @Nullable
+    private WarmSession session;
+
+    CameraPrewarmer(Context applicationContext) {
+        this.applicationContext = applicationContext;
+    }
+
+    synchronized CameraEnumerator getEnumerator() {
+        if (enumerator == null) {
+            if (Camera2Enumerator.isSupported(applicationContext)) {
+                Log.d(TAG, "Creating video capturer using Camera2 API.");
+                enumerator = new Camera2Enumerator(applicationContext);
+            } else {
+                Log.d(TAG, "Creating video capturer using Camera1 API.");
+                enumerator = new Camera1Enumerator(false);
+            }
+        }
+        return enumerator;
+    }
+
+    boolean isFrontFacing(String deviceId) {
+        Boolean front = frontFacing.get(deviceId);
+        if (front == null) {
+            front = getEnumerator().isFrontFacing(deviceId);
+            frontFacing.put(deviceId, front);
+        }
+        return front;
+    }
+
+    boolean isBackFacing(String deviceId) {
+        return getEnumerator().isBackFacing(deviceId);
+    }
+
+    /** Same selection as {@code createVideoCapturer}, without creating a capturer. */
+    @Nullable
+    String resolveDeviceId(@Nullable String sourceId, boolean isFacing) {
+        String[] deviceNames = getEnumerator().getDeviceNames();
+        if (sourceId != null && !sourceId.isEmpty()) {
+            for (String name : deviceNames) {
+                if (name.equals(sourceId)) {
+                    return name;
+                }
+            }
+        }
+        for (String name : deviceNames) {
+            if (isFrontFacing(name) == isFacing) {
+                return name;
+            }
+        }
+        return deviceNames.length > 0 ? deviceNames[0] : null;
+    }
+
+    @Nullable
+    Size findClosestCaptureFormat(String deviceId, int width, int height) {
+        String key = deviceId + ":" + width + "x" + height;
+        Size size = closestFormats.get(key);
+        if (size != null) {
+            return size;
+        }
+        if (getEnumerator() instanceof Camera2Enumerator) {
+            CameraManager cameraManager =
+                    (CameraManager) applicationContext.getSystemService(Context.CAMERA_SERVICE);
+            size = Camera2Helper.findClosestCaptureFormat(cameraManager, deviceId, width, height);
+        } else {
+            size = Camera1Helper.findClosestCaptureFormat(
+                    Camera1Helper.getCameraId(deviceId), width, height);
+        }
+        if (size != null) {
+            closestFormats.put(key, size);
+        }
+        return size;
+    }
+
+    /** Creates the spare helper if there is none and keeps one ready after each take. */
+    void warmSurfaceTextureHelper() {
+        synchronized (this) {
+            keepSpareHelper = true;
+            if (spareHelper != null) {
+                return;
+            }
+        }
+        SurfaceTextureHelper helper = SurfaceTextureHelper.create(
+                "prewarmed_texture_camera_thread", EglUtils.getRootEglBaseContext());
+        synchronized (this) {
+            if (spareHelper == null && keepSpareHelper) {
+                spareHelper = helper;
+                return;
+            }
+        }
+        if (helper != null) {
+            helper.dispose();
+        }
+    }
+
+    /** Hands out the spare helper, or creates one named {@code threadName} if none is ready. */
+    @Nullable
+    SurfaceTextureHelper takeSurfaceTextureHelper(String threadName) {
+        SurfaceTextureHelper helper;
+        synchronized (this) {
+            helper = spareHelper;
+            spareHelper = null;
+        }
+        if (helper != null) {
+            return helper;
+        }
+        return SurfaceTextureHelper.create(threadName, EglUtils.getRootEglBaseContext());
+    }
+
+    synchronized boolean shouldKeepSpareHelper() {
+        return keepSpareHelper && spareHelper == null;
+    }
+
+    /** Stores {@code warmSession} and returns the session it replaces, if any. */
+    @Nullable
+    synchronized WarmSession putSession(WarmSession warmSession) {
+        WarmSession previous = session;
+        session = warmSession;
+        return previous;
+    }
+
+    @Nullable
+    synchronized WarmSession takeSession(@Nullable String sourceId, boolean isFacing) {
+        if (session == null || !session.matches(sourceId, isFacing)) {
+            return null;
+        }
+        WarmSession taken = session;
+        session = null;
+        return taken;
+    }
+
+    /** Removes {@code expected} if it is still the stored session. */
+    synchronized boolean removeSession(WarmSession expected) {
+        if (session != expected) {
+            return false;
+        }
+        session = null;
+        return true;
+    }
+
+    synchronized boolean hasSession() {
+        return session != null;
+    }
+
+    /**
+     * Drops the cached state and returns the stored session for the caller to stop. The
+     * spare helper is disposed here.
+     */
+    @Nullable
+    WarmSession clear() {
+        SurfaceTextureHelper helper;
+        WarmSession warmSession;
+        synchronized (this) {
+            helper = spareHelper;
+            spareHelper = null;
+            keepSpareHelper = false;
+            warmSession = session;
+            session = null;
+            enumerator = null;
+        }
+        frontFacing.clear();
+        closestFormats.clear();
+        if (helper != null) {
+            helper.dispose();
+        }
+        return warmSession;
+    }
+}
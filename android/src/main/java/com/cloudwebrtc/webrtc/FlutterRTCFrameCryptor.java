@@ -13,7 +13,10 @@ import org.webrtc.RtpSender;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import io.flutter.plugin.common.BinaryMessenger;
@@ -105,6 +108,10 @@ public class FlutterRTCFrameCryptor {
     private final Map<String, FrameCryptor> frameCryptos = new HashMap<>();
     private final Map<String, FrameCryptorStateObserver> frameCryptoObservers = new HashMap<>();
     private final Map<String, FrameCryptorKeyProvider> keyProviders = new HashMap<>();
+    // Participants known per key provider and per frame cryptor, used by the batch calls.
+    private final Map<String, Set<String>> keyProviderParticipants = new HashMap<>();
+    private final Map<String, String> frameCryptorParticipants = new HashMap<>();
+
     private final StateProvider stateProvider;
     public FlutterRTCFrameCryptor(StateProvider stateProvider) {
         this.stateProvider = stateProvider;
@@ -142,6 +149,12 @@ public class FlutterRTCFrameCryptor {
             keyProviderSetSifTrailer(params, result);
           } else if (method_name.equals("keyProviderDispose")) {
             keyProviderDispose(params, result);
+          } else if (method_name.equals("keyProviderSetKeys")) {
+            keyProviderSetKeys(params, result);
+          } else if (method_name.equals("keyProviderRatchetKeys")) {
+            keyProviderRatchetKeys(params, result);
+          } else if (method_name.equals("frameCryptorSetKeyIndexes")) {
+            frameCryptorSetKeyIndexes(params, result);
           } else  {
             return false;
           }
@@ -186,6 +199,8 @@ public class FlutterRTCFrameCryptor {
                     keyProvider);
             String frameCryptorId = UUID.randomUUID().toString();
             frameCryptos.put(frameCryptorId, frameCryptor);
+            frameCryptorParticipants.put(frameCryptorId, participantId);
+            addParticipant(keyProviderId, participantId);
             FrameCryptorStateObserver observer = new FrameCryptorStateObserver(stateProvider.getMessenger(), frameCryptorId);
             frameCryptor.setObserver(observer);
             frameCryptoObservers.put(frameCryptorId, observer);
@@ -202,6 +217,8 @@ public class FlutterRTCFrameCryptor {
                     keyProvider);
             String frameCryptorId = UUID.randomUUID().toString();
             frameCryptos.put(frameCryptorId, frameCryptor);
+            frameCryptorParticipants.put(frameCryptorId, participantId);
+            addParticipant(keyProviderId, participantId);
             FrameCryptorStateObserver observer = new FrameCryptorStateObserver(stateProvider.getMessenger(), frameCryptorId);
             frameCryptor.setObserver(observer);
             frameCryptoObservers.put(frameCryptorId, observer);
@@ -279,6 +296,7 @@ public class FlutterRTCFrameCryptor {
         frameCryptor.dispose();
         frameCryptos.remove(frameCryptorId);
         frameCryptoObservers.remove(frameCryptorId);
+        frameCryptorParticipants.remove(frameCryptorId);
         ConstraintsMap paramsResult = new ConstraintsMap();
         paramsResult.putString("result", "success");
         result.success(paramsResult.toMap());
@@ -363,6 +381,7 @@ public class FlutterRTCFrameCryptor {
         String participantId = (String) params.get("participantId");
         byte[] key = ( byte[]) params.get("key");
         keyProvider.setKey(participantId, keyIndex, key);
+        addParticipant(keyProviderId, participantId);
 
         ConstraintsMap paramsResult = new ConstraintsMap();
         paramsResult.putBoolean("result", true);
@@ -427,8 +446,156 @@ public class FlutterRTCFrameCryptor {
         }
         keyProvider.dispose();
         keyProviders.remove(keyProviderId);
+        keyProviderParticipants.remove(keyProviderId);
         ConstraintsMap paramsResult = new ConstraintsMap();
         paramsResult.putString("result", "success");
         result.success(paramsResult.toMap());
     }
+
+    private void addParticipant(String keyProviderId, String participantId) {
+        Set<String> participants = keyProviderParticipants.get(keyProviderId);
+        if (participants == null) {
+            participants = new HashSet<>();
+            keyProviderParticipants.put(keyProviderId, participants);
+        }
+        participants.add(participantId);
+    }
+
+    /**
+     * Sets the keys of many participants in one call: {@code keys} is a list of
+     * {@code {participantId, key, keyIndex}} (keyIndex defaults to the top level one). With
+     * {@code setKeyIndex} the frame cryptors of those participants switch to the new index too.
+     * Results are compact: {@code {"count": n, "frameCryptors": m}}.
+     */
+    private void keyProviderSetKeys(Map<String, Object> params, @NonNull Result result) {
+        String keyProviderId = (String) params.get("keyProviderId");
+        FrameCryptorKeyProvider keyProvider = keyProviders.get(keyProviderId);
+        if (keyProvider == null) {
+            result.error("keyProviderSetKeysFailed", "keyProvider not found", null);
+            return;
+        }
+        List<Map<String, Object>> keys = (List<Map<String, Object>>) params.get("keys");
+        if (keys == null) {
+            result.error("keyProviderSetKeysFailed", "keys is required", null);
+            return;
+        }
+        int defaultKeyIndex = params.get("keyIndex") != null ? (int) params.get("keyIndex") : 0;
+        boolean setKeyIndex = Boolean.TRUE.equals(params.get("setKeyIndex"));
+
+        Map<String, Integer> participantKeyIndexes = new HashMap<>();
+        for (Map<String, Object> entry : keys) {
+            String participantId = (String) entry.get("participantId");
+            int keyIndex = entry.get("keyIndex") != null ? (int) entry.get("keyIndex") : defaultKeyIndex;
+            participantKeyIndexes.put(participantId, keyIndex);
+            addParticipant(keyProviderId, participantId);
+        }
+        List<FrameCryptor> cryptors = new ArrayList<>();
+        List<Integer> cryptorKeyIndexes = new ArrayList<>();
+        if (setKeyIndex) {
+            for (Map.Entry<String, String> entry : frameCryptorParticipants.entrySet()) {
+                Integer keyIndex = participantKeyIndexes.get(entry.getValue());
+                FrameCryptor frameCryptor = frameCryptos.get(entry.getKey());
+                if (keyIndex != null && frameCryptor != null) {
+                    cryptors.add(frameCryptor);
+                    cryptorKeyIndexes.add(keyIndex);
+                }
+            }
+        }
+
+        try {
+            for (Map<String, Object> entry : keys) {
+                String participantId = (String) entry.get("participantId");
+                keyProvider.setKey(participantId, participantKeyIndexes.get(participantId), (byte[]) entry.get("key"));
+            }
+            for (int i = 0; i < cryptors.size(); i++) {
+                cryptors.get(i).setKeyIndex(cryptorKeyIndexes.get(i));
+            }
+        } catch (IllegalStateException e) {
+            result.error("keyProviderSetKeysFailed", e.getMessage(), null);
+            return;
+        }
+        ConstraintsMap paramsResult = new ConstraintsMap();
+        paramsResult.putInt("count", keys.size());
+        paramsResult.putInt("frameCryptors", cryptors.size());
+        result.success(paramsResult.toMap());
+    }
+
+    /**
+     * Ratchets the key at {@code keyIndex} of the given {@code participantIds}, or of every
+     * participant known to the key provider when omitted. Returns parallel lists
+     * {@code {"participantIds": [...], "keys": [...]}} plus {@code "failed"} for participants
+     * whose ratchet produced no key.
+     */
+    private void keyProviderRatchetKeys(Map<String, Object> params, @NonNull Result result) {
+        String keyProviderId = (String) params.get("keyProviderId");
+        FrameCryptorKeyProvider keyProvider = keyProviders.get(keyProviderId);
+        if (keyProvider == null) {
+            result.error("keyProviderRatchetKeysFailed", "keyProvider not found", null);
+            return;
+        }
+        int keyIndex = params.get("keyIndex") != null ? (int) params.get("keyIndex") : 0;
+        List<String> participantIds = new ArrayList<>();
+        if (params.get("participantIds") instanceof List) {
+            for (Object id : (List<?>) params.get("participantIds")) {
+                participantIds.add(id.toString());
+            }
+        } else if (keyProviderParticipants.containsKey(keyProviderId)) {
+            participantIds.addAll(keyProviderParticipants.get(keyProviderId));
+        }
+
+        ConstraintsArray ratchetedIds = new ConstraintsArray();
+        ConstraintsArray ratchetedKeys = new ConstraintsArray();
+        ConstraintsArray failed = new ConstraintsArray();
+        try {
+            for (String participantId : participantIds) {
+                byte[] newKey = keyProvider.ratchetKey(participantId, keyIndex);
+                if (newKey == null || newKey.length == 0) {
+                    failed.pushString(participantId);
+                } else {
+                    ratchetedIds.pushString(participantId);
+                    ratchetedKeys.pushByte(newKey);
+                }
+            }
+        } catch (IllegalStateException e) {
+            result.error("keyProviderRatchetKeysFailed", e.getMessage(), null);
+            return;
+        }
+        ConstraintsMap paramsResult = new ConstraintsMap();
+        paramsResult.putArray("participantIds", ratchetedIds.toArrayList());
+        paramsResult.putArray("keys", ratchetedKeys.toArrayList());
+        paramsResult.putArray("failed", failed.toArrayList());
+        result.success(paramsResult.toMap());
+    }
+
+    /**
+     * Sets {@code keyIndex} on the given {@code frameCryptorIds}, or on all frame cryptors
+     * when omitted.
+     */
+    private void frameCryptorSetKeyIndexes(Map<String, Object> params, @NonNull Result result) {
+        int keyIndex = (int) params.get("keyIndex");
+        List<FrameCryptor> cryptors = new ArrayList<>();
+        if (params.get("frameCryptorIds") instanceof List) {
+            for (Object id : (List<?>) params.get("frameCryptorIds")) {
+                FrameCryptor frameCryptor = frameCryptos.get(id.toString());
+                if (frameCryptor != null) {
+                    cryptors.add(frameCryptor);
+                }
+            }
+        } else {
+            cryptors.addAll(frameCryptos.values());
+        }
+
+        int updated = 0;
+        for (FrameCryptor frameCryptor : cryptors) {
+            try {
+                frameCryptor.setKeyIndex(keyIndex);
+                updated++;
+            } catch (IllegalStateException e) {
+                Log.w(TAG, "frameCryptorSetKeyIndexes: " + e.getMessage());
+            }
+        }
+        ConstraintsMap paramsResult = new ConstraintsMap();
+        paramsResult.putInt("count", updated);
+        result.success(paramsResult.toMap());
+    }
 }
@@ -8,10 +8,12 @@ import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
 import com.cloudwebrtc.webrtc.video.NightVisionRenderer;
+import com.cloudwebrtc.webrtc.video.RenderThreadPool;
 
 import java.util.List;
 
 import org.webrtc.EglBase;
+import org.webrtc.GlRectDrawer;
 import org.webrtc.MediaStream;
 import org.webrtc.RendererCommon;
 import org.webrtc.RendererCommon.RendererEvents;
@@ -40,6 +42,12 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
     // Guard to avoid operations after disposal
     private volatile boolean disposed = false;
 
+    // Render fps caps applied to small tiles by setViewport, by on-screen pixel count.
+    private static final int SMALL_TILE_PIXELS = 320 * 240;
+    private static final int MEDIUM_TILE_PIXELS = 640 * 480;
+    private static final float SMALL_TILE_MAX_FPS = 15f;
+    private static final float MEDIUM_TILE_MAX_FPS = 24f;
+
     /**
      * The {@code RendererEvents} which listens to rendering events reported by
      * {@link #surfaceTextureRenderer}.
@@ -93,6 +101,9 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
 
     protected final SurfaceTextureRenderer surfaceTextureRenderer;
 
+    // Whether surfaceTextureRenderer holds EGL state, kept across track switches.
+    private boolean rendererInitialized = false;
+
     /**
      * The {@code VideoTrack}, if any, rendered by this
      * {@code FlutterRTCVideoRenderer}.
@@ -104,15 +115,35 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
 
     public FlutterRTCVideoRenderer(TextureRegistry.SurfaceProducer producer) {
         this.surfaceTextureRenderer = new SurfaceTextureRenderer("");
+        this.producer = producer;
         listenRendererEvents();
-        surfaceTextureRenderer.init(EglUtils.getRootEglBaseContext(), rendererEvents);
-        surfaceTextureRenderer.surfaceCreated(producer);
+        initRenderer(new GlRectDrawer());
 
         this.eventSink = null;
-        this.producer = producer;
         this.ownerTag = null;
     }
 
+    /**
+     * Initializes {@link #surfaceTextureRenderer} with {@code drawer}, on a pooled render thread
+     * when {@link RenderThreadPool} is enabled and on a dedicated one otherwise.
+     */
+    private void initRenderer(RendererCommon.GlDrawer drawer) {
+        RenderThreadPool pool = RenderThreadPool.getInstance();
+        if (pool != null) {
+            surfaceTextureRenderer.init(pool.acquire(), rendererEvents, drawer);
+        } else {
+            surfaceTextureRenderer.init(EglUtils.getRootEglBaseContext(), rendererEvents,
+                    EglBase.CONFIG_PLAIN, drawer);
+        }
+        surfaceTextureRenderer.surfaceCreated(producer);
+        rendererInitialized = true;
+    }
+
+    private void releaseRenderer() {
+        surfaceTextureRenderer.release();
+        rendererInitialized = false;
+    }
+
     public void setEventChannel(EventChannel eventChannel) {
         this.eventChannel = eventChannel;
     }
@@ -226,7 +257,7 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
             } else {
                 Log.w(TAG, "FlutterRTCVideoRenderer.setVideoTrack, set video track to null - will clean up renderer");
                 if (surfaceTextureRenderer != null) {
-                    surfaceTextureRenderer.release();
+                    releaseRenderer();
                 }
             }
         }
@@ -248,16 +279,19 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
                 return;
             }
 
-            surfaceTextureRenderer.release();
             listenRendererEvents();
-            surfaceTextureRenderer.init(sharedContext, rendererEvents);
-            surfaceTextureRenderer.surfaceCreated(producer);
+            if (rendererInitialized) {
+                // Track switch: keep the EGL context and surface, only restart frame events.
+                surfaceTextureRenderer.switchTrack(rendererEvents);
+            } else {
+                initRenderer(new GlRectDrawer());
+            }
 
             videoTrack.addSink(surfaceTextureRenderer);
         } else {
             // When videoTrack is null, we should properly clean up the renderer
             // to stop EglRenderer statistics logging and free resources
-            surfaceTextureRenderer.release();
+            releaseRenderer();
         }
     }
 
@@ -290,17 +324,12 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
      */
     private void reinitDrawer(RendererCommon.GlDrawer newDrawer) {
         // Release current GL resources & stop stats logging.
-        surfaceTextureRenderer.release();
+        releaseRenderer();
 
-        // Re-create with the supplied drawer and the same producer / event callbacks.
+        // Re-create with the supplied drawer and the same producer / event callbacks,
+        // re-binding the Surface so frames start flowing again.
         listenRendererEvents();
-        surfaceTextureRenderer.init(
-                EglUtils.getRootEglBaseContext(),
-                rendererEvents,
-                org.webrtc.EglBase.CONFIG_PLAIN,
-                newDrawer);
-        // Re-bind the Surface so frames start flowing again.
-        surfaceTextureRenderer.surfaceCreated(producer);
+        initRenderer(newDrawer);
     }
 
     /** Enable GPU night-vision processing for this renderer. */
@@ -336,7 +365,7 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
         nightVisionEnabled = false;
 
         // Restore original GL drawer
-        reinitDrawer(new org.webrtc.GlRectDrawer());
+        reinitDrawer(new GlRectDrawer());
 
         if (nightVisionDrawer != null) {
             nightVisionDrawer.release();
@@ -371,6 +400,48 @@ public class FlutterRTCVideoRenderer implements EventChannel.StreamHandler {
         }
     }
 
+    /**
+     * Adapts rendering to how the tile is shown: the texture is sized to the on-screen
+     * {@code width} x {@code height} pixels, small tiles are rendered at a reduced frame rate
+     * and nothing is drawn while the tile is not {@code visible}. Returns the size and frame
+     * rate worth receiving for this tile, so apps can pick a matching simulcast layer.
+     */
+    public ConstraintsMap setViewport(int width, int height, boolean visible) {
+        ConstraintsMap params = new ConstraintsMap();
+        if (disposed) return params;
+        surfaceTextureRenderer.setViewportSize(width, height);
+
+        float maxFps = 0f;
+        if (!visible || width <= 0 || height <= 0) {
+            surfaceTextureRenderer.pauseVideo();
+        } else {
+            int pixels = width * height;
+            if (pixels <= SMALL_TILE_PIXELS) {
+                maxFps = SMALL_TILE_MAX_FPS;
+            } else if (pixels <= MEDIUM_TILE_PIXELS) {
+                maxFps = MEDIUM_TILE_MAX_FPS;
+            }
+            if (maxFps > 0f) {
+                surfaceTextureRenderer.setFpsReduction(maxFps);
+            } else {
+                surfaceTextureRenderer.disableFpsReduction();
+            }
+        }
+
+        params.putBoolean("visible", visible);
+        params.putInt("desiredWidth", visible ? Math.max(0, width) : 0);
+        params.putInt("desiredHeight", visible ? Math.max(0, height) : 0);
+        // 0 means no cap while visible.
+        params.putDouble("maxFps", (double) maxFps);
+        return params;
+    }
+
+    /** Draws frames once per display refresh instead of as soon as they arrive. */
+    public void setVsyncPaced(boolean enabled, float refreshRateFps) {
+        if (disposed) return;
+        surfaceTextureRenderer.setVsyncPaced(enabled, refreshRateFps);
+    }
+
     public boolean isNightVisionEnabled() {
         return nightVisionEnabled;
     }
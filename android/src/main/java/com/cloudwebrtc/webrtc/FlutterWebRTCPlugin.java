@@ -15,14 +15,20 @@ import com.cloudwebrtc.webrtc.audio.AudioProcessingController;
 import com.cloudwebrtc.webrtc.audio.AudioSwitchManager;
 import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.StartupTimings;
 
 import org.webrtc.ExternalAudioProcessingFactory;
 import org.webrtc.MediaStreamTrack;
+import org.webrtc.video.CodecCapabilityCache;
+
+import java.nio.ByteBuffer;
 
 import io.flutter.embedding.engine.plugins.FlutterPlugin;
 import io.flutter.embedding.engine.plugins.activity.ActivityAware;
 import io.flutter.embedding.engine.plugins.activity.ActivityPluginBinding;
 import io.flutter.embedding.engine.plugins.lifecycle.HiddenLifecycleReference;
+import io.flutter.plugin.common.BasicMessageChannel;
+import io.flutter.plugin.common.BinaryCodec;
 import io.flutter.plugin.common.BinaryMessenger;
 import io.flutter.plugin.common.EventChannel;
 import io.flutter.plugin.common.MethodChannel;
@@ -37,6 +43,7 @@ public class FlutterWebRTCPlugin implements FlutterPlugin, ActivityAware, EventC
     private static Application application;
 
     private MethodChannel methodChannel;
+    private BasicMessageChannel<ByteBuffer> binaryChannel;
     private MethodCallHandlerImpl methodCallHandler;
     private LifeCycleObserver observer;
     private Lifecycle lifecycle;
@@ -67,6 +74,8 @@ public class FlutterWebRTCPlugin implements FlutterPlugin, ActivityAware, EventC
 
     @Override
     public void onAttachedToEngine(@NonNull FlutterPluginBinding binding) {
+        StartupTimings.reset();
+        CodecCapabilityCache.getInstance().preload(binding.getApplicationContext());
         startListening(binding.getApplicationContext(), binding.getBinaryMessenger(),
                 binding.getTextureRegistry());
         application = (Application) binding.getApplicationContext();
@@ -116,6 +125,9 @@ public class FlutterWebRTCPlugin implements FlutterPlugin, ActivityAware, EventC
         methodCallHandler = new MethodCallHandlerImpl(context, messenger, textureRegistry);
         methodChannel = new MethodChannel(messenger, "FlutterWebRTC.Method");
         methodChannel.setMethodCallHandler(methodCallHandler);
+        binaryChannel = new BasicMessageChannel<>(messenger, "FlutterWebRTC.BinaryMethod",
+                BinaryCodec.INSTANCE_DIRECT);
+        binaryChannel.setMessageHandler(new BinaryCallHandler(methodCallHandler));
         eventChannel = new EventChannel(messenger, "FlutterWebRTC.Event");
         eventChannel.setStreamHandler(this);
         AudioSwitchManager.instance.audioDeviceChangeListener = (devices, currentDevice) -> {
@@ -138,6 +150,9 @@ public class FlutterWebRTCPlugin implements FlutterPlugin, ActivityAware, EventC
         if (methodChannel != null) {
             methodChannel.setMethodCallHandler(null);
         }
+        if (binaryChannel != null) {
+            binaryChannel.setMessageHandler(null);
+        }
         if (eventChannel != null) {
             eventChannel.setStreamHandler(null);
         }
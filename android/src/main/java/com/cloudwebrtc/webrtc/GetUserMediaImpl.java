@@ -9,7 +9,6 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.graphics.Point;
-import android.hardware.camera2.CameraManager;
 import android.media.AudioDeviceInfo;
 import android.media.projection.MediaProjection;
 import android.media.projection.MediaProjectionManager;
@@ -22,6 +21,7 @@ import android.os.Environment;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.ResultReceiver;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Log;
 import android.util.Pair;
@@ -31,6 +31,7 @@ import android.view.WindowManager;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
+import androidx.core.app.ActivityCompat;
 
 import com.cloudwebrtc.webrtc.audio.AudioSwitchManager;
 import com.cloudwebrtc.webrtc.audio.AudioUtils;
@@ -44,19 +45,17 @@ import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
 import com.cloudwebrtc.webrtc.utils.MediaConstraintsUtils;
+import com.cloudwebrtc.webrtc.utils.NullSafeConcurrentMap;
 import com.cloudwebrtc.webrtc.utils.ObjectType;
 import com.cloudwebrtc.webrtc.utils.PermissionUtils;
+import com.cloudwebrtc.webrtc.utils.StartupTimings;
 import com.cloudwebrtc.webrtc.video.LocalVideoTrack;
+import com.cloudwebrtc.webrtc.video.MappedFileVideoCapturer;
+import com.cloudwebrtc.webrtc.video.TestPatternVideoCapturer;
 import com.cloudwebrtc.webrtc.video.VideoCapturerInfo;
 
 import org.webrtc.AudioSource;
 import org.webrtc.AudioTrack;
-import org.webrtc.Camera1Capturer;
-import org.webrtc.Camera1Enumerator;
-import org.webrtc.Camera1Helper;
-import org.webrtc.Camera2Capturer;
-import org.webrtc.Camera2Enumerator;
-import org.webrtc.Camera2Helper;
 import org.webrtc.CameraEnumerator;
 import org.webrtc.CameraVideoCapturer;
 import org.webrtc.MediaConstraints;
@@ -76,9 +75,17 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import io.flutter.plugin.common.MethodChannel.Result;
 
@@ -103,9 +110,25 @@ public class GetUserMediaImpl {
     private static final String REQUEST_CODE = "REQUEST_CODE";
 
     static final String TAG = FlutterWebRTCPlugin.TAG;
-
-    private final Map<String, VideoCapturerInfoEx> mVideoCapturers = new HashMap<>();
-    private final Map<String, SurfaceTextureHelper> mSurfaceTextureHelpers = new HashMap<>();
+    private static final long CAMERA_CLOSE_WAIT_MS = 3000;
+    private static final long DEFAULT_PREWARM_KEEP_ALIVE_MS = 10000;
+    private static final long DEFAULT_SCREENCAST_KEEP_ALIVE_MS = 1000;
+    // deviceId prefix of a video file played as a camera, see MappedFileVideoCapturer.
+    private static final String FILE_SOURCE_PREFIX = "file://";
+    // deviceId of the generated test pattern, see TestPatternVideoCapturer.
+    private static final String TEST_PATTERN_DEVICE_ID = "test-pattern";
+
+    private final Map<String, VideoCapturerInfoEx> mVideoCapturers = new NullSafeConcurrentMap<>();
+    private final Map<String, SurfaceTextureHelper> mSurfaceTextureHelpers = new NullSafeConcurrentMap<>();
+    private Executor captureExecutor = Runnable::run;
+    private Executor releaseExecutor = Runnable::run;
+    // Cameras asked to stop that have not reported closing yet.
+    private final Set<CameraEventsHandler> closingCameras = ConcurrentHashMap.newKeySet();
+    private volatile long lastOpenLatencyMs = -1;
+    private volatile long lastCloseLatencyMs = -1;
+    private final CameraPrewarmer cameraPrewarmer;
+    private final Set<CameraCaptureHub> cameraHubs = ConcurrentHashMap.newKeySet();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private final StateProvider stateProvider;
     private final Context applicationContext;
 
@@ -232,6 +255,49 @@ public class GetUserMediaImpl {
     GetUserMediaImpl(StateProvider stateProvider, Context applicationContext) {
         this.stateProvider = stateProvider;
         this.applicationContext = applicationContext;
+        this.cameraPrewarmer = new CameraPrewarmer(applicationContext);
+    }
+
+    /**
+     * Sets the executor tracks and capturers are created and started on once permissions are
+     * granted. Permissions themselves are always requested from the main thread.
+     */
+    void setCaptureExecutor(Executor captureExecutor) {
+        this.captureExecutor = captureExecutor;
+    }
+
+    /**
+     * Sets the executor capturers are stopped on and, once their camera has closed, disposed
+     * on. It must not be the capture executor, whose tasks may wait for cameras to close.
+     */
+    void setReleaseExecutor(Executor releaseExecutor) {
+        this.releaseExecutor = releaseExecutor;
+    }
+
+    /** Open and close latency of the active cameras and of the last camera opened or closed. */
+    ConstraintsMap getCameraMetrics() {
+        ConstraintsMap cameras = new ConstraintsMap();
+        for (Map.Entry<String, VideoCapturerInfoEx> entry : mVideoCapturers.entrySet()) {
+            CameraEventsHandler cameraEvents = entry.getValue().cameraEventsHandler;
+            if (cameraEvents != null) {
+                ConstraintsMap camera = cameraEvents.toConstraintsMap();
+                CameraCaptureHub hub = entry.getValue().captureHub;
+                if (hub != null) {
+                    camera.putInt("sharedBy", hub.getOutputCount());
+                }
+                cameras.putMap(entry.getKey(), camera.toMap());
+            }
+        }
+        ConstraintsMap params = new ConstraintsMap();
+        params.putMap("cameras", cameras.toMap());
+        if (lastOpenLatencyMs >= 0) {
+            params.putLong("lastOpenLatencyMs", lastOpenLatencyMs);
+        }
+        if (lastCloseLatencyMs >= 0) {
+            params.putLong("lastCloseLatencyMs", lastCloseLatencyMs);
+        }
+        params.putInt("closing", closingCameras.size());
+        return params;
     }
 
     static private void resultError(String method, String error, Result result) {
@@ -466,7 +532,8 @@ public class GetUserMediaImpl {
 
         /// Only systems pre-M, no additional permission request is needed.
         if (VERSION.SDK_INT < VERSION_CODES.M) {
-            getUserMedia(constraints, result, mediaStream, requestPermissions);
+            captureExecutor.execute(
+                    () -> getUserMedia(constraints, result, mediaStream, requestPermissions));
             return;
         }
 
@@ -477,7 +544,8 @@ public class GetUserMediaImpl {
                     public void invoke(Object... args) {
                         List<String> grantedPermissions = (List<String>) args[0];
 
-                        getUserMedia(constraints, result, mediaStream, grantedPermissions);
+                        captureExecutor.execute(() ->
+                                getUserMedia(constraints, result, mediaStream, grantedPermissions));
                     }
                 },
                 /* errorCallback */ new Callback() {
@@ -507,15 +575,16 @@ public class GetUserMediaImpl {
                                         "User didn't give permission to capture the screen.", result);
                                 return;
                             }
-                            getDisplayMedia(result, mediaStream, mediaProjectionData);
+                            getDisplayMedia(constraints, result, mediaStream, mediaProjectionData);
                         }
                     });
         } else {
-            getDisplayMedia(result, mediaStream, mediaProjectionData);
+            getDisplayMedia(constraints, result, mediaStream, mediaProjectionData);
         }
     }
 
-    private void getDisplayMedia(final Result result, final MediaStream mediaStream, final Intent mediaProjectionData) {
+    private void getDisplayMedia(final ConstraintsMap constraints, final Result result,
+            final MediaStream mediaStream, final Intent mediaProjectionData) {
         /* Create ScreenCapture */
         VideoTrack displayTrack = null;
         VideoCapturer videoCapturer = null;
@@ -546,6 +615,8 @@ public class GetUserMediaImpl {
                 EglUtils.getRootEglBaseContext());
         videoCapturer.initialize(
                 surfaceTextureHelper, applicationContext, videoSource.getCapturerObserver());
+        String trackId = stateProvider.getNextTrackUUID();
+        applyScreencastOptions((OrientationAwareScreenCapturer) videoCapturer, trackId, constraints);
 
         WindowManager wm = (WindowManager) applicationContext.getSystemService(Context.WINDOW_SERVICE);
 
@@ -563,7 +634,6 @@ public class GetUserMediaImpl {
         videoCapturer.startCapture(info.width, info.height, info.fps);
         Log.d(TAG, "OrientationAwareScreenCapturer.startCapture: " + info.width + "x" + info.height + "@" + info.fps);
 
-        String trackId = stateProvider.getNextTrackUUID();
         mVideoCapturers.put(trackId, info);
 
         displayTrack = pcFactory.createVideoTrack(trackId, videoSource);
@@ -604,6 +674,43 @@ public class GetUserMediaImpl {
         result.success(successResult.toMap());
     }
 
+    /**
+     * Reads the screencast options of the {@code video} constraints: {@code skipStaticFrames}
+     * (default true) drops frames whose content did not change, except one every
+     * {@code keepAliveIntervalMs} (default 1000). {@code adaptiveProfile} (default false)
+     * switches between a detail and a motion profile, see {@link ScreenShareProfile}.
+     */
+    private void applyScreencastOptions(OrientationAwareScreenCapturer capturer, String trackId,
+            ConstraintsMap constraints) {
+        ConstraintsMap video = constraints != null && constraints.getType("video") == ObjectType.Map
+                ? constraints.getMap("video")
+                : new ConstraintsMap();
+        boolean adaptiveProfile = video.getType("adaptiveProfile") == ObjectType.Boolean
+                && video.getBoolean("adaptiveProfile");
+        capturer.setAdaptiveProfile(adaptiveProfile, (profile, maxFramerate) -> {
+            ScreenShareProfile.Mode mode = profile.getMode();
+            int maxBitrateBps = profile.getMaxBitrateBps(maxFramerate);
+            Log.d(TAG, "Screen share " + trackId + " switched to " + mode + " at "
+                    + profile.getWidth() + "x" + profile.getHeight() + ", " + maxBitrateBps + " bps");
+            // On each connection's queue, so it is ordered with the app's rtpSenderSetParameters.
+            for (String peerConnectionId : stateProvider.getRegistry().peerConnectionObservers.keySet()) {
+                stateProvider.runOnPeerConnectionQueue(peerConnectionId, () -> {
+                    PeerConnectionObserver pco = stateProvider.getPeerConnectionObserver(peerConnectionId);
+                    if (pco != null) {
+                        pco.applyScreenShareProfile(trackId, maxFramerate, maxBitrateBps,
+                                mode.degradationPreference);
+                    }
+                });
+            }
+        });
+        boolean skipStaticFrames = video.getType("skipStaticFrames") != ObjectType.Boolean
+                || video.getBoolean("skipStaticFrames");
+        long keepAliveIntervalMs = video.getType("keepAliveIntervalMs") == ObjectType.Number
+                ? video.getInt("keepAliveIntervalMs")
+                : DEFAULT_SCREENCAST_KEEP_ALIVE_MS;
+        capturer.setSkipStaticFrames(skipStaticFrames, Math.max(100, keepAliveIntervalMs));
+    }
+
     /**
      * Implements {@code getUserMedia} with the knowledge that the necessary
      * permissions have already
@@ -663,7 +770,41 @@ public class GetUserMediaImpl {
         successResult.putString("streamId", streamId);
         successResult.putArray("audioTracks", audioTracks.toArrayList());
         successResult.putArray("videoTracks", videoTracks.toArrayList());
-        result.success(successResult.toMap());
+
+        VideoCapturerInfoEx cameraInfo = trackParams[1] != null
+                ? mVideoCapturers.get(trackParams[1].getString("id"))
+                : null;
+        if (cameraInfo == null || cameraInfo.cameraEventsHandler == null) {
+            result.success(successResult.toMap());
+            return;
+        }
+        // Answer once the camera delivers its first frame (or fails) instead of holding the
+        // capture thread while the camera HAL opens.
+        final String videoTrackId = trackParams[1].getString("id");
+        cameraInfo.cameraEventsHandler.whenOpened(error -> {
+            if (error == null) {
+                StartupTimings.mark(StartupTimings.FIRST_LOCAL_VIDEO_FRAME);
+                lastOpenLatencyMs = cameraInfo.cameraEventsHandler.getOpenLatencyMs();
+                result.success(successResult.toMap());
+                return;
+            }
+            MediaObjectRegistry registry = stateProvider.getRegistry();
+            registry.localStreams.remove(streamId);
+            removeVideoCapturer(videoTrackId);
+            // Detach the tracks before disposing them, as streamDispose does, then the stream.
+            for (AudioTrack track : new ArrayList<>(mediaStream.audioTracks)) {
+                registry.localTracks.remove(track.id());
+                mediaStream.removeTrack(track);
+                track.dispose();
+            }
+            for (VideoTrack track : new ArrayList<>(mediaStream.videoTracks)) {
+                registry.localTracks.remove(track.id());
+                mediaStream.removeTrack(track);
+                track.dispose();
+            }
+            mediaStream.dispose();
+            resultError("getUserMedia", "Failed to open camera: " + error, result);
+        });
     }
 
     private boolean isFacing = true;
@@ -719,59 +860,142 @@ public class GetUserMediaImpl {
 
         Log.i(TAG, "getUserMedia(video): " + videoConstraintsMap);
 
-        // NOTE: to support Camera2, the device should:
-        // 1. Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
-        // 2. all camera support level should greater than LEGACY
-        // see:
-        // https://developer.android.com/reference/android/hardware/camera2/CameraCharacteristics.html#INFO_SUPPORTED_HARDWARE_LEVEL
-        // TODO Enable camera2 enumerator
-        CameraEnumerator cameraEnumerator;
-
-        if (Camera2Enumerator.isSupported(applicationContext)) {
-            Log.d(TAG, "Creating video capturer using Camera2 API.");
-            cameraEnumerator = new Camera2Enumerator(applicationContext);
-        } else {
-            Log.d(TAG, "Creating video capturer using Camera1 API.");
-            cameraEnumerator = new Camera1Enumerator(false);
-        }
+        int[] captureFormat = resolveCaptureFormat(videoConstraintsMap, videoConstraintsMandatory);
+        int targetWidth = captureFormat[0];
+        int targetHeight = captureFormat[1];
+        int targetFps = captureFormat[2];
 
         String facingMode = getFacingMode(videoConstraintsMap);
         isFacing = facingMode == null || !facingMode.equals("environment");
         String deviceId = getSourceIdConstraint(videoConstraintsMap);
-        CameraEventsHandler cameraEventsHandler = new CameraEventsHandler();
-        Pair<String, VideoCapturer> result = createVideoCapturer(cameraEnumerator, isFacing, deviceId,
-                cameraEventsHandler);
 
-        if (result == null) {
-            return null;
-        }
+        PeerConnectionFactory pcFactory = stateProvider.getPeerConnectionFactory();
+        VideoSource videoSource;
+        VideoCapturerInfoEx info;
+
+        boolean fileSource = deviceId != null && deviceId.startsWith(FILE_SOURCE_PREFIX);
+        boolean testPattern = TEST_PATTERN_DEVICE_ID.equals(deviceId);
+        boolean camera = !fileSource && !testPattern;
+        CameraCaptureHub sharedHub = camera ? findCameraHub(deviceId, isFacing) : null;
+        CameraPrewarmer.WarmSession warmSession = camera && sharedHub == null
+                ? cameraPrewarmer.takeSession(deviceId, isFacing)
+                : null;
+        if (testPattern) {
+            videoSource = pcFactory.createVideoSource(false);
+            info = startTestPattern(videoConstraintsMap, videoSource, targetWidth, targetHeight, targetFps);
+        } else if (fileSource) {
+            videoSource = pcFactory.createVideoSource(false);
+            boolean loop = videoConstraintsMap.getType("loop") != ObjectType.Boolean
+                    || videoConstraintsMap.getBoolean("loop");
+            // Only an explicit frame rate caps the file's own, not the default.
+            boolean fpsRequested = getConstrainInt(videoConstraintsMap, "frameRate") != null
+                    || (videoConstraintsMandatory != null
+                            && videoConstraintsMandatory.hasKey("minFrameRate"));
+            info = startFileCapturer(deviceId, loop, videoSource, targetWidth, targetHeight,
+                    fpsRequested ? targetFps : 0);
+            if (info == null) {
+                videoSource.dispose();
+                return null;
+            }
+        } else if (sharedHub != null) {
+            // The camera is already open for another track, add an output instead of reopening it.
+            videoSource = pcFactory.createVideoSource(false);
+            info = attachToCameraHub(sharedHub, videoSource, targetWidth, targetHeight, targetFps);
+            deviceId = sharedHub.deviceId;
+        } else if (warmSession != null) {
+            // Adopt the camera started by prewarmCamera, it is already delivering frames.
+            info = warmSession.info;
+            videoSource = warmSession.videoSource;
+            deviceId = info.cameraName;
+            Size actualSize = cameraPrewarmer.findClosestCaptureFormat(deviceId, targetWidth, targetHeight);
+            if (info.fps != targetFps || (actualSize != null
+                    && (actualSize.width != info.width || actualSize.height != info.height))) {
+                info.capturer.changeCaptureFormat(targetWidth, targetHeight, targetFps);
+                info.captureHub.updateOutput(videoSource, targetWidth, targetHeight, targetFps);
+                info.fps = targetFps;
+                if (actualSize != null) {
+                    info.width = actualSize.width;
+                    info.height = actualSize.height;
+                }
+            }
+            Log.d(TAG, "Using prewarmed camera " + deviceId);
+        } else {
+            CameraEventsHandler cameraEventsHandler = new CameraEventsHandler();
+            Pair<String, VideoCapturer> result = createVideoCapturer(cameraPrewarmer.getEnumerator(), isFacing,
+                    deviceId, cameraEventsHandler);
+
+            if (result == null) {
+                return null;
+            }
 
-        deviceId = result.first;
-        VideoCapturer videoCapturer = result.second;
+            deviceId = result.first;
+            videoSource = pcFactory.createVideoSource(false);
+            String threadName = Thread.currentThread().getName() + "_texture_camera_thread";
+            SurfaceTextureHelper surfaceTextureHelper = cameraPrewarmer.takeSurfaceTextureHelper(threadName);
 
-        if (facingMode == null && cameraEnumerator.isFrontFacing(deviceId)) {
+            if (surfaceTextureHelper == null) {
+                Log.e(TAG, "surfaceTextureHelper is null");
+                return null;
+            }
+            if (cameraPrewarmer.shouldKeepSpareHelper()) {
+                releaseExecutor.execute(cameraPrewarmer::warmSurfaceTextureHelper);
+            }
+
+            info = startCamera(result.second, deviceId, cameraEventsHandler, videoSource, surfaceTextureHelper,
+                    targetWidth, targetHeight, targetFps);
+        }
+
+        if (!camera) {
+            facingMode = null;
+        } else if (facingMode == null && cameraPrewarmer.isFrontFacing(deviceId)) {
             facingMode = "user";
-        } else if (facingMode == null && cameraEnumerator.isBackFacing(deviceId)) {
+        } else if (facingMode == null && cameraPrewarmer.isBackFacing(deviceId)) {
             facingMode = "environment";
         }
         // else, leave facingMode as it was
 
-        PeerConnectionFactory pcFactory = stateProvider.getPeerConnectionFactory();
-        VideoSource videoSource = pcFactory.createVideoSource(false);
-        String threadName = Thread.currentThread().getName() + "_texture_camera_thread";
-        SurfaceTextureHelper surfaceTextureHelper = SurfaceTextureHelper.create(threadName,
-                EglUtils.getRootEglBaseContext());
-
-        if (surfaceTextureHelper == null) {
-            Log.e(TAG, "surfaceTextureHelper is null");
-            return null;
+        String trackId = stateProvider.getNextTrackUUID();
+        mVideoCapturers.put(trackId, info);
+        if (info.captureHub != null) {
+            cameraHubs.add(info.captureHub);
         }
 
-        videoCapturer.initialize(
-                surfaceTextureHelper, applicationContext, videoSource.getCapturerObserver());
+        Log.d(TAG, "Target: " + targetWidth + "x" + targetHeight + "@" + targetFps + ", Actual: " + info.width + "x"
+                + info.height + "@" + info.fps);
 
-        VideoCapturerInfoEx info = new VideoCapturerInfoEx();
+        VideoTrack track = pcFactory.createVideoTrack(trackId, videoSource);
+        mediaStream.addTrack(track);
+
+        LocalVideoTrack localVideoTrack = new LocalVideoTrack(track);
+        videoSource.setVideoProcessor(localVideoTrack.getVideoProcessor());
+
+        stateProvider.putLocalTrack(track.id(), localVideoTrack);
+
+        ConstraintsMap trackParams = new ConstraintsMap();
+
+        trackParams.putBoolean("enabled", track.enabled());
+        trackParams.putString("id", track.id());
+        trackParams.putString("kind", "video");
+        trackParams.putString("label", track.id());
+        trackParams.putString("readyState", track.state().toString());
+        trackParams.putBoolean("remote", false);
+
+        ConstraintsMap settings = new ConstraintsMap();
+        settings.putString("deviceId", deviceId);
+        settings.putString("kind", "videoinput");
+        settings.putInt("width", info.width);
+        settings.putInt("height", info.height);
+        settings.putInt("frameRate", info.fps);
+        if (facingMode != null)
+            settings.putString("facingMode", facingMode);
+        trackParams.putMap("settings", settings.toMap());
 
+        return trackParams;
+    }
+
+    /** Width, height and frame rate requested by the video constraints. */
+    private int[] resolveCaptureFormat(@Nullable ConstraintsMap videoConstraintsMap,
+            @Nullable ConstraintsMap videoConstraintsMandatory) {
         Integer videoWidth = getConstrainInt(videoConstraintsMap, "width");
         int targetWidth = videoWidth != null
                 ? videoWidth
@@ -793,6 +1017,87 @@ public class GetUserMediaImpl {
                         ? videoConstraintsMandatory.getInt("minFrameRate")
                         : DEFAULT_FPS;
 
+        return new int[] {targetWidth, targetHeight, targetFps};
+    }
+
+    /**
+     * Plays the Y4M file of {@code deviceId} ({@code file://} followed by an absolute path) into
+     * {@code videoSource}. A raw I420 file is read at the requested width and height. Playback
+     * runs at the frame rate of the Y4M header, capped at {@code maxFps} when it is positive; a
+     * raw file plays at {@code maxFps}, or the default rate. The file loops unless {@code loop}
+     * is false.
+     */
+    @Nullable
+    private VideoCapturerInfoEx startFileCapturer(String deviceId, boolean loop, VideoSource videoSource,
+            int targetWidth, int targetHeight, int maxFps) {
+        MappedFileVideoCapturer capturer;
+        try {
+            capturer = new MappedFileVideoCapturer(deviceId.substring(FILE_SOURCE_PREFIX.length()),
+                    targetWidth, targetHeight, loop);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Failed to open video file " + deviceId, e);
+            return null;
+        }
+        capturer.initialize(null, applicationContext, videoSource.getCapturerObserver());
+        if (maxFps <= 0 && capturer.getFileFramerate() <= 0) {
+            maxFps = DEFAULT_FPS;
+        }
+        capturer.startCapture(capturer.getWidth(), capturer.getHeight(), maxFps);
+
+        VideoCapturerInfoEx info = new VideoCapturerInfoEx();
+        info.videoSource = videoSource;
+        info.width = capturer.getWidth();
+        info.height = capturer.getHeight();
+        info.fps = capturer.getPlaybackFramerate(maxFps);
+        info.capturer = capturer;
+        info.cameraName = deviceId;
+        return info;
+    }
+
+    /**
+     * Generates a test pattern into {@code videoSource} at the requested format. The video
+     * constraints select it with {@code pattern} ({@code gradient}, {@code boxes}, {@code noise}
+     * or {@code mixed}, the default) and {@code complexity} (0 to 1, default 0.5).
+     */
+    private VideoCapturerInfoEx startTestPattern(ConstraintsMap videoConstraintsMap, VideoSource videoSource,
+            int targetWidth, int targetHeight, int targetFps) {
+        TestPatternVideoCapturer.Pattern pattern = TestPatternVideoCapturer.Pattern.MIXED;
+        if (videoConstraintsMap.getType("pattern") == ObjectType.String) {
+            try {
+                pattern = TestPatternVideoCapturer.Pattern.valueOf(
+                        videoConstraintsMap.getString("pattern").toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                Log.w(TAG, "Unknown test pattern " + videoConstraintsMap.getString("pattern"));
+            }
+        }
+        float complexity = videoConstraintsMap.getType("complexity") == ObjectType.Number
+                ? ((Number) videoConstraintsMap.toMap().get("complexity")).floatValue()
+                : 0.5f;
+        TestPatternVideoCapturer capturer = new TestPatternVideoCapturer(pattern, complexity);
+        capturer.initialize(null, applicationContext, videoSource.getCapturerObserver());
+        capturer.startCapture(targetWidth, targetHeight, targetFps);
+
+        VideoCapturerInfoEx info = new VideoCapturerInfoEx();
+        info.videoSource = videoSource;
+        info.width = targetWidth & ~1;
+        info.height = targetHeight & ~1;
+        info.fps = targetFps;
+        info.capturer = capturer;
+        info.cameraName = TEST_PATTERN_DEVICE_ID;
+        return info;
+    }
+
+    private VideoCapturerInfoEx startCamera(VideoCapturer videoCapturer, String deviceId,
+            CameraEventsHandler cameraEventsHandler, VideoSource videoSource,
+            SurfaceTextureHelper surfaceTextureHelper, int targetWidth, int targetHeight, int targetFps) {
+        CameraCaptureHub hub = new CameraCaptureHub(deviceId, cameraPrewarmer.isFrontFacing(deviceId),
+                videoCapturer, cameraEventsHandler, surfaceTextureHelper);
+        videoCapturer.initialize(surfaceTextureHelper, applicationContext, hub);
+        hub.addOutput(videoSource, targetWidth, targetHeight, targetFps);
+
+        VideoCapturerInfoEx info = new VideoCapturerInfoEx();
+        info.captureHub = hub;
+        info.videoSource = videoSource;
         info.width = targetWidth;
         info.height = targetHeight;
         info.fps = targetFps;
@@ -800,81 +1105,244 @@ public class GetUserMediaImpl {
         info.cameraName = deviceId;
 
         // Find actual capture format.
-        Size actualSize = null;
-        if (videoCapturer instanceof Camera1Capturer) {
-            int cameraId = Camera1Helper.getCameraId(deviceId);
-            actualSize = Camera1Helper.findClosestCaptureFormat(cameraId, targetWidth, targetHeight);
-        } else if (videoCapturer instanceof Camera2Capturer) {
-            CameraManager cameraManager = (CameraManager) applicationContext.getSystemService(Context.CAMERA_SERVICE);
-            actualSize = Camera2Helper.findClosestCaptureFormat(cameraManager, deviceId, targetWidth, targetHeight);
-        }
-
+        Size actualSize = cameraPrewarmer.findClosestCaptureFormat(deviceId, targetWidth, targetHeight);
         if (actualSize != null) {
             info.width = actualSize.width;
             info.height = actualSize.height;
         }
 
         info.cameraEventsHandler = cameraEventsHandler;
+        awaitClosingCameras();
+        cameraEventsHandler.markOpenRequested();
         videoCapturer.startCapture(targetWidth, targetHeight, targetFps);
+        return info;
+    }
 
-        cameraEventsHandler.waitForCameraOpen();
-
-        String trackId = stateProvider.getNextTrackUUID();
-        mVideoCapturers.put(trackId, info);
-        mSurfaceTextureHelpers.put(trackId, surfaceTextureHelper);
-
-        Log.d(TAG, "Target: " + targetWidth + "x" + targetHeight + "@" + targetFps + ", Actual: " + info.width + "x"
-                + info.height + "@" + info.fps);
-
-        VideoTrack track = pcFactory.createVideoTrack(trackId, videoSource);
-        mediaStream.addTrack(track);
+    /**
+     * Caches the enumeration and capture format data of {@code deviceId} (or of the camera
+     * matching {@code facingMode}) and creates a spare texture helper. With {@code open}, the
+     * camera is also started and handed to the next matching {@code getUserMedia}; it is
+     * stopped if none claims it within {@code keepAliveMs}. Answers with the time spent on
+     * each step.
+     */
+    void prewarmCamera(@Nullable String deviceId, ConstraintsMap constraints, Result result) {
+        ConstraintsMap timings = new ConstraintsMap(new LinkedHashMap<>());
+        long stepStartMs = SystemClock.elapsedRealtime();
+        String facingMode = getFacingMode(constraints);
+        boolean front = facingMode == null || !facingMode.equals("environment");
+        String resolvedId = cameraPrewarmer.resolveDeviceId(deviceId, front);
+        if (resolvedId == null) {
+            resultError("prewarmCamera", "No camera found", result);
+            return;
+        }
+        ConstraintsMap mandatory = constraints.getType("mandatory") == ObjectType.Map
+                ? constraints.getMap("mandatory")
+                : null;
+        int[] captureFormat = resolveCaptureFormat(constraints, mandatory);
+        boolean isFront = cameraPrewarmer.isFrontFacing(resolvedId);
+        cameraPrewarmer.findClosestCaptureFormat(resolvedId, captureFormat[0], captureFormat[1]);
+        timings.putLong("enumerationMs", SystemClock.elapsedRealtime() - stepStartMs);
+
+        ConstraintsMap params = new ConstraintsMap();
+        params.putString("deviceId", resolvedId);
+        boolean open = constraints.getType("open") == ObjectType.Boolean && constraints.getBoolean("open");
+        if (open && findCameraHub(resolvedId, isFront) != null) {
+            // Already running for a track, the next getUserMedia shares that session.
+            params.putBoolean("opened", true);
+            params.putBoolean("shared", true);
+            params.putMap("timings", timings.toMap());
+            result.success(params.toMap());
+            return;
+        }
+        if (!open) {
+            stepStartMs = SystemClock.elapsedRealtime();
+            cameraPrewarmer.warmSurfaceTextureHelper();
+            timings.putLong("surfaceTextureHelperMs", SystemClock.elapsedRealtime() - stepStartMs);
+            StartupTimings.mark(StartupTimings.CAMERA_PREWARMED);
+            params.putBoolean("opened", false);
+            params.putMap("timings", timings.toMap());
+            result.success(params.toMap());
+            return;
+        }
 
-        LocalVideoTrack localVideoTrack = new LocalVideoTrack(track);
-        videoSource.setVideoProcessor(localVideoTrack.getVideoProcessor());
+        PeerConnectionFactory pcFactory = stateProvider.getPeerConnectionFactory();
+        if (pcFactory == null) {
+            resultError("prewarmCamera", "PeerConnectionFactory is not initialized", result);
+            return;
+        }
+        if (ActivityCompat.checkSelfPermission(applicationContext, PERMISSION_VIDEO)
+                != PackageManager.PERMISSION_GRANTED) {
+            resultError("prewarmCamera", "Camera permission has not been granted", result);
+            return;
+        }
+        CameraEventsHandler cameraEventsHandler = new CameraEventsHandler();
+        Pair<String, VideoCapturer> created = createVideoCapturer(cameraPrewarmer.getEnumerator(), isFront,
+                resolvedId, cameraEventsHandler);
+        if (created == null) {
+            resultError("prewarmCamera", "Failed to create camera capturer for " + resolvedId, result);
+            return;
+        }
+        stepStartMs = SystemClock.elapsedRealtime();
+        SurfaceTextureHelper surfaceTextureHelper =
+                cameraPrewarmer.takeSurfaceTextureHelper("prewarmed_texture_camera_thread");
+        if (surfaceTextureHelper == null) {
+            created.second.dispose();
+            resultError("prewarmCamera", "surfaceTextureHelper is null", result);
+            return;
+        }
+        cameraPrewarmer.warmSurfaceTextureHelper();
+        timings.putLong("surfaceTextureHelperMs", SystemClock.elapsedRealtime() - stepStartMs);
 
-        stateProvider.putLocalTrack(track.id(), localVideoTrack);
+        VideoSource videoSource = pcFactory.createVideoSource(false);
+        VideoCapturerInfoEx info = startCamera(created.second, created.first, cameraEventsHandler, videoSource,
+                surfaceTextureHelper, captureFormat[0], captureFormat[1], captureFormat[2]);
+        CameraPrewarmer.WarmSession warmSession = new CameraPrewarmer.WarmSession(info,
+                cameraPrewarmer.isFrontFacing(created.first), videoSource, surfaceTextureHelper);
+        CameraPrewarmer.WarmSession previous = cameraPrewarmer.putSession(warmSession);
+        if (previous != null) {
+            releaseWarmSession(previous);
+        }
+        long keepAliveMs = constraints.getType("keepAliveMs") == ObjectType.Number
+                ? constraints.getInt("keepAliveMs")
+                : DEFAULT_PREWARM_KEEP_ALIVE_MS;
+        mainHandler.postDelayed(() -> {
+            if (cameraPrewarmer.removeSession(warmSession)) {
+                Log.d(TAG, "Prewarmed camera " + info.cameraName + " was not used, stopping it");
+                releaseWarmSession(warmSession);
+            }
+        }, keepAliveMs);
 
-        ConstraintsMap trackParams = new ConstraintsMap();
+        cameraEventsHandler.whenOpened(error -> {
+            if (error != null) {
+                if (cameraPrewarmer.removeSession(warmSession)) {
+                    releaseWarmSession(warmSession);
+                }
+                resultError("prewarmCamera", "Failed to open camera: " + error, result);
+                return;
+            }
+            StartupTimings.mark(StartupTimings.CAMERA_PREWARMED);
+            timings.putLong("openMs", cameraEventsHandler.getOpenLatencyMs());
+            params.putBoolean("opened", true);
+            params.putMap("timings", timings.toMap());
+            result.success(params.toMap());
+        });
+    }
 
-        trackParams.putBoolean("enabled", track.enabled());
-        trackParams.putString("id", track.id());
-        trackParams.putString("kind", "video");
-        trackParams.putString("label", track.id());
-        trackParams.putString("readyState", track.state().toString());
-        trackParams.putBoolean("remote", false);
+    @Nullable
+    private CameraCaptureHub findCameraHub(@Nullable String sourceId, boolean isFacing) {
+        for (CameraCaptureHub hub : cameraHubs) {
+            if (hub.matches(sourceId, isFacing)) {
+                return hub;
+            }
+        }
+        return null;
+    }
 
-        ConstraintsMap settings = new ConstraintsMap();
-        settings.putString("deviceId", deviceId);
-        settings.putString("kind", "videoinput");
-        settings.putInt("width", info.width);
-        settings.putInt("height", info.height);
-        settings.putInt("frameRate", info.fps);
-        if (facingMode != null)
-            settings.putString("facingMode", facingMode);
-        trackParams.putMap("settings", settings.toMap());
+    private VideoCapturerInfoEx attachToCameraHub(CameraCaptureHub hub, VideoSource videoSource,
+            int targetWidth, int targetHeight, int targetFps) {
+        VideoCapturerInfoEx info = new VideoCapturerInfoEx();
+        info.capturer = hub.capturer;
+        info.cameraName = hub.deviceId;
+        info.cameraEventsHandler = hub.cameraEventsHandler;
+        info.captureHub = hub;
+        info.videoSource = videoSource;
+        info.width = targetWidth;
+        info.height = targetHeight;
+        info.fps = targetFps;
+        if (hub.addOutput(videoSource, targetWidth, targetHeight, targetFps)) {
+            int[] format = hub.getCaptureFormat();
+            hub.capturer.changeCaptureFormat(format[0], format[1], format[2]);
+        }
+        Log.d(TAG, "Camera " + hub.deviceId + " shared by " + hub.getOutputCount() + " tracks");
+        return info;
+    }
 
-        return trackParams;
+    private void releaseWarmSession(CameraPrewarmer.WarmSession warmSession) {
+        closingCameras.add(warmSession.info.cameraEventsHandler);
+        releaseExecutor.execute(() -> stopVideoCapturer(warmSession.info, warmSession.surfaceTextureHelper,
+                warmSession.videoSource::dispose));
     }
 
     void removeVideoCapturer(String id) {
-        VideoCapturerInfoEx info = mVideoCapturers.get(id);
-        if (info != null) {
-            try {
-                info.capturer.stopCapture();
-                if (info.cameraEventsHandler != null) {
-                    info.cameraEventsHandler.waitForCameraClosed();
+        removeVideoCapturer(id, null);
+    }
+
+    /**
+     * Stops the capturer of track {@code id} without waiting for the camera to close. The
+     * capturer and its texture helper are released once the camera reports closing, after
+     * which {@code onReleased} runs.
+     */
+    void removeVideoCapturer(String id, @Nullable Runnable onReleased) {
+        VideoCapturerInfoEx info = mVideoCapturers.remove(id);
+        if (info == null) {
+            if (onReleased != null) {
+                onReleased.run();
+            }
+            return;
+        }
+        CameraCaptureHub hub = info.captureHub;
+        if (hub != null) {
+            boolean[] formatChanged = new boolean[1];
+            if (hub.removeOutput(info.videoSource, formatChanged) > 0) {
+                // Other tracks still use the camera, only drop to the smaller format they need.
+                if (formatChanged[0]) {
+                    int[] format = hub.getCaptureFormat();
+                    releaseExecutor.execute(() -> hub.capturer.changeCaptureFormat(format[0], format[1], format[2]));
                 }
-            } catch (InterruptedException e) {
-                Log.e(TAG, "removeVideoCapturer() Failed to stop video capturer");
-            } finally {
-                info.capturer.dispose();
-                mVideoCapturers.remove(id);
-                SurfaceTextureHelper helper = mSurfaceTextureHelpers.get(id);
-                if (helper != null) {
-                    helper.stopListening();
-                    helper.dispose();
-                    mSurfaceTextureHelpers.remove(id);
+                if (onReleased != null) {
+                    onReleased.run();
                 }
+                return;
+            }
+            cameraHubs.remove(hub);
+        }
+        SurfaceTextureHelper helper = hub != null ? hub.surfaceTextureHelper : mSurfaceTextureHelpers.remove(id);
+        // Registered before the stop is queued so a following getUserMedia waits for it.
+        if (info.cameraEventsHandler != null) {
+            closingCameras.add(info.cameraEventsHandler);
+        }
+        releaseExecutor.execute(() -> stopVideoCapturer(info, helper, onReleased));
+    }
+
+    private void stopVideoCapturer(VideoCapturerInfoEx info, @Nullable SurfaceTextureHelper helper,
+            @Nullable Runnable onReleased) {
+        try {
+            info.capturer.stopCapture();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "removeVideoCapturer() Failed to stop video capturer");
+        }
+        Runnable release = () -> {
+            info.capturer.dispose();
+            if (helper != null) {
+                helper.stopListening();
+                helper.dispose();
+            }
+            if (onReleased != null) {
+                onReleased.run();
+            }
+        };
+        CameraEventsHandler cameraEvents = info.cameraEventsHandler;
+        if (cameraEvents == null) {
+            release.run();
+            return;
+        }
+        cameraEvents.markCloseRequested();
+        // The close callback arrives on the camera thread, which the helper disposal joins.
+        cameraEvents.whenClosed(error -> {
+            closingCameras.remove(cameraEvents);
+            lastCloseLatencyMs = cameraEvents.getCloseLatencyMs();
+            releaseExecutor.execute(release);
+        });
+    }
+
+    /**
+     * A camera that is still closing cannot be opened again, so capture start waits for the
+     * pending closes. Never called on the main thread.
+     */
+    private void awaitClosingCameras() {
+        for (CameraEventsHandler cameraEvents : closingCameras) {
+            if (!cameraEvents.awaitClosed(CAMERA_CLOSE_WAIT_MS)) {
+                Log.w(TAG, "Starting capture while a previous camera is still closing");
             }
         }
     }
@@ -921,21 +1389,24 @@ public class GetUserMediaImpl {
     }
 
     void switchCamera(String id, Result result) {
-        VideoCapturer videoCapturer = mVideoCapturers.get(id).capturer;
+        VideoCapturerInfoEx info = mVideoCapturers.get(id);
+        VideoCapturer videoCapturer = info != null ? info.capturer : null;
         if (videoCapturer == null) {
             resultError("switchCamera", "Video capturer not found for id: " + id, result);
             return;
         }
-
-        CameraEnumerator cameraEnumerator;
-
-        if (Camera2Enumerator.isSupported(applicationContext)) {
-            Log.d(TAG, "Creating video capturer using Camera2 API.");
-            cameraEnumerator = new Camera2Enumerator(applicationContext);
-        } else {
-            Log.d(TAG, "Creating video capturer using Camera1 API.");
-            cameraEnumerator = new Camera1Enumerator(false);
+        if (!(videoCapturer instanceof CameraVideoCapturer)) {
+            resultError("switchCamera", "Video capturer of " + id + " is not a camera", result);
+            return;
         }
+        // Switching the shared session would switch every other track on it as well.
+        if (info.captureHub != null && info.captureHub.getOutputCount() > 1) {
+            resultError("switchCamera", "Camera of " + id + " is shared with "
+                    + (info.captureHub.getOutputCount() - 1) + " other track(s)", result);
+            return;
+        }
+
+        CameraEnumerator cameraEnumerator = cameraPrewarmer.getEnumerator();
         // if sourceId given, use specified sourceId first
         final String[] deviceNames = cameraEnumerator.getDeviceNames();
         for (String name : deviceNames) {
@@ -946,6 +1417,11 @@ public class GetUserMediaImpl {
                             @Override
                             public void onCameraSwitchDone(boolean b) {
                                 isFacing = !isFacing;
+                                VideoCapturerInfoEx switched = mVideoCapturers.get(id);
+                                if (switched != null && switched.captureHub != null) {
+                                    switched.captureHub.deviceId = name;
+                                    switched.captureHub.frontFacing = !switched.captureHub.frontFacing;
+                                }
                                 result.success(b);
                             }
 
@@ -986,6 +1462,18 @@ public class GetUserMediaImpl {
         mediaRecorders.append(id, mediaRecorder);
     }
 
+    /** Timestamp stats of each running recording, by recorder id. */
+    ConstraintsMap getMediaClockStats() {
+        ConstraintsMap params = new ConstraintsMap();
+        for (int i = 0; i < mediaRecorders.size(); i++) {
+            ConstraintsMap stats = mediaRecorders.valueAt(i).getClockStats();
+            if (stats != null) {
+                params.putMap(String.valueOf(mediaRecorders.keyAt(i)), stats.toMap());
+            }
+        }
+        return params;
+    }
+
     void stopRecording(Integer id) {
         MediaRecorderImpl mediaRecorder = mediaRecorders.get(id);
         if (mediaRecorder != null) {
@@ -1014,6 +1502,28 @@ public class GetUserMediaImpl {
         boolean isEnabled(String id);
     }
 
+    /**
+     * One task per running capturer that stops and releases it, so that teardown can stop
+     * capturers in parallel before calling {@link #dispose()}.
+     */
+    List<Runnable> getCapturerStopTasks() {
+        List<Runnable> tasks = new ArrayList<>();
+        for (String id : mVideoCapturers.keySet()) {
+            tasks.add(() -> {
+                CountDownLatch released = new CountDownLatch(1);
+                removeVideoCapturer(id, released::countDown);
+                try {
+                    released.await(CAMERA_CLOSE_WAIT_MS, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        // Also covers cameras whose stop was started by an earlier stage.
+        tasks.add(this::awaitClosingCameras);
+        return tasks;
+    }
+
     /**
      * Disposes all resources maintained by GetUserMediaImpl
      * This method will release all video capturers, surface texture helpers,
@@ -1022,8 +1532,17 @@ public class GetUserMediaImpl {
     public void dispose() {
         Log.d(TAG, "Disposing GetUserMediaImpl");
 
-        // Release all video capturers
+        CameraPrewarmer.WarmSession warmSession = cameraPrewarmer.clear();
+        if (warmSession != null) {
+            releaseWarmSession(warmSession);
+        }
+
+        // Release all video capturers, once per camera hub for tracks sharing one
+        Set<VideoCapturer> released = Collections.newSetFromMap(new IdentityHashMap<>());
         for (VideoCapturerInfoEx capturerInfo : mVideoCapturers.values()) {
+            if (!released.add(capturerInfo.capturer)) {
+                continue;
+            }
             try {
                 capturerInfo.capturer.stopCapture();
             } catch (InterruptedException e) {
@@ -1038,6 +1557,10 @@ public class GetUserMediaImpl {
             surfaceTextureHelper.dispose();
         }
         mSurfaceTextureHelpers.clear();
+        for (CameraCaptureHub hub : cameraHubs) {
+            hub.surfaceTextureHelper.dispose();
+        }
+        cameraHubs.clear();
 
         // Stop all recordings
         for (int i = 0; i < mediaRecorders.size(); i++) {
@@ -1070,6 +1593,9 @@ public class GetUserMediaImpl {
 
     public static class VideoCapturerInfoEx extends VideoCapturerInfo {
         public CameraEventsHandler cameraEventsHandler;
+        // Set for cameras: the shared capture session and this track's source on it.
+        CameraCaptureHub captureHub;
+        VideoSource videoSource;
     }
 
     public VideoCapturerInfoEx getCapturerInfo(String trackId) {
@@ -0,0 +1,110 @@
+package com.cloudwebrtc.webrtc;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.NullSafeConcurrentMap;
+
+import org.webrtc.MediaStream;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.RtpTransceiver;
+
+import java.util.Map;
+
+/**
+ * Thread-safe registry of the objects method calls refer to by id: peer connections, local
+ * streams and tracks, and an index of remote tracks.
+ *
+ * The remote track index maps a track id to its peer connection and, with unified plan, its
+ * transceiver. It is kept current by the {@link PeerConnectionObserver} callbacks and by the
+ * calls creating transceivers, so track lookups no longer enumerate transceivers over JNI. It
+ * is kept per peer connection: a remote peer picks its track ids, so two connections can
+ * receive tracks with the same id.
+ */
+class MediaObjectRegistry {
+  static final class RemoteTrackEntry {
+    final String peerConnectionId;
+    final MediaStreamTrack track;
+    @Nullable
+    final RtpTransceiver transceiver;
+
+    RemoteTrackEntry(String peerConnectionId, MediaStreamTrack track,
+        @Nullable RtpTransceiver transceiver) {
+      this.peerConnectionId = peerConnectionId;
+      this.track = track;
+      this.transceiver = transceiver;
+    }
+  }
+
+  final Map<String, PeerConnectionObserver> peerConnectionObservers = new NullSafeConcurrentMap<>();
+  final Map<String, MediaStream> localStreams = new NullSafeConcurrentMap<>();
+  final Map<String, LocalTrack> localTracks = new NullSafeConcurrentMap<>();
+  // Remote tracks by peer connection id, then by track id.
+  private final Map<String, Map<String, RemoteTrackEntry>> remoteTracks = new NullSafeConcurrentMap<>();
+
+  void indexRemoteTrack(String peerConnectionId, @Nullable MediaStreamTrack track,
+      @Nullable RtpTransceiver transceiver) {
+    if (track == null) {
+      return;
+    }
+    Map<String, RemoteTrackEntry> tracks = remoteTracks.get(peerConnectionId);
+    if (tracks == null) {
+      Map<String, RemoteTrackEntry> created = new NullSafeConcurrentMap<>();
+      tracks = remoteTracks.putIfAbsent(peerConnectionId, created);
+      if (tracks == null) {
+        tracks = created;
+      }
+    }
+    RemoteTrackEntry existing = tracks.get(track.id());
+    if (transceiver == null && existing != null && existing.transceiver != null) {
+      // Keep the richer entry.
+      return;
+    }
+    tracks.put(track.id(), new RemoteTrackEntry(peerConnectionId, track, transceiver));
+  }
+
+  void unindexRemoteTrack(String peerConnectionId, String trackId) {
+    Map<String, RemoteTrackEntry> tracks = remoteTracks.get(peerConnectionId);
+    if (tracks != null) {
+      tracks.remove(trackId);
+    }
+  }
+
+  /** Drops all remote tracks of {@code peerConnectionId}, called when it is closed. */
+  void unindexPeerConnection(String peerConnectionId) {
+    remoteTracks.remove(peerConnectionId);
+  }
+
+  /**
+   * Returns the remote track {@code trackId} of {@code peerConnectionId}, or of any peer
+   * connection when it is null.
+   */
+  @Nullable
+  RemoteTrackEntry getRemoteTrack(String trackId, @Nullable String peerConnectionId) {
+    if (peerConnectionId != null) {
+      Map<String, RemoteTrackEntry> tracks = remoteTracks.get(peerConnectionId);
+      return tracks != null ? tracks.get(trackId) : null;
+    }
+    for (Map<String, RemoteTrackEntry> tracks : remoteTracks.values()) {
+      RemoteTrackEntry entry = tracks.get(trackId);
+      if (entry != null) {
+        return entry;
+      }
+    }
+    return null;
+  }
+
+  boolean containsTrack(String trackId) {
+    return localTracks.containsKey(trackId) || getRemoteTrack(trackId, null) != null;
+  }
+
+  void clearRemoteTracks() {
+    remoteTracks.clear();
+  }
+
+  void clear() {
+    peerConnectionObservers.clear();
+    localStreams.clear();
+    localTracks.clear();
+    remoteTracks.clear();
+  }
+}
@@ -0,0 +1,209 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.SerialExecutor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel.Result;
+
+/**
+ * Decides which thread a method call runs on.
+ *
+ * Calls on a peer connection run on a queue of their own, so calls on one connection keep
+ * their order while different connections proceed in parallel. Media calls run on a single
+ * media queue. Frame cryptor and key provider calls, batches and disposal included, share one
+ * queue of their own, so a key rotation keeps its order without stalling the main thread.
+ * Everything else, notably {@code initialize} and {@code createPeerConnection},
+ * which register event channels, and texture, renderer, permission and audio routing calls,
+ * stays on the main thread. Results must be delivered through an
+ * {@link com.cloudwebrtc.webrtc.utils.AnyThreadResult}.
+ */
+class MethodCallDispatcher {
+  private static final String TAG = "MethodCallDispatcher";
+  private static final long BARRIER_TIMEOUT_MS = 5000;
+
+  private static final Set<String> PEER_CONNECTION_METHODS = new HashSet<>(Arrays.asList(
+      "createOffer", "createAnswer", "setLocalDescription", "setRemoteDescription",
+      "getLocalDescription", "getRemoteDescription", "addCandidate", "addCandidates", "getStats",
+      "setConfiguration", "addStream", "removeStream", "addTrack", "removeTrack",
+      "addTransceiver", "rtpTransceiverSetDirection", "rtpTransceiverGetDirection",
+      "rtpTransceiverGetCurrentDirection", "rtpTransceiverStop", "rtpSenderSetParameters",
+      "rtpSenderReplaceTrack", "rtpSenderSetTrack", "rtpSenderSetStreams", "getSenders",
+      "getReceivers", "getTransceivers", "getTransceiverChanges", "setCodecPreferences",
+      "getSignalingState", "getIceGatheringState", "getIceConnectionState", "getConnectionState",
+      "restartIce", "createDataChannel", "dataChannelSend", "dataChannelGetBufferedAmount",
+      "dataChannelClose", "sendDtmf", "peerConnectionClose", "peerConnectionDispose",
+      "getEventBusStats"));
+
+  private static final Set<String> MEDIA_METHODS = new HashSet<>(Arrays.asList(
+      "createLocalMediaStream", "mediaStreamGetTracks", "getSources",
+      "getRtpSenderCapabilities", "getRtpReceiverCapabilities", "getStartupTimings",
+      "getEncoderSelectionReport", "prewarmCamera"));
+
+  private static final Set<String> CRYPTO_METHODS = new HashSet<>(Arrays.asList(
+      "frameCryptorFactoryCreateFrameCryptor", "frameCryptorSetKeyIndex",
+      "frameCryptorGetKeyIndex", "frameCryptorSetEnabled", "frameCryptorGetEnabled",
+      "frameCryptorSetKeyIndexes", "frameCryptorDispose", "frameCryptorFactoryCreateKeyProvider",
+      "keyProviderSetSharedKey", "keyProviderRatchetSharedKey", "keyProviderExportSharedKey",
+      "keyProviderSetKey", "keyProviderRatchetKey", "keyProviderExportKey",
+      "keyProviderSetSifTrailer", "keyProviderSetKeys", "keyProviderRatchetKeys",
+      "keyProviderDispose"));
+
+  // Run on the media queue once the peer connection and crypto queues have drained.
+  private static final Set<String> BARRIER_METHODS = new HashSet<>(Arrays.asList(
+      "disposeAll", "stopAll"));
+
+  private final ExecutorService workers = Executors.newCachedThreadPool(new WorkerThreadFactory());
+  private final SerialExecutor mediaQueue = new SerialExecutor(workers);
+  private final SerialExecutor cryptoQueue = new SerialExecutor(workers);
+  private final Map<String, SerialExecutor> peerConnectionQueues = new ConcurrentHashMap<>();
+  private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  /** Runs {@code task} for {@code call} on the thread the call belongs on. */
+  void dispatch(MethodCall call, Result result, Runnable task) {
+    dispatch(call.method, peerConnectionId(call), result, task);
+  }
+
+  /** Same as above for calls not decoded into a {@link MethodCall}. */
+  void dispatch(String method, @Nullable String peerConnectionId, Result result, Runnable task) {
+    if (PEER_CONNECTION_METHODS.contains(method)) {
+      if (peerConnectionId == null) {
+        mediaQueue.execute(guarded(method, result, task));
+      } else {
+        getPeerConnectionQueue(peerConnectionId).execute(guarded(method, result, () -> {
+          task.run();
+          if ("peerConnectionDispose".equals(method)) {
+            peerConnectionQueues.remove(peerConnectionId);
+          }
+        }));
+      }
+    } else if (MEDIA_METHODS.contains(method)) {
+      mediaQueue.execute(guarded(method, result, task));
+    } else if (CRYPTO_METHODS.contains(method)) {
+      cryptoQueue.execute(guarded(method, result, task));
+    } else if (BARRIER_METHODS.contains(method)) {
+      mediaQueue.execute(guarded(method, result, () -> {
+        awaitQueues();
+        task.run();
+      }));
+    } else {
+      task.run();
+    }
+  }
+
+  /** The shared pool behind all queues, for work that needs no ordering. */
+  Executor getWorkers() {
+    return workers;
+  }
+
+  /** The queue capture work started by main-thread calls such as {@code getUserMedia} uses. */
+  SerialExecutor getMediaQueue() {
+    return mediaQueue;
+  }
+
+  /**
+   * Runs {@code task} on the queue of {@code peerConnectionId}, after the calls already queued
+   * for that connection, for work started outside a method call on it.
+   */
+  void runOnPeerConnectionQueue(String peerConnectionId, Runnable task) {
+    getPeerConnectionQueue(peerConnectionId).execute(() -> {
+      try {
+        task.run();
+      } catch (Exception e) {
+        Log.e(TAG, "Task on peer connection " + peerConnectionId + " failed", e);
+      }
+    });
+  }
+
+  /** Runs {@code task} on the main thread, immediately when already on it. */
+  void runOnMainThread(Runnable task) {
+    if (Looper.myLooper() == Looper.getMainLooper()) {
+      task.run();
+    } else {
+      mainHandler.post(task);
+    }
+  }
+
+  private SerialExecutor getPeerConnectionQueue(String peerConnectionId) {
+    SerialExecutor queue = peerConnectionQueues.get(peerConnectionId);
+    if (queue == null) {
+      SerialExecutor created = new SerialExecutor(workers);
+      queue = peerConnectionQueues.putIfAbsent(peerConnectionId, created);
+      if (queue == null) {
+        queue = created;
+      }
+    }
+    return queue;
+  }
+
+  private void awaitQueues() {
+    List<SerialExecutor> queues = new ArrayList<>(peerConnectionQueues.values());
+    queues.add(cryptoQueue);
+    CountDownLatch latch = new CountDownLatch(queues.size());
+    for (SerialExecutor queue : queues) {
+      queue.execute(latch::countDown);
+    }
+    try {
+      if (!latch.await(BARRIER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        Log.w(TAG, "Timed out waiting for peer connection and crypto calls to finish");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Nullable
+  private static String peerConnectionId(MethodCall call) {
+    if (!(call.arguments instanceof Map)) {
+      return null;
+    }
+    Object id = ((Map<?, ?>) call.arguments).get("peerConnectionId");
+    return id instanceof String ? (String) id : null;
+  }
+
+  /**
+   * Reports exceptions thrown off the main thread as errors, the way the method channel does
+   * for exceptions thrown on it, instead of killing the worker.
+   */
+  private static Runnable guarded(String method, Result result, Runnable task) {
+    return () -> {
+      try {
+        task.run();
+      } catch (Exception e) {
+        Log.e(TAG, method + "() failed", e);
+        result.error("error", e.getMessage(), Log.getStackTraceString(e));
+      }
+    };
+  }
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "FlutterWebRTC-worker-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -8,6 +8,7 @@ import android.content.pm.PackageManager;
 import android.graphics.SurfaceTexture;
 import android.hardware.Camera;
 import android.hardware.Camera.CameraInfo;
+import android.hardware.display.DisplayManager;
 import android.media.MediaRecorder;
 import android.media.AudioAttributes;
 import android.media.AudioDeviceInfo;
@@ -16,6 +17,7 @@ import android.os.Handler;
 import android.os.Looper;
 import android.util.Log;
 import android.util.LongSparseArray;
+import android.view.Display;
 import android.view.Surface;
 
 import androidx.annotation.NonNull;
@@ -38,11 +40,13 @@ import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
 import com.cloudwebrtc.webrtc.utils.ObjectType;
 import com.cloudwebrtc.webrtc.utils.PermissionUtils;
+import com.cloudwebrtc.webrtc.utils.StartupTimings;
 import com.cloudwebrtc.webrtc.utils.Utils;
 import com.cloudwebrtc.webrtc.video.VideoCapturerInfo;
 import com.cloudwebrtc.webrtc.video.camera.CameraUtils;
 import com.cloudwebrtc.webrtc.video.camera.Point;
 import com.cloudwebrtc.webrtc.video.LocalVideoTrack;
+import com.cloudwebrtc.webrtc.video.RenderThreadPool;
 import com.twilio.audioswitch.AudioDevice;
 
 import org.webrtc.AudioTrack;
@@ -103,14 +107,19 @@ import io.flutter.view.TextureRegistry.SurfaceTextureEntry;
 public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   static public final String TAG = "FlutterWebRTCPlugin";
 
-  private final Map<String, PeerConnectionObserver> mPeerConnectionObservers = new HashMap<>();
+  // Objects referenced by id from Dart, safe to access from any thread.
+  private final MediaObjectRegistry registry = new MediaObjectRegistry();
+  private final Map<String, PeerConnectionObserver> mPeerConnectionObservers = registry.peerConnectionObservers;
   private final BinaryMessenger messenger;
   private final Context context;
   private final TextureRegistry textures;
-  private PeerConnectionFactory mFactory;
-  private final Map<String, MediaStream> localStreams = new HashMap<>();
-  private final Map<String, LocalTrack> localTracks = new HashMap<>();
+  // Set up on the main thread by initialize and read from every queue.
+  private volatile PeerConnectionFactory mFactory;
+  private final Map<String, MediaStream> localStreams = registry.localStreams;
+  private final Map<String, LocalTrack> localTracks = registry.localTracks;
+  // Only accessed on the main thread.
   private final LongSparseArray<FlutterRTCVideoRenderer> renders = new LongSparseArray<>();
+  private final MethodCallDispatcher dispatcher = new MethodCallDispatcher();
 
   public RecordSamplesReadyCallbackAdapter recordSamplesReadyCallbackAdapter;
 
@@ -121,13 +130,13 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
    * order to reduce
    * complexity and to (somewhat) separate concerns.
    */
-  private GetUserMediaImpl getUserMediaImpl;
+  private volatile GetUserMediaImpl getUserMediaImpl;
 
   private CameraUtils cameraUtils;
 
-  private AudioDeviceModule audioDeviceModule;
+  private volatile AudioDeviceModule audioDeviceModule;
 
-  private FlutterRTCFrameCryptor frameCryptor;
+  private volatile FlutterRTCFrameCryptor frameCryptor;
 
   private Activity activity;
 
@@ -163,6 +172,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
       peerConnectionDispose(connection);
     }
     mPeerConnectionObservers.clear();
+    registry.clearRemoteTracks();
   }
 
   /**
@@ -178,51 +188,67 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
    * - Audio switch manager
    *
    * Call this method when you want to completely release all WebRTC resources.
+   *
+   * Peer connections are closed, and streams, tracks and capturers stopped, in parallel on
+   * worker threads. Returns the duration of each stage, see {@link ParallelTeardown}.
    */
-  public void disposeAll() {
+  public ConstraintsMap disposeAll() {
     Log.d(TAG, "disposeAll() - releasing all WebRTC resources");
+    final ParallelTeardown teardown = new ParallelTeardown(dispatcher.getWorkers());
 
     // Dispose all peer connections first
+    List<Runnable> peerConnectionTasks = new ArrayList<>();
     for (final PeerConnectionObserver pco : mPeerConnectionObservers.values()) {
       if (pco != null) {
-        peerConnectionDispose(pco);
+        peerConnectionTasks.add(() -> peerConnectionDispose(pco));
       }
     }
+    teardown.runStage("peerConnections", peerConnectionTasks);
     mPeerConnectionObservers.clear();
+    registry.clearRemoteTracks();
 
     // Dispose all media streams
+    List<Runnable> streamTasks = new ArrayList<>();
     for (final MediaStream mediaStream : localStreams.values()) {
-      streamDispose(mediaStream);
-      mediaStream.dispose();
+      streamTasks.add(() -> {
+        streamDispose(mediaStream);
+        mediaStream.dispose();
+      });
     }
+    teardown.runStage("streams", streamTasks);
     localStreams.clear();
 
     // Dispose all tracks
+    List<Runnable> trackTasks = new ArrayList<>();
     for (final LocalTrack track : localTracks.values()) {
-      track.dispose();
+      trackTasks.add(track::dispose);
     }
+    teardown.runStage("tracks", trackTasks);
     localTracks.clear();
 
     // Dispose all renderers
-    for (int i = 0; i < renders.size(); i++) {
-      FlutterRTCVideoRenderer renderer = renders.valueAt(i);
-      if (renderer != null) {
-        renderer.Dispose();
+    dispatcher.runOnMainThread(() -> {
+      for (int i = 0; i < renders.size(); i++) {
+        FlutterRTCVideoRenderer renderer = renders.valueAt(i);
+        if (renderer != null) {
+          renderer.Dispose();
+        }
       }
-    }
-    renders.clear();
+      renders.clear();
+    });
 
     // Stop audio switch manager
     AudioSwitchManager.instance.stop();
 
     // Release camera resources
     if (getUserMediaImpl != null) {
-      getUserMediaImpl.dispose();
+      teardown.runStage("capturers", getUserMediaImpl.getCapturerStopTasks());
+      teardown.runSerialIfSettled("getUserMedia", getUserMediaImpl::dispose);
     }
 
     // Dispose audio device module
     if (audioDeviceModule != null) {
-      audioDeviceModule.release();
+      teardown.runSerialIfSettled("audioDeviceModule", audioDeviceModule::release);
       audioDeviceModule = null;
     }
 
@@ -237,7 +263,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
     // Finally dispose the peer connection factory
     if (mFactory != null) {
-      mFactory.dispose();
+      teardown.runSerialIfSettled("peerConnectionFactory", mFactory::dispose);
       mFactory = null;
     }
 
@@ -246,7 +272,9 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     playbackSamplesReadyCallbackAdapter = null;
     frameCryptor = null;
 
-    Log.d(TAG, "disposeAll() - all WebRTC resources released");
+    ConstraintsMap timings = teardown.toConstraintsMap();
+    Log.d(TAG, "disposeAll() - all WebRTC resources released " + timings.toMap());
+    return timings;
   }
 
   /**
@@ -259,37 +287,50 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
    * But it maintains the PeerConnection factory and core infrastructure
    * so you can easily start playing or watching new streams without
    * reinitializing everything.
+   *
+   * Streams, tracks and capturers are stopped in parallel on worker threads. Returns the
+   * duration of each stage, see {@link ParallelTeardown}.
    */
-  public void stopAll() {
+  public ConstraintsMap stopAll() {
     Log.d(TAG, "stopAll() - releasing WebRTC media resources but keeping infrastructure");
+    final ParallelTeardown teardown = new ParallelTeardown(dispatcher.getWorkers());
 
     // Release all media streams
+    List<Runnable> streamTasks = new ArrayList<>();
     for (final MediaStream mediaStream : localStreams.values()) {
-      streamDispose(mediaStream);
+      streamTasks.add(() -> streamDispose(mediaStream));
     }
+    teardown.runStage("streams", streamTasks);
     localStreams.clear();
 
     // Stop all tracks
+    List<Runnable> trackTasks = new ArrayList<>();
     for (final LocalTrack track : localTracks.values()) {
-      track.setEnabled(false);
-      if (track instanceof LocalVideoTrack) {
-        getUserMediaImpl.removeVideoCapturer(track.id());
-      }
-      track.dispose();
+      trackTasks.add(() -> {
+        track.setEnabled(false);
+        if (track instanceof LocalVideoTrack) {
+          getUserMediaImpl.removeVideoCapturer(track.id());
+        }
+        track.dispose();
+      });
     }
+    teardown.runStage("tracks", trackTasks);
     localTracks.clear();
 
     // Clean up all renderers by setting their streams to null
-    for (int i = 0; i < renders.size(); i++) {
-      FlutterRTCVideoRenderer renderer = renders.valueAt(i);
-      if (renderer != null) {
-        renderer.setStream(null, "");
+    dispatcher.runOnMainThread(() -> {
+      for (int i = 0; i < renders.size(); i++) {
+        FlutterRTCVideoRenderer renderer = renders.valueAt(i);
+        if (renderer != null) {
+          renderer.setStream(null, "");
+        }
       }
-    }
+    });
 
     // Stop camera resources
     if (getUserMediaImpl != null) {
-      getUserMediaImpl.dispose();
+      teardown.runStage("capturers", getUserMediaImpl.getCapturerStopTasks());
+      teardown.runSerialIfSettled("getUserMedia", getUserMediaImpl::dispose);
     }
 
     // Don't attempt to access private mediaRecorders field directly
@@ -300,22 +341,31 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
       AudioSwitchManager.instance.stop();
     }
 
-    Log.d(TAG, "stopAll() - all WebRTC media resources released but infrastructure maintained");
+    ConstraintsMap timings = teardown.toConstraintsMap();
+    Log.d(TAG, "stopAll() - all WebRTC media resources released but infrastructure maintained "
+        + timings.toMap());
+    return timings;
   }
 
   private void initialize(boolean bypassVoiceProcessing, int networkIgnoreMask, boolean forceSWCodec,
       List<String> forceSWCodecList,
-      @Nullable ConstraintsMap androidAudioConfiguration) {
+      @Nullable ConstraintsMap androidAudioConfiguration,
+      @Nullable ConstraintsMap encoderSelectionPolicy,
+      @Nullable ConstraintsMap bitrateAdjuster) {
     if (mFactory != null) {
       return;
     }
 
+    StartupTimings.mark(StartupTimings.INITIALIZE_STARTED);
+
     PeerConnectionFactory.initialize(
         InitializationOptions.builder(context)
             .setEnableInternalTracer(true)
             .createInitializationOptions());
 
     getUserMediaImpl = new GetUserMediaImpl(this, context);
+    getUserMediaImpl.setCaptureExecutor(dispatcher.getMediaQueue());
+    getUserMediaImpl.setReleaseExecutor(dispatcher.getWorkers());
 
     cameraUtils = new CameraUtils(getUserMediaImpl, activity);
 
@@ -398,7 +448,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     // Initialize EGL contexts required for HW acceleration.
     EglBase.Context eglContext = EglUtils.getRootEglBaseContext();
 
-    videoEncoderFactory = new CustomVideoEncoderFactory(eglContext, true, true);
+    videoEncoderFactory = new CustomVideoEncoderFactory(eglContext, true, true, bitrateAdjuster);
     videoDecoderFactory = new CustomVideoDecoderFactory(eglContext);
 
     factoryBuilder
@@ -409,6 +459,9 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     videoDecoderFactory.setForceSWCodecList(forceSWCodecList);
     videoEncoderFactory.setForceSWCodec(forceSWCodec);
     videoEncoderFactory.setForceSWCodecList(forceSWCodecList);
+    if (encoderSelectionPolicy != null) {
+      videoEncoderFactory.getSelectionPolicy().configure(encoderSelectionPolicy);
+    }
 
     audioProcessingController = new AudioProcessingController();
 
@@ -418,12 +471,28 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         .setAudioDeviceModule(audioDeviceModule)
         .createPeerConnectionFactory();
 
+    StartupTimings.mark(StartupTimings.FACTORY_CREATED);
+
   }
 
   @Override
   public void onMethodCall(MethodCall call, @NonNull Result notSafeResult) {
 
     final AnyThreadResult result = new AnyThreadResult(notSafeResult);
+    dispatcher.dispatch(call, result, () -> handleMethodCall(call, result));
+  }
+
+  /** Runs a call decoded by {@link BinaryCallHandler} on the thread its method belongs on. */
+  void dispatch(String method, @Nullable String peerConnectionId, Result result, Runnable task) {
+    dispatcher.dispatch(method, peerConnectionId, result, task);
+  }
+
+  @Nullable
+  FlutterRTCVideoRenderer getRenderer(long textureId) {
+    return renders.get(textureId);
+  }
+
+  private void handleMethodCall(MethodCall call, AnyThreadResult result) {
     switch (call.method) {
       case "initialize": {
         int networkIgnoreMask = Options.ADAPTER_TYPE_UNKNOWN;
@@ -481,12 +550,30 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
             && constraintsMap.getType("androidAudioConfiguration") == ObjectType.Map) {
           androidAudioConfiguration = constraintsMap.getMap("androidAudioConfiguration");
         }
+        ConstraintsMap encoderSelectionPolicy = null;
+        if (constraintsMap.hasKey("encoderSelectionPolicy")
+            && constraintsMap.getType("encoderSelectionPolicy") == ObjectType.Map) {
+          encoderSelectionPolicy = constraintsMap.getMap("encoderSelectionPolicy");
+        }
+        ConstraintsMap bitrateAdjuster = null;
+        if (constraintsMap.hasKey("bitrateAdjuster")) {
+          if (constraintsMap.getType("bitrateAdjuster") == ObjectType.Map) {
+            bitrateAdjuster = constraintsMap.getMap("bitrateAdjuster");
+          } else if (constraintsMap.getType("bitrateAdjuster") == ObjectType.String) {
+            bitrateAdjuster = new ConstraintsMap();
+            bitrateAdjuster.putString("type", constraintsMap.getString("bitrateAdjuster"));
+          }
+        }
+        if (constraintsMap.hasKey("videoRendererThreads")
+            && constraintsMap.getType("videoRendererThreads") == ObjectType.Number) {
+          RenderThreadPool.configure(constraintsMap.getInt("videoRendererThreads"));
+        }
         boolean enableBypassVoiceProcessing = false;
         if (options.get("bypassVoiceProcessing") != null) {
           enableBypassVoiceProcessing = (boolean) options.get("bypassVoiceProcessing");
         }
         initialize(enableBypassVoiceProcessing, networkIgnoreMask, forceSWCodec, forceSWCodecList,
-            androidAudioConfiguration);
+            androidAudioConfiguration, encoderSelectionPolicy, bitrateAdjuster);
         result.success(null);
         break;
       }
@@ -495,6 +582,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         Map<String, Object> configuration = call.argument("configuration");
         String peerConnectionId = peerConnectionInit(new ConstraintsMap(configuration),
             new ConstraintsMap((constraints)));
+        StartupTimings.mark(StartupTimings.FIRST_PEER_CONNECTION);
         ConstraintsMap res = new ConstraintsMap();
         res.putString("peerConnectionId", peerConnectionId);
         result.success(res.toMap());
@@ -506,6 +594,13 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         getUserMedia(constraintsMap, result);
         break;
       }
+      case "prewarmCamera": {
+        String deviceId = call.argument("deviceId");
+        Map<String, Object> constraints = call.argument("constraints");
+        getUserMediaImpl.prewarmCamera(deviceId,
+            new ConstraintsMap(constraints != null ? constraints : new HashMap<>()), result);
+        break;
+      }
       case "disposeGetUserMedia": {
         disposeGetUserMedia(result);
         break;
@@ -617,6 +712,22 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         peerConnectionAddICECandidate(new ConstraintsMap(candidate), peerConnectionId, result);
         break;
       }
+      case "addCandidates": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        List<Map<String, Object>> candidates = call.argument("candidates");
+        peerConnectionAddICECandidates(candidates, peerConnectionId, result);
+        break;
+      }
+      case "getEventBusStats": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null) {
+          resultError("getEventBusStats", "peerConnection is null", result);
+        } else {
+          result.success(pco.eventBus.toConstraintsMap().toMap());
+        }
+        break;
+      }
       case "getStats": {
         String peerConnectionId = call.argument("peerConnectionId");
         String trackId = call.argument("trackId");
@@ -697,8 +808,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
       }
       case "trackDispose": {
         String trackId = call.argument("trackId");
-        trackDispose(trackId);
-        result.success(null);
+        trackDispose(trackId, () -> result.success(null));
         break;
       }
       case "restartIce": {
@@ -1041,6 +1151,39 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         result.success(null);
         break;
       }
+      case "videoRendererSetViewport": {
+        Integer textureId = call.argument("textureId");
+        Integer width = call.argument("width");
+        Integer height = call.argument("height");
+        Boolean visible = call.argument("visible");
+        if (textureId == null || width == null || height == null) {
+          resultError("videoRendererSetViewport", "Missing required arguments", result);
+          return;
+        }
+        FlutterRTCVideoRenderer renderer = renders.get(textureId);
+        if (renderer == null) {
+          resultError("videoRendererSetViewport", "Renderer not found", result);
+          return;
+        }
+        result.success(renderer.setViewport(width, height, visible == null || visible).toMap());
+        break;
+      }
+      case "videoRendererSetVsyncPaced": {
+        Integer textureId = call.argument("textureId");
+        Boolean enabled = call.argument("enabled");
+        if (textureId == null || enabled == null) {
+          resultError("videoRendererSetVsyncPaced", "Missing required arguments", result);
+          return;
+        }
+        FlutterRTCVideoRenderer renderer = renders.get(textureId);
+        if (renderer == null) {
+          resultError("videoRendererSetVsyncPaced", "Renderer not found", result);
+          return;
+        }
+        renderer.setVsyncPaced(enabled, getDisplayRefreshRate());
+        result.success(null);
+        break;
+      }
       case "getLocalDescription": {
         String peerConnectionId = call.argument("peerConnectionId");
         PeerConnection peerConnection = getPeerConnection(peerConnectionId);
@@ -1181,6 +1324,16 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         getTransceivers(peerConnectionId, result);
         break;
       }
+      case "getTransceiverChanges": {
+        String peerConnectionId = call.argument("peerConnectionId");
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+          resultError("getTransceiverChanges", "peerConnection is null", result);
+        } else {
+          pco.getTransceiverChanges(result);
+        }
+        break;
+      }
       case "setPreferredInputDevice": {
         if (Build.VERSION.SDK_INT > Build.VERSION_CODES.LOLLIPOP_MR1) {
           String deviceId = call.argument("deviceId");
@@ -1267,17 +1420,36 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         break;
       }
       case "disposeAll": {
-        disposeAll();
-        result.success(null);
+        result.success(disposeAll().toMap());
         break;
       }
       case "stopAll": {
-        stopAll();
-        result.success(null);
+        result.success(stopAll().toMap());
+        break;
+      }
+      case "getCameraMetrics": {
+        result.success(getUserMediaImpl.getCameraMetrics().toMap());
+        break;
+      }
+      case "getStartupTimings": {
+        result.success(StartupTimings.toConstraintsMap().toMap());
+        break;
+      }
+      case "getMediaClockStats": {
+        result.success(getUserMediaImpl.getMediaClockStats().toMap());
+        break;
+      }
+      case "getEncoderSelectionReport": {
+        if (videoEncoderFactory == null) {
+          resultError("getEncoderSelectionReport", "video encoder factory is null", result);
+        } else {
+          result.success(videoEncoderFactory.getSelectionPolicy().toConstraintsMap().toMap());
+        }
         break;
       }
       default:
-        if (frameCryptor.handleMethodCall(call, result)) {
+        FlutterRTCFrameCryptor cryptor = frameCryptor;
+        if (cryptor != null && cryptor.handleMethodCall(call, result)) {
           break;
         }
         result.notImplemented();
@@ -1621,6 +1793,10 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
         parseMediaConstraints(constraints),
         observer);
     observer.setPeerConnection(peerConnection);
+    if (configuration.hasKey("candidateBatchWindowMs")
+        && configuration.getType("candidateBatchWindowMs") == ObjectType.Number) {
+      observer.setCandidateBatchWindow(configuration.getInt("candidateBatchWindowMs"));
+    }
     mPeerConnectionObservers.put(peerConnectionId, observer);
     return peerConnectionId;
   }
@@ -1643,13 +1819,34 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
   }
 
   public MediaStreamTrack getRemoteTrack(String trackId) {
-    for (Entry<String, PeerConnectionObserver> entry : mPeerConnectionObservers.entrySet()) {
-      PeerConnectionObserver pco = entry.getValue();
+    return findRemoteTrack(trackId, null);
+  }
+
+  /**
+   * Looks {@code trackId} up in the remote track index. Tracks that were not indexed (which
+   * should not happen) are searched the old way and indexed.
+   */
+  @Nullable
+  private MediaStreamTrack findRemoteTrack(String trackId, @Nullable String peerConnectionId) {
+    if (trackId == null) {
+      return null;
+    }
+    MediaObjectRegistry.RemoteTrackEntry entry = registry.getRemoteTrack(trackId, peerConnectionId);
+    if (entry != null) {
+      return entry.track;
+    }
+    for (Entry<String, PeerConnectionObserver> e : mPeerConnectionObservers.entrySet()) {
+      if (peerConnectionId != null && !e.getKey().equals(peerConnectionId)) {
+        continue;
+      }
+      PeerConnectionObserver pco = e.getValue();
       MediaStreamTrack track = pco.remoteTracks.get(trackId);
       if (track == null) {
         track = pco.getTransceiversTrack(trackId);
       }
       if (track != null) {
+        Log.w(TAG, "Remote track " + trackId + " was missing from the registry index");
+        registry.indexRemoteTrack(e.getKey(), track, null);
         return track;
       }
     }
@@ -1673,7 +1870,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
     do {
       uuid = UUID.randomUUID().toString();
-    } while (getTrackForId(uuid, null) != null);
+    } while (registry.containsTrack(uuid));
 
     return uuid;
   }
@@ -1683,6 +1880,11 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     return mFactory;
   }
 
+  @Override
+  public MediaObjectRegistry getRegistry() {
+    return registry;
+  }
+
   @Override
   public PeerConnectionObserver getPeerConnectionObserver(String peerConnectionId) {
     return mPeerConnectionObservers.get(peerConnectionId);
@@ -1731,28 +1933,10 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   public MediaStreamTrack getTrackForId(String trackId, String peerConnectionId) {
     LocalTrack localTrack = localTracks.get(trackId);
-    MediaStreamTrack mediaStreamTrack = null;
-    if (localTrack == null) {
-      for (Entry<String, PeerConnectionObserver> entry : mPeerConnectionObservers.entrySet()) {
-        if (peerConnectionId != null && entry.getKey().compareTo(peerConnectionId) != 0)
-          continue;
-
-        PeerConnectionObserver pco = entry.getValue();
-        mediaStreamTrack = pco.remoteTracks.get(trackId);
-
-        if (mediaStreamTrack == null) {
-          mediaStreamTrack = pco.getTransceiversTrack(trackId);
-        }
-
-        if (mediaStreamTrack != null) {
-          break;
-        }
-      }
-    } else {
-      mediaStreamTrack = localTrack.track;
+    if (localTrack != null) {
+      return localTrack.track;
     }
-
-    return mediaStreamTrack;
+    return findRemoteTrack(trackId, peerConnectionId);
   }
 
   public void getUserMedia(ConstraintsMap constraints, Result result) {
@@ -1855,18 +2039,22 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     result.success(resultMap);
   }
 
-  public void trackDispose(final String trackId) {
+  /** Disposes a local track, {@code onDisposed} runs once its camera (if any) has closed. */
+  public void trackDispose(final String trackId, Runnable onDisposed) {
     LocalTrack track = localTracks.get(trackId);
     if (track == null) {
       Log.d(TAG, "trackDispose() track is null");
+      onDisposed.run();
       return;
     }
     removeTrackForRendererById(trackId);
     track.setEnabled(false);
+    localTracks.remove(trackId);
     if (track instanceof LocalVideoTrack) {
-      getUserMediaImpl.removeVideoCapturer(trackId);
+      getUserMediaImpl.removeVideoCapturer(trackId, onDisposed);
+    } else {
+      onDisposed.run();
     }
-    localTracks.remove(trackId);
   }
 
   public void mediaStreamTrackSetEnabled(final String id, final boolean enabled, String peerConnectionId) {
@@ -1984,6 +2172,15 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
     return params;
   }
 
+  /** Refresh rate of the default display, which vsync-paced renderers follow. */
+  float getDisplayRefreshRate() {
+    DisplayManager displayManager =
+        (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+    Display display = displayManager != null
+        ? displayManager.getDisplay(Display.DEFAULT_DISPLAY) : null;
+    return display != null ? display.getRefreshRate() : 0f;
+  }
+
   private MediaConstraints defaultConstraints() {
     MediaConstraints constraints = new MediaConstraints();
     // TODO video media
@@ -2048,6 +2245,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
         @Override
         public void onCreateSuccess(final SessionDescription sdp) {
+          StartupTimings.mark(StartupTimings.FIRST_OFFER);
           ConstraintsMap params = new ConstraintsMap();
           params.putString("sdp", sdp.description);
           params.putString("type", sdp.type.canonicalForm());
@@ -2169,22 +2367,47 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   public void peerConnectionAddICECandidate(ConstraintsMap candidateMap, final String id,
       final Result result) {
-    boolean res = false;
+    int sdpMLineIndex = 0;
+    if (!candidateMap.isNull("sdpMLineIndex")) {
+      sdpMLineIndex = candidateMap.getInt("sdpMLineIndex");
+    }
+    IceCandidate candidate = new IceCandidate(
+        candidateMap.getString("sdpMid"),
+        sdpMLineIndex,
+        candidateMap.getString("candidate"));
+    peerConnectionAddICECandidate(candidate, id, result);
+  }
+
+  /** Applies a batch of remote candidates in one pass, returning whether each was added. */
+  public void peerConnectionAddICECandidates(List<Map<String, Object>> candidateMaps,
+      final String id, final Result result) {
+    PeerConnection peerConnection = getPeerConnection(id);
+    if (peerConnection == null) {
+      resultError("peerConnectionAddICECandidates", "peerConnection is null", result);
+      return;
+    }
+    if (candidateMaps == null) {
+      resultError("peerConnectionAddICECandidates", "candidates is null", result);
+      return;
+    }
+    ConstraintsArray added = new ConstraintsArray();
+    for (Map<String, Object> candidateMap : candidateMaps) {
+      ConstraintsMap map = new ConstraintsMap(candidateMap);
+      int sdpMLineIndex = map.isNull("sdpMLineIndex") ? 0 : map.getInt("sdpMLineIndex");
+      added.pushBoolean(peerConnection.addIceCandidate(
+          new IceCandidate(map.getString("sdpMid"), sdpMLineIndex, map.getString("candidate"))));
+    }
+    result.success(added.toArrayList());
+  }
+
+  public void peerConnectionAddICECandidate(IceCandidate candidate, final String id,
+      final Result result) {
     PeerConnection peerConnection = getPeerConnection(id);
-    if (peerConnection != null) {
-      int sdpMLineIndex = 0;
-      if (!candidateMap.isNull("sdpMLineIndex")) {
-        sdpMLineIndex = candidateMap.getInt("sdpMLineIndex");
-      }
-      IceCandidate candidate = new IceCandidate(
-          candidateMap.getString("sdpMid"),
-          sdpMLineIndex,
-          candidateMap.getString("candidate"));
-      res = peerConnection.addIceCandidate(candidate);
-    } else {
+    if (peerConnection == null) {
       resultError("peerConnectionAddICECandidate", "peerConnection is null", result);
+      return;
     }
-    result.success(res);
+    result.success(peerConnection.addIceCandidate(candidate));
   }
 
   public void peerConnectionGetStats(String trackId, String id, final Result result) {
@@ -2224,6 +2447,7 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
       if (peerConnectionDispose(pco)) {
 
         mPeerConnectionObservers.remove(id);
+        registry.unindexPeerConnection(id);
       }
     } else {
       Log.d(TAG, "peerConnectionDispose() peerConnectionObserver is null");
@@ -2312,7 +2536,13 @@ public class MethodCallHandlerImpl implements MethodCallHandler, StateProvider {
 
   @Override
   public void removeStreamFromAllRenderers(String streamId) {
-    removeStreamForRendererByIdAnyOwner(streamId);
+    // Called from peer connection calls, which run off the main thread.
+    dispatcher.runOnMainThread(() -> removeStreamForRendererByIdAnyOwner(streamId));
+  }
+
+  @Override
+  public void runOnPeerConnectionQueue(String peerConnectionId, Runnable task) {
+    dispatcher.runOnPeerConnectionQueue(peerConnectionId, task);
   }
 
   public void createDataChannel(final String peerConnectionId, String label, ConstraintsMap config,
@@ -1,5 +1,7 @@
 package com.cloudwebrtc.webrtc;
 
+import com.cloudwebrtc.webrtc.video.ScreenContentAnalyzer;
+
 import org.webrtc.SurfaceTextureHelper;
 import org.webrtc.CapturerObserver;
 import org.webrtc.ThreadUtils;
@@ -10,6 +12,7 @@ import org.webrtc.VideoSink;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Matrix;
 import android.media.projection.MediaProjection;
 import android.view.Surface;
 import android.view.WindowManager;
@@ -17,13 +20,21 @@ import android.app.Activity;
 import android.hardware.display.DisplayManager;
 import android.hardware.display.VirtualDisplay;
 import android.media.projection.MediaProjectionManager;
-import android.os.Looper;
 import android.os.Handler;
 import android.os.Build;
+import android.os.SystemClock;
 import android.view.Display;
 
+import androidx.annotation.Nullable;
+
 /**
- * An copy of ScreenCapturerAndroid to capture the screen content while being aware of device orientation
+ * An copy of ScreenCapturerAndroid to capture the screen content while being aware of device orientation.
+ *
+ * The output size stays fixed at the portrait capture size. When the device turns to landscape
+ * the VirtualDisplay is resized to the landscape size on the SurfaceTextureHelper thread, and its
+ * frames are transposed back to the portrait size through the texture transform matrix with a
+ * frame rotation of 270, so the encoder keeps its resolution and the receiver rotates the
+ * picture upright.
  */
 @TargetApi(21)
 public class OrientationAwareScreenCapturer implements VideoCapturer, VideoSink {
@@ -31,13 +42,19 @@ public class OrientationAwareScreenCapturer implements VideoCapturer, VideoSink
             DisplayManager.VIRTUAL_DISPLAY_FLAG_PUBLIC | DisplayManager.VIRTUAL_DISPLAY_FLAG_PRESENTATION;
     // DPI for VirtualDisplay, does not seem to matter for us.
     private static final int VIRTUAL_DISPLAY_DPI = 400;
+    private static final long DEFAULT_KEEP_ALIVE_INTERVAL_MS = 1000;
     private final Intent mediaProjectionPermissionResultData;
     private final MediaProjection.Callback mediaProjectionCallback;
+    // Portrait capture size, width <= height.
     private int width;
     private int height;
-    private int oldWidth;
-    private int oldHeight;
+    // Current VirtualDisplay size, swapped relative to width/height in landscape.
+    private int displayWidth;
+    private int displayHeight;
+    // Buffers queued before the last resize still have the previous size.
+    private long resizeTimestampNs = 0;
     private VirtualDisplay virtualDisplay;
+    private Surface surface;
     private SurfaceTextureHelper surfaceTextureHelper;
     private CapturerObserver capturerObserver;
     private long numCapturedFrames = 0;
@@ -45,7 +62,65 @@ public class OrientationAwareScreenCapturer implements VideoCapturer, VideoSink
     private boolean isDisposed = false;
     private MediaProjectionManager mediaProjectionManager;
     private WindowManager windowManager;
+    private DisplayManager displayManager;
     private boolean isPortrait;
+    // Screencast mode: frames whose content did not change are dropped, except one every
+    // keepAliveIntervalMs so the receiver and the encoder's rate control still see frames.
+    private boolean skipStaticFrames = true;
+    private long keepAliveIntervalMs = DEFAULT_KEEP_ALIVE_INTERVAL_MS;
+    private final ScreenContentAnalyzer contentAnalyzer = new ScreenContentAnalyzer();
+    // Changed fraction of the last sampled frame, stands in for frames between samples.
+    private float lastChangedFraction = 1f;
+    private long lastDeliveredTimeMs = 0;
+    private long lastTimestampNs = 0;
+    private boolean keepAliveDue = false;
+    // 0 leaves the rate to the VirtualDisplay.
+    private volatile int maxFramerate = 0;
+    // Frame rate cap of the last changeCaptureFormat, 0 for none. The profile never exceeds it.
+    private int requestedFramerate = 0;
+    private boolean adaptiveProfile = false;
+    @Nullable
+    private ScreenShareProfile.Listener profileListener;
+    @Nullable
+    private volatile ScreenShareProfile profile;
+
+    private final DisplayManager.DisplayListener displayListener = new DisplayManager.DisplayListener() {
+        @Override
+        public void onDisplayAdded(int displayId) {
+        }
+
+        @Override
+        public void onDisplayRemoved(int displayId) {
+        }
+
+        @Override
+        public void onDisplayChanged(int displayId) {
+            if (displayId == Display.DEFAULT_DISPLAY && !isDisposed) {
+                updateOrientation();
+            }
+        }
+    };
+
+    // A static screen produces no new buffers at all, re-sends the last one.
+    private final Runnable keepAliveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (surfaceTextureHelper != null && virtualDisplay != null) {
+                keepAliveDue = true;
+                surfaceTextureHelper.forceFrame();
+            }
+        }
+    };
+
+    // Re-sends the last buffer so a frame dropped between samples gets sampled after all.
+    private final Runnable resampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (surfaceTextureHelper != null && virtualDisplay != null) {
+                surfaceTextureHelper.forceFrame();
+            }
+        }
+    };
 
     /**
      * Constructs a new Screen Capturer.
@@ -62,17 +137,173 @@ public class OrientationAwareScreenCapturer implements VideoCapturer, VideoSink
         this.mediaProjectionCallback = mediaProjectionCallback;
     }
 
+    /**
+     * Enables or disables dropping frames whose content did not change. While the screen is
+     * static one frame is still delivered every {@code keepAliveIntervalMs}; changed content
+     * is delivered as soon as it arrives.
+     */
+    public void setSkipStaticFrames(boolean skipStaticFrames, long keepAliveIntervalMs) {
+        final Handler handler = surfaceTextureHelper != null ? surfaceTextureHelper.getHandler() : null;
+        if (handler == null) {
+            this.skipStaticFrames = skipStaticFrames;
+            this.keepAliveIntervalMs = keepAliveIntervalMs;
+            return;
+        }
+        handler.post(() -> {
+            this.skipStaticFrames = skipStaticFrames;
+            this.keepAliveIntervalMs = keepAliveIntervalMs;
+            contentAnalyzer.reset();
+            handler.removeCallbacks(keepAliveRunnable);
+            handler.removeCallbacks(resampleRunnable);
+        });
+    }
+
     public void onFrame(VideoFrame frame) {
         checkNotDisposed();
-        this.isPortrait = isDeviceOrientationPortrait();
-        final int max = Math.max(this.height, this.width);
-        final int min = Math.min(this.height, this.width);
-        if (this.isPortrait) {
-            changeCaptureFormat(min, max, 15);
+        if (frame.getTimestampNs() < resizeTimestampNs) {
+            return;
+        }
+        final long nowMs = SystemClock.elapsedRealtime();
+        float changed = 1f;
+        boolean sampled = false;
+        if ((skipStaticFrames || profile != null) && frame.getBuffer() instanceof VideoFrame.TextureBuffer) {
+            changed = contentAnalyzer.analyze((VideoFrame.TextureBuffer) frame.getBuffer(), nowMs);
+            sampled = changed != ScreenContentAnalyzer.NOT_SAMPLED;
+            if (sampled) {
+                lastChangedFraction = changed;
+            } else {
+                changed = lastChangedFraction;
+            }
+        }
+        if (sampled && profile != null && profile.onFrame(changed, nowMs)) {
+            applyProfile();
+        }
+        if (!keepAliveDue) {
+            if (skipStaticFrames && changed == 0f && nowMs - lastDeliveredTimeMs < keepAliveIntervalMs) {
+                if (!sampled) {
+                    // The content may have changed since the last sample, look again at the next one.
+                    Handler handler = surfaceTextureHelper.getHandler();
+                    handler.removeCallbacks(resampleRunnable);
+                    handler.postDelayed(resampleRunnable, contentAnalyzer.getNextSampleDelayMs(nowMs));
+                }
+                return;
+            }
+            // 10% slack so frames arriving at exactly the cap are not dropped for jitter.
+            final long minIntervalMs = maxFramerate > 0 ? 900 / maxFramerate : 0;
+            final long sinceLastMs = nowMs - lastDeliveredTimeMs;
+            if (sinceLastMs < minIntervalMs) {
+                // The screen may stay on this content, deliver it at the next slot.
+                Handler handler = surfaceTextureHelper.getHandler();
+                handler.removeCallbacks(keepAliveRunnable);
+                handler.postDelayed(keepAliveRunnable, minIntervalMs - sinceLastMs);
+                return;
+            }
+        }
+        deliverFrame(frame, nowMs);
+    }
+
+    /**
+     * Enables the content-adaptive profile: the capture size and frame rate follow
+     * {@link ScreenShareProfile}, and {@code listener} is told about each switch so the sender
+     * encodings can follow as well. The profile only ever lowers the format last requested
+     * through {@link #startCapture} or {@link #changeCaptureFormat}. Must be called before
+     * {@link #startCapture}.
+     */
+    void setAdaptiveProfile(boolean enabled, @Nullable ScreenShareProfile.Listener listener) {
+        this.adaptiveProfile = enabled;
+        this.profileListener = listener;
+    }
+
+    @Nullable
+    ScreenShareProfile.Mode getProfileMode() {
+        final ScreenShareProfile current = profile;
+        return current != null ? current.getMode() : null;
+    }
+
+    private void applyProfile() {
+        setCaptureSize(profile.getWidth(), profile.getHeight());
+        maxFramerate = getProfileFramerate();
+        resizeVirtualDisplay();
+        if (profileListener != null) {
+            profileListener.onModeChanged(profile, maxFramerate);
+        }
+    }
+
+    private int getProfileFramerate() {
+        final int modeFramerate = profile.getMode().maxFramerate;
+        return requestedFramerate > 0 ? Math.min(requestedFramerate, modeFramerate) : modeFramerate;
+    }
+
+    private void deliverFrame(VideoFrame frame, long nowMs) {
+        // A forced keep-alive frame carries the timestamp of the buffer it repeats.
+        final long timestampNs = frame.getTimestampNs() > lastTimestampNs
+                ? frame.getTimestampNs()
+                : System.nanoTime();
+        final VideoFrame.Buffer buffer = frame.getBuffer();
+        final VideoFrame outputFrame;
+        if (buffer instanceof VideoFrame.TextureBuffer && buffer.getWidth() > buffer.getHeight()) {
+            outputFrame = new VideoFrame(transpose((VideoFrame.TextureBuffer) buffer),
+                    (frame.getRotation() + 270) % 360, timestampNs);
         } else {
-            changeCaptureFormat(max, min, 15);
+            buffer.retain();
+            outputFrame = new VideoFrame(buffer, frame.getRotation(), timestampNs);
+        }
+        capturerObserver.onFrameCaptured(outputFrame);
+        outputFrame.release();
+        lastTimestampNs = timestampNs;
+        numCapturedFrames++;
+        lastDeliveredTimeMs = nowMs;
+        keepAliveDue = false;
+        if (skipStaticFrames) {
+            Handler handler = surfaceTextureHelper.getHandler();
+            handler.removeCallbacks(keepAliveRunnable);
+            handler.postDelayed(keepAliveRunnable, keepAliveIntervalMs);
         }
-        capturerObserver.onFrameCaptured(frame);
+    }
+
+    /**
+     * Rotates a landscape buffer by 90 degrees into the portrait output size. Only the transform
+     * matrix changes, the rotation is applied when the encoder or a renderer draws the texture.
+     */
+    private static VideoFrame.TextureBuffer transpose(VideoFrame.TextureBuffer buffer) {
+        final Matrix transformMatrix = new Matrix();
+        transformMatrix.preTranslate(0.5f, 0.5f);
+        transformMatrix.preRotate(90);
+        transformMatrix.preTranslate(-0.5f, -0.5f);
+        return buffer.applyTransformMatrix(transformMatrix, buffer.getHeight(), buffer.getWidth());
+    }
+
+    /** Called on display changes only, the rotation query is a binder call. */
+    private void updateOrientation() {
+        final boolean portrait = isDeviceOrientationPortrait();
+        if (portrait != this.isPortrait) {
+            this.isPortrait = portrait;
+            resizeVirtualDisplay();
+        }
+    }
+
+    /**
+     * Resizes the VirtualDisplay and the texture to the current orientation together on the
+     * SurfaceTextureHelper thread, keeping the same Surface.
+     */
+    private void resizeVirtualDisplay() {
+        ThreadUtils.invokeAtFrontUninterruptibly(surfaceTextureHelper.getHandler(), new Runnable() {
+            @Override
+            public void run() {
+                final int targetWidth = isPortrait ? width : height;
+                final int targetHeight = isPortrait ? height : width;
+                if (virtualDisplay == null
+                        || (targetWidth == displayWidth && targetHeight == displayHeight)) {
+                    return;
+                }
+                displayWidth = targetWidth;
+                displayHeight = targetHeight;
+                surfaceTextureHelper.setTextureSize(displayWidth, displayHeight);
+                virtualDisplay.resize(displayWidth, displayHeight, VIRTUAL_DISPLAY_DPI);
+                resizeTimestampNs = System.nanoTime();
+                contentAnalyzer.reset();
+            }
+        });
     }
 
     private boolean isDeviceOrientationPortrait() {
@@ -104,6 +335,8 @@ public class OrientationAwareScreenCapturer implements VideoCapturer, VideoSink
                 Context.WINDOW_SERVICE);
         this.mediaProjectionManager = (MediaProjectionManager) applicationContext.getSystemService(
                 Context.MEDIA_PROJECTION_SERVICE);
+        this.displayManager = (DisplayManager) applicationContext.getSystemService(
+                Context.DISPLAY_SERVICE);
     }
 
     @Override
@@ -112,12 +345,12 @@ public class OrientationAwareScreenCapturer implements VideoCapturer, VideoSink
         //checkNotDisposed();
 
         this.isPortrait = isDeviceOrientationPortrait();
-        if (this.isPortrait) {
-            this.width = width;
-            this.height = height;
-        } else {
-            this.height = width;
-            this.width = height;
+        setCaptureSize(width, height);
+        requestedFramerate = 0;
+        if (adaptiveProfile) {
+            profile = new ScreenShareProfile(this.width, this.height);
+            maxFramerate = getProfileFramerate();
+            setCaptureSize(profile.getWidth(), profile.getHeight());
         }
 
         mediaProjection = mediaProjectionManager.getMediaProjection(
@@ -129,6 +362,9 @@ public class OrientationAwareScreenCapturer implements VideoCapturer, VideoSink
         createVirtualDisplay();
         capturerObserver.onCapturerStarted(true);
         surfaceTextureHelper.startListening(this);
+        displayManager.registerDisplayListener(displayListener, surfaceTextureHelper.getHandler());
+        // Catches a rotation between the orientation check above and the registration.
+        surfaceTextureHelper.getHandler().post(this::updateOrientation);
     }
 
     @Override
@@ -137,12 +373,20 @@ public class OrientationAwareScreenCapturer implements VideoCapturer, VideoSink
         ThreadUtils.invokeAtFrontUninterruptibly(surfaceTextureHelper.getHandler(), new Runnable() {
             @Override
             public void run() {
+                displayManager.unregisterDisplayListener(displayListener);
+                surfaceTextureHelper.getHandler().removeCallbacks(keepAliveRunnable);
+                surfaceTextureHelper.getHandler().removeCallbacks(resampleRunnable);
                 surfaceTextureHelper.stopListening();
+                contentAnalyzer.release();
                 capturerObserver.onCapturerStopped();
                 if (virtualDisplay != null) {
                     virtualDisplay.release();
                     virtualDisplay = null;
                 }
+                if (surface != null) {
+                    surface.release();
+                    surface = null;
+                }
                 if (mediaProjection != null) {
                     // Unregister the callback before stopping, otherwise the callback recursively
                     // calls this method.
@@ -160,60 +404,46 @@ public class OrientationAwareScreenCapturer implements VideoCapturer, VideoSink
     }
 
     /**
-     * Changes output video format. This method can be used to scale the output
-     * video, or to change orientation when the captured screen is rotated for example.
+     * Changes output video format. The size is taken as the portrait capture size and applied in
+     * the current orientation right away; the output keeps the new size across rotations.
      *
-     * @param width            new output video width
-     * @param height           new output video height
-     * @param ignoredFramerate ignored
+     * @param width     new output video width
+     * @param height    new output video height
+     * @param framerate maximum frame rate, 0 for no limit
      */
     @Override
     public synchronized void changeCaptureFormat(
-            final int width, final int height, final int ignoredFramerate) {
+            final int width, final int height, final int framerate) {
         checkNotDisposed();
-        if (this.oldWidth != width || this.oldHeight != height) {
-            this.oldWidth = width;
-            this.oldHeight = height;
-
-            if (oldHeight > oldWidth) {
-                ThreadUtils.invokeAtFrontUninterruptibly(surfaceTextureHelper.getHandler(), new Runnable() {
-                    @Override
-                    public void run() {
-                        if (virtualDisplay != null && surfaceTextureHelper != null) {
-                            virtualDisplay.setSurface(new Surface(surfaceTextureHelper.getSurfaceTexture()));
-                            surfaceTextureHelper.setTextureSize(oldWidth, oldHeight);
-                            virtualDisplay.resize(oldWidth, oldHeight, VIRTUAL_DISPLAY_DPI);
-                        }
-                    }
-                });
-            }
-
-            if (oldWidth > oldHeight) {
-                surfaceTextureHelper.setTextureSize(oldWidth, oldHeight);
-                virtualDisplay.setSurface(new Surface(surfaceTextureHelper.getSurfaceTexture()));
-                final Handler handler = new Handler(Looper.getMainLooper());
-                handler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        ThreadUtils.invokeAtFrontUninterruptibly(surfaceTextureHelper.getHandler(), new Runnable() {
-                            @Override
-                            public void run() {
-                                if (virtualDisplay != null && surfaceTextureHelper != null) {
-                                    virtualDisplay.resize(oldWidth, oldHeight, VIRTUAL_DISPLAY_DPI);
-                                }
-                            }
-                        });
-                    }
-                }, 700);
-            }
+        setCaptureSize(width, height);
+        final ScreenShareProfile current = profile;
+        if (current == null) {
+            maxFramerate = framerate;
+            resizeVirtualDisplay();
+            return;
         }
+        // The profile rescales from the new format instead of the one it started with.
+        final int baseWidth = this.width;
+        final int baseHeight = this.height;
+        ThreadUtils.invokeAtFrontUninterruptibly(surfaceTextureHelper.getHandler(), () -> {
+            requestedFramerate = framerate;
+            current.setBaseSize(baseWidth, baseHeight);
+            applyProfile();
+        });
+    }
+
+    private void setCaptureSize(int width, int height) {
+        this.width = Math.min(width, height);
+        this.height = Math.max(width, height);
     }
 
     private void createVirtualDisplay() {
-        surfaceTextureHelper.setTextureSize(width, height);
-        surfaceTextureHelper.getSurfaceTexture().setDefaultBufferSize(width, height);
-        virtualDisplay = mediaProjection.createVirtualDisplay("WebRTC_ScreenCapture", width, height,
-                VIRTUAL_DISPLAY_DPI, DISPLAY_FLAGS, new Surface(surfaceTextureHelper.getSurfaceTexture()),
+        displayWidth = isPortrait ? width : height;
+        displayHeight = isPortrait ? height : width;
+        surfaceTextureHelper.setTextureSize(displayWidth, displayHeight);
+        surface = new Surface(surfaceTextureHelper.getSurfaceTexture());
+        virtualDisplay = mediaProjection.createVirtualDisplay("WebRTC_ScreenCapture", displayWidth,
+                displayHeight, VIRTUAL_DISPLAY_DPI, DISPLAY_FLAGS, surface,
                 null /* callback */, null /* callback handler */);
     }
 
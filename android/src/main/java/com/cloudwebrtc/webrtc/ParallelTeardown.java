@@ -0,0 +1,94 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the stages of {@code disposeAll} and {@code stopAll}. The tasks of a stage, such as
+ * closing each peer connection or stopping each capturer, run in parallel on a worker pool and
+ * the stage ends when all of them have finished or {@code STAGE_TIMEOUT_MS} has passed. Tasks of
+ * a timed out stage keep running, so shared native objects they may still use, such as the
+ * factory, are only disposed through {@link #runSerialIfSettled} and leaked after a timeout. The
+ * duration of every stage is recorded for the caller.
+ */
+class ParallelTeardown {
+  private static final String TAG = "ParallelTeardown";
+  private static final long STAGE_TIMEOUT_MS = 5000;
+
+  private final Executor executor;
+  private final long startMs = SystemClock.elapsedRealtime();
+  private final ConstraintsMap stages = new ConstraintsMap(new LinkedHashMap<>());
+  private final ConstraintsArray timedOut = new ConstraintsArray();
+  private final ConstraintsArray skipped = new ConstraintsArray();
+
+  ParallelTeardown(Executor executor) {
+    this.executor = executor;
+  }
+
+  void runStage(String name, Collection<Runnable> tasks) {
+    long stageStartMs = SystemClock.elapsedRealtime();
+    CountDownLatch latch = new CountDownLatch(tasks.size());
+    for (Runnable task : tasks) {
+      executor.execute(() -> {
+        try {
+          task.run();
+        } catch (Exception e) {
+          Log.e(TAG, "Teardown task of stage " + name + " failed", e);
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+    try {
+      if (!latch.await(STAGE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+        Log.w(TAG, "Stage " + name + " timed out with " + latch.getCount() + " tasks pending");
+        timedOut.pushString(name);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    stages.putLong(name, SystemClock.elapsedRealtime() - stageStartMs);
+  }
+
+  void runSerial(String name, Runnable task) {
+    long stageStartMs = SystemClock.elapsedRealtime();
+    try {
+      task.run();
+    } catch (Exception e) {
+      Log.e(TAG, "Teardown stage " + name + " failed", e);
+    }
+    stages.putLong(name, SystemClock.elapsedRealtime() - stageStartMs);
+  }
+
+  /** Runs {@code task} like {@link #runSerial} unless an earlier stage timed out. */
+  void runSerialIfSettled(String name, Runnable task) {
+    if (timedOut.size() > 0) {
+      Log.w(TAG, "Skipping stage " + name + ", tasks of a timed out stage may still use it");
+      skipped.pushString(name);
+      return;
+    }
+    runSerial(name, task);
+  }
+
+  /**
+   * {@code stages} (stage name to milliseconds, in order), {@code totalMs}, {@code timedOut} and
+   * {@code skipped}.
+   */
+  ConstraintsMap toConstraintsMap() {
+    ConstraintsMap params = new ConstraintsMap();
+    params.putMap("stages", stages.toMap());
+    params.putLong("totalMs", SystemClock.elapsedRealtime() - startMs);
+    params.putArray("timedOut", timedOut.toArrayList());
+    params.putArray("skipped", skipped.toArrayList());
+    return params;
+  }
+}
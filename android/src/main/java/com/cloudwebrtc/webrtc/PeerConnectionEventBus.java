@@ -0,0 +1,131 @@
+package com.cloudwebrtc.webrtc;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.flutter.plugin.common.EventChannel;
+
+/**
+ * Delivers the events of one peer connection to its event channel.
+ *
+ * Events are kept in one queue and delivered in the order they were posted. Events posted before
+ * the main looper gets to the pending delivery are sent together as one list; a single event is
+ * sent as is. The delivery is an asynchronous message, so it is not held back behind the sync
+ * barrier of a frame being drawn. A state change moves the pending delivery to the front of the
+ * main looper queue; it still flushes the whole queue, so the order of events is kept.
+ */
+class PeerConnectionEventBus {
+  private static final Set<String> PRIORITY_EVENTS = new HashSet<>(Arrays.asList(
+      "signalingState", "iceGatheringState", "iceConnectionState", "peerConnectionState",
+      "onRenegotiationNeeded"));
+
+  private static final class PendingEvent {
+    final Map<String, Object> event;
+    final long postedNs;
+
+    PendingEvent(Map<String, Object> event) {
+      this.event = event;
+      this.postedNs = SystemClock.elapsedRealtimeNanos();
+    }
+  }
+
+  private final Handler handler = new Handler(Looper.getMainLooper());
+  private final Runnable flushRunnable = this::flush;
+  private final Runnable priorityFlushRunnable = this::flush;
+  private final ArrayDeque<PendingEvent> queue = new ArrayDeque<>();
+  @Nullable
+  private EventChannel.EventSink sink;
+  private boolean flushScheduled;
+  private boolean priorityFlushScheduled;
+  private long batches;
+  private long priorityFlushes;
+  private long delivered;
+  private long dropped;
+  private long totalLatencyNs;
+  private long maxLatencyNs;
+  private int maxQueueDepth;
+
+  /** Sets the sink of the event channel, only called on the main thread. */
+  synchronized void setSink(@Nullable EventChannel.EventSink sink) {
+    this.sink = sink;
+  }
+
+  synchronized void post(Map<String, Object> event) {
+    queue.addLast(new PendingEvent(event));
+    maxQueueDepth = Math.max(maxQueueDepth, queue.size());
+    if (PRIORITY_EVENTS.contains(event.get("event"))) {
+      if (!priorityFlushScheduled) {
+        priorityFlushScheduled = true;
+        flushScheduled = true;
+        handler.removeCallbacks(flushRunnable);
+        Message message = Message.obtain(handler, priorityFlushRunnable);
+        message.setAsynchronous(true);
+        handler.sendMessageAtFrontOfQueue(message);
+      }
+    } else if (!flushScheduled) {
+      flushScheduled = true;
+      Message message = Message.obtain(handler, flushRunnable);
+      message.setAsynchronous(true);
+      handler.sendMessage(message);
+    }
+  }
+
+  private void flush() {
+    EventChannel.EventSink target;
+    List<Object> batch = new ArrayList<>();
+    synchronized (this) {
+      if (priorityFlushScheduled) {
+        priorityFlushes++;
+      }
+      flushScheduled = false;
+      priorityFlushScheduled = false;
+      if (queue.isEmpty()) {
+        return;
+      }
+      long nowNs = SystemClock.elapsedRealtimeNanos();
+      PendingEvent pending;
+      while ((pending = queue.pollFirst()) != null) {
+        long latencyNs = nowNs - pending.postedNs;
+        totalLatencyNs += latencyNs;
+        maxLatencyNs = Math.max(maxLatencyNs, latencyNs);
+        batch.add(pending.event);
+      }
+      target = sink;
+      if (target == null) {
+        dropped += batch.size();
+        return;
+      }
+      delivered += batch.size();
+      batches++;
+    }
+    target.success(batch.size() == 1 ? batch.get(0) : batch);
+  }
+
+  synchronized ConstraintsMap toConstraintsMap() {
+    ConstraintsMap params = new ConstraintsMap();
+    params.putInt("queueDepth", queue.size());
+    params.putInt("maxQueueDepth", maxQueueDepth);
+    params.putLong("batches", batches);
+    params.putLong("priorityFlushes", priorityFlushes);
+    params.putLong("delivered", delivered);
+    params.putLong("dropped", dropped);
+    long flushed = delivered + dropped;
+    params.putDouble("averageLatencyMs", flushed == 0 ? 0 : totalLatencyNs / 1e6 / flushed);
+    params.putDouble("maxLatencyMs", maxLatencyNs / 1e6);
+    return params;
+  }
+}
@@ -1,13 +1,15 @@
 package com.cloudwebrtc.webrtc;
 
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.Nullable;
 
 import com.cloudwebrtc.webrtc.audio.AudioSwitchManager;
-import com.cloudwebrtc.webrtc.utils.AnyThreadSink;
 import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
 import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.NullSafeConcurrentMap;
 import com.cloudwebrtc.webrtc.utils.Utils;
 
 import io.flutter.plugin.common.BinaryMessenger;
@@ -21,10 +23,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 
 import org.webrtc.AudioTrack;
@@ -51,12 +55,24 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   private final String id;
   private PeerConnection peerConnection;
   private final PeerConnection.RTCConfiguration configuration;
-  final Map<String, MediaStream> remoteStreams = new HashMap<>();
-  final Map<String, MediaStreamTrack> remoteTracks = new HashMap<>();
-  final Map<String, RtpTransceiver> transceivers = new HashMap<>();
+  final Map<String, MediaStream> remoteStreams = new NullSafeConcurrentMap<>();
+  final Map<String, MediaStreamTrack> remoteTracks = new NullSafeConcurrentMap<>();
+  final Map<String, RtpTransceiver> transceivers = new NullSafeConcurrentMap<>();
+  // Serialized RTP parameters by sender or receiver, dropped whenever they may have changed.
+  private final Map<String, Map<String, Object>> rtpParametersCache = new NullSafeConcurrentMap<>();
+  // Transceivers as last returned by getTransceiverChanges, by sender id.
+  private final Map<String, Map<String, Object>> reportedTransceivers = new NullSafeConcurrentMap<>();
+  // Ids given to transceivers that had no mid yet, by sender id.
+  private final Map<String, String> unnegotiatedTransceiverIds = new NullSafeConcurrentMap<>();
+  // Encoding limits the app had set on screen-share senders before a profile was applied.
+  private final Map<String, AppEncodingLimits> appEncodingLimits = new NullSafeConcurrentMap<>();
   private final StateProvider stateProvider;
   private final EventChannel eventChannel;
-  private EventChannel.EventSink eventSink;
+  final PeerConnectionEventBus eventBus = new PeerConnectionEventBus();
+  private final Handler candidateHandler = new Handler(Looper.getMainLooper());
+  private final Runnable flushCandidatesRunnable = this::flushCandidates;
+  private final List<IceCandidate> pendingCandidates = new ArrayList<>();
+  private volatile int candidateBatchWindowMs = 0;
 
   PeerConnectionObserver(PeerConnection.RTCConfiguration configuration, StateProvider stateProvider,
       BinaryMessenger messenger, String id) {
@@ -77,12 +93,12 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   @Override
   public void onListen(Object o, EventChannel.EventSink sink) {
-    eventSink = new AnyThreadSink(sink);
+    eventBus.setSink(sink);
   }
 
   @Override
   public void onCancel(Object o) {
-    eventSink = null;
+    eventBus.setSink(null);
   }
 
   public PeerConnection getPeerConnection() {
@@ -97,9 +113,23 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     peerConnection.restartIce();
   }
 
+  /**
+   * Coalesces local candidates gathered within {@code windowMs}, or until gathering completes,
+   * into one {@code onCandidates} event. 0 sends every candidate as its own {@code onCandidate}
+   * event.
+   */
+  void setCandidateBatchWindow(int windowMs) {
+    candidateBatchWindowMs = Math.max(0, windowMs);
+  }
+
   void close() {
     peerConnection.close();
 
+    candidateHandler.removeCallbacks(flushCandidatesRunnable);
+    synchronized (pendingCandidates) {
+      pendingCandidates.clear();
+    }
+
     // Clean up renderers for all remote streams before clearing them
     for (MediaStream stream : remoteStreams.values()) {
       stateProvider.removeStreamFromAllRenderers(stream.getId());
@@ -108,6 +138,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     remoteStreams.clear();
     remoteTracks.clear();
     dataChannels.clear();
+    stateProvider.getRegistry().unindexPeerConnection(id);
   }
 
   void dispose() {
@@ -325,12 +356,42 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   @Override
   public void onIceCandidate(final IceCandidate candidate) {
     Log.d(TAG, "onIceCandidate");
+    int windowMs = candidateBatchWindowMs;
+    if (windowMs > 0) {
+      synchronized (pendingCandidates) {
+        pendingCandidates.add(candidate);
+        if (pendingCandidates.size() == 1) {
+          candidateHandler.postDelayed(flushCandidatesRunnable, windowMs);
+        }
+      }
+      return;
+    }
     ConstraintsMap params = new ConstraintsMap();
     params.putString("event", "onCandidate");
     params.putMap("candidate", candidateToMap(candidate));
     sendEvent(params);
   }
 
+  private void flushCandidates() {
+    List<IceCandidate> batch;
+    synchronized (pendingCandidates) {
+      candidateHandler.removeCallbacks(flushCandidatesRunnable);
+      if (pendingCandidates.isEmpty()) {
+        return;
+      }
+      batch = new ArrayList<>(pendingCandidates);
+      pendingCandidates.clear();
+    }
+    ConstraintsArray candidates = new ConstraintsArray();
+    for (IceCandidate candidate : batch) {
+      candidates.pushMap(new ConstraintsMap(candidateToMap(candidate)));
+    }
+    ConstraintsMap params = new ConstraintsMap();
+    params.putString("event", "onCandidates");
+    params.putArray("candidates", candidates.toArrayList());
+    sendEvent(params);
+  }
+
   @Override
   public void onSelectedCandidatePairChanged(CandidatePairChangeEvent event) {
     Log.d(TAG, "onSelectedCandidatePairChanged");
@@ -370,6 +431,10 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   @Override
   public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
     Log.d(TAG, "onIceGatheringChange" + iceGatheringState.name());
+    if (iceGatheringState == PeerConnection.IceGatheringState.COMPLETE) {
+      // Deliver batched candidates before the state change.
+      flushCandidates();
+    }
     ConstraintsMap params = new ConstraintsMap();
     params.putString("event", "iceGatheringState");
     params.putString("state", Utils.iceGatheringStateString(iceGatheringState));
@@ -420,6 +485,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       String trackId = track.id();
 
       remoteTracks.put(trackId, track);
+      stateProvider.getRegistry().indexRemoteTrack(id, track, null);
 
       ConstraintsMap trackInfo = new ConstraintsMap();
       trackInfo.putString("id", trackId);
@@ -435,6 +501,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       String trackId = track.id();
 
       remoteTracks.put(trackId, track);
+      stateProvider.getRegistry().indexRemoteTrack(id, track, null);
 
       ConstraintsMap trackInfo = new ConstraintsMap();
       trackInfo.putString("id", trackId);
@@ -452,9 +519,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   }
 
   void sendEvent(ConstraintsMap event) {
-    if (eventSink != null) {
-      eventSink.success(event.toMap());
-    }
+    eventBus.post(event.toMap());
   }
 
   @Override
@@ -464,9 +529,11 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
     for (VideoTrack track : mediaStream.videoTracks) {
       this.remoteTracks.remove(track.id());
+      unindexRemoteTrack(track.id());
     }
     for (AudioTrack track : mediaStream.audioTracks) {
       this.remoteTracks.remove(track.id());
+      unindexRemoteTrack(track.id());
     }
 
     ConstraintsMap params = new ConstraintsMap();
@@ -475,13 +542,48 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     sendEvent(params);
   }
 
+  private void unindexRemoteTrack(String trackId) {
+    // With unified plan the receiver track outlives the stream and stays with its transceiver.
+    if (this.configuration.sdpSemantics != PeerConnection.SdpSemantics.UNIFIED_PLAN) {
+      stateProvider.getRegistry().unindexRemoteTrack(id, trackId);
+    }
+  }
+
+  /**
+   * The mid of {@code transceiver}, or before negotiation an id kept per sender, so the
+   * transceiver has the same id in every call until it gets a mid.
+   */
+  private String getTransceiverId(RtpTransceiver transceiver) {
+    String transceiverId = transceiver.getMid();
+    if (transceiverId != null) {
+      return transceiverId;
+    }
+    String senderId = transceiver.getSender().id();
+    transceiverId = unnegotiatedTransceiverIds.get(senderId);
+    if (transceiverId == null) {
+      transceiverId = stateProvider.getNextStreamUUID();
+      unnegotiatedTransceiverIds.put(senderId, transceiverId);
+      transceivers.put(transceiverId, transceiver);
+    }
+    return transceiverId;
+  }
+
+  private void indexTransceiver(RtpTransceiver transceiver) {
+    RtpReceiver receiver = transceiver.getReceiver();
+    if (receiver != null) {
+      stateProvider.getRegistry().indexRemoteTrack(id, receiver.track(), transceiver);
+    }
+  }
+
   @Override
   public void onTrack(RtpTransceiver transceiver) {
+    indexTransceiver(transceiver);
   }
 
   @Override
   public void onAddTrack(RtpReceiver receiver, MediaStream[] mediaStreams) {
     Log.d(TAG, "onAddTrack");
+    stateProvider.getRegistry().indexRemoteTrack(id, receiver.track(), null);
     // for plan-b
     for (MediaStream stream : mediaStreams) {
       String streamId = stream.getId();
@@ -525,11 +627,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       List<RtpTransceiver> transceivers = peerConnection.getTransceivers();
       for (RtpTransceiver transceiver : transceivers) {
         if (transceiver.getReceiver() != null && receiver.id().equals(transceiver.getReceiver().id())) {
-          String transceiverId = transceiver.getMid();
-          if (null == transceiverId) {
-            transceiverId = stateProvider.getNextStreamUUID();
-            this.transceivers.put(transceiverId, transceiver);
-          }
+          indexTransceiver(transceiver);
+          String transceiverId = getTransceiverId(transceiver);
           params.putMap("transceiver", transceiverToMap(transceiverId, transceiver));
         }
       }
@@ -582,6 +681,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   @Override
   public void onRenegotiationNeeded() {
+    rtpParametersCache.clear();
     ConstraintsMap params = new ConstraintsMap();
     params.putString("event", "onRenegotiationNeeded");
     sendEvent(params);
@@ -589,6 +689,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
 
   @Override
   public void onSignalingChange(PeerConnection.SignalingState signalingState) {
+    // Applying a description renegotiates codecs, encodings and header extensions.
+    rtpParametersCache.clear();
     ConstraintsMap params = new ConstraintsMap();
     params.putString("event", "signalingState");
     params.putString("state", Utils.signalingStateString(signalingState));
@@ -897,12 +999,37 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     return info.toMap();
   }
 
+  private Map<String, Object> senderParametersToMap(RtpSender sender) {
+    String key = "sender:" + sender.id();
+    Map<String, Object> parameters = rtpParametersCache.get(key);
+    if (parameters == null) {
+      parameters = rtpParametersToMap(sender.getParameters());
+      rtpParametersCache.put(key, parameters);
+    }
+    return parameters;
+  }
+
+  private Map<String, Object> receiverParametersToMap(RtpReceiver receiver) {
+    String key = "receiver:" + receiver.id();
+    Map<String, Object> parameters = rtpParametersCache.get(key);
+    if (parameters == null) {
+      parameters = rtpParametersToMap(receiver.getParameters());
+      rtpParametersCache.put(key, parameters);
+    }
+    return parameters;
+  }
+
+  private void invalidateRtpParameters(RtpTransceiver transceiver) {
+    rtpParametersCache.remove("sender:" + transceiver.getSender().id());
+    rtpParametersCache.remove("receiver:" + transceiver.getReceiver().id());
+  }
+
   private Map<String, Object> rtpSenderToMap(RtpSender sender) {
     ConstraintsMap info = new ConstraintsMap();
     info.putString("senderId", sender.id());
     info.putBoolean("ownsTrack", true);
     info.putMap("dtmfSender", dtmfSenderToMap(sender.dtmf(), sender.id()));
-    info.putMap("rtpParameters", rtpParametersToMap(sender.getParameters()));
+    info.putMap("rtpParameters", senderParametersToMap(sender));
     info.putMap("track", mediaTrackToMap(sender.track()));
     return info.toMap();
   }
@@ -910,7 +1037,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
   private Map<String, Object> rtpReceiverToMap(RtpReceiver receiver) {
     ConstraintsMap info = new ConstraintsMap();
     info.putString("receiverId", receiver.id());
-    info.putMap("rtpParameters", rtpParametersToMap(receiver.getParameters()));
+    info.putMap("rtpParameters", receiverParametersToMap(receiver));
     info.putMap("track", mediaTrackToMap(receiver.track()));
     return info.toMap();
   }
@@ -961,11 +1088,9 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     } else {
       transceiver = peerConnection.addTransceiver(track);
     }
-    String transceiverId = transceiver.getMid();
-    if (null == transceiverId) {
-      transceiverId = stateProvider.getNextStreamUUID();
-    }
+    String transceiverId = getTransceiverId(transceiver);
     transceivers.put(transceiverId, transceiver);
+    indexTransceiver(transceiver);
     result.success(transceiverToMap(transceiverId, transceiver));
   }
 
@@ -977,11 +1102,9 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     } else {
       transceiver = peerConnection.addTransceiver(stringToMediaType(mediaType));
     }
-    String transceiverId = transceiver.getMid();
-    if (null == transceiverId) {
-      transceiverId = stateProvider.getNextStreamUUID();
-    }
+    String transceiverId = getTransceiverId(transceiver);
     transceivers.put(transceiverId, transceiver);
+    indexTransceiver(transceiver);
     result.success(transceiverToMap(transceiverId, transceiver));
   }
 
@@ -992,6 +1115,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       return;
     }
     transceiver.setDirection(stringToTransceiverDirection(direction));
+    invalidateRtpParameters(transceiver);
     result.success(null);
   }
 
@@ -1030,6 +1154,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       preferedCodecs.add(codecCapability);
     }
     transceiver.setCodecPreferences(preferedCodecs);
+    invalidateRtpParameters(transceiver);
     result.success(null);
   }
 
@@ -1067,6 +1192,7 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
       return;
     }
     transceiver.stop();
+    invalidateRtpParameters(transceiver);
     result.success(null);
   }
 
@@ -1078,11 +1204,76 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     }
     final RtpParameters updatedParameters = updateRtpParameters(sender.getParameters(), parameters);
     final Boolean success = sender.setParameters(updatedParameters);
+    rtpParametersCache.remove("sender:" + sender.id());
+    // The app's new values are the limits the next screen-share profile stays under.
+    appEncodingLimits.remove(sender.id());
     ConstraintsMap params = new ConstraintsMap();
     params.putBoolean("result", success);
     result.success(params.toMap());
   }
 
+  private static final class AppEncodingLimits {
+    final Integer[] maxFramerates;
+    final Integer[] maxBitratesBps;
+    @Nullable
+    final RtpParameters.DegradationPreference degradationPreference;
+
+    AppEncodingLimits(RtpParameters parameters) {
+      int count = parameters.encodings.size();
+      maxFramerates = new Integer[count];
+      maxBitratesBps = new Integer[count];
+      for (int i = 0; i < count; i++) {
+        maxFramerates[i] = parameters.encodings.get(i).maxFramerate;
+        maxBitratesBps[i] = parameters.encodings.get(i).maxBitrateBps;
+      }
+      degradationPreference = parameters.degradationPreference;
+    }
+  }
+
+  /**
+   * Applies the limits of the current screen-share profile to every encoding of the senders
+   * carrying {@code trackId}. A limit the app set is only ever lowered, and kept as the ceiling
+   * when the profile allows more again; the bitrate cap of a simulcast layer is scaled down
+   * with its resolution. The app's degradation preference, if any, is kept.
+   */
+  void applyScreenShareProfile(String trackId, int maxFramerate, int maxBitrateBps,
+      RtpParameters.DegradationPreference degradationPreference) {
+    if (peerConnection == null) {
+      return;
+    }
+    for (RtpSender sender : peerConnection.getSenders()) {
+      MediaStreamTrack track = sender.track();
+      if (track == null || !trackId.equals(track.id())) {
+        continue;
+      }
+      RtpParameters parameters = sender.getParameters();
+      AppEncodingLimits limits = appEncodingLimits.get(sender.id());
+      if (limits == null || limits.maxFramerates.length != parameters.encodings.size()) {
+        limits = new AppEncodingLimits(parameters);
+        appEncodingLimits.put(sender.id(), limits);
+      }
+      for (int i = 0; i < parameters.encodings.size(); i++) {
+        RtpParameters.Encoding encoding = parameters.encodings.get(i);
+        double scale = encoding.scaleResolutionDownBy != null
+            ? Math.max(1.0, encoding.scaleResolutionDownBy) : 1.0;
+        encoding.maxFramerate = lowerLimit(limits.maxFramerates[i], maxFramerate);
+        encoding.maxBitrateBps =
+            lowerLimit(limits.maxBitratesBps[i], (int) (maxBitrateBps / (scale * scale)));
+      }
+      if (limits.degradationPreference == null) {
+        parameters.degradationPreference = degradationPreference;
+      }
+      if (!sender.setParameters(parameters)) {
+        Log.w(TAG, "applyScreenShareProfile: setParameters failed for sender " + sender.id());
+      }
+      rtpParametersCache.remove("sender:" + sender.id());
+    }
+  }
+
+  private static int lowerLimit(@Nullable Integer appLimit, int profileLimit) {
+    return appLimit != null ? Math.min(appLimit, profileLimit) : profileLimit;
+  }
+
   public void rtpSenderSetTrack(String rtpSenderId, MediaStreamTrack track, Result result, boolean replace) {
     RtpSender sender = getRtpSenderById(rtpSenderId);
     if (sender == null) {
@@ -1129,11 +1320,8 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     List<RtpTransceiver> transceivers = peerConnection.getTransceivers();
     ConstraintsArray transceiversParams = new ConstraintsArray();
     for (RtpTransceiver transceiver : transceivers) {
-      String transceiverId = transceiver.getMid();
-      if (null == transceiverId) {
-        transceiverId = stateProvider.getNextStreamUUID();
-        this.transceivers.put(transceiverId, transceiver);
-      }
+      String transceiverId = getTransceiverId(transceiver);
+      indexTransceiver(transceiver);
       transceiversParams.pushMap(new ConstraintsMap(transceiverToMap(transceiverId, transceiver)));
     }
     ConstraintsMap params = new ConstraintsMap();
@@ -1141,6 +1329,51 @@ class PeerConnectionObserver implements PeerConnection.Observer, EventChannel.St
     result.success(params.toMap());
   }
 
+  /**
+   * Like {@link #getTransceivers(Result)}, but for each transceiver returns only its id, mid and
+   * the top-level fields that changed since the previous call, and lists the transceivers that
+   * are gone. The first call returns everything.
+   */
+  public void getTransceiverChanges(Result result) {
+    List<RtpTransceiver> transceivers = peerConnection.getTransceivers();
+    ConstraintsArray changed = new ConstraintsArray();
+    Set<String> present = new HashSet<>();
+    for (RtpTransceiver transceiver : transceivers) {
+      String transceiverId = getTransceiverId(transceiver);
+      indexTransceiver(transceiver);
+      String key = transceiver.getSender().id();
+      present.add(key);
+      Map<String, Object> current = transceiverToMap(transceiverId, transceiver);
+      Map<String, Object> previous = reportedTransceivers.put(key, current);
+      if (previous != null && previous.equals(current)) {
+        continue;
+      }
+      Map<String, Object> delta = new HashMap<>();
+      for (Map.Entry<String, Object> entry : current.entrySet()) {
+        String field = entry.getKey();
+        if (previous == null || field.equals("transceiverId") || field.equals("mid")
+            || !entry.getValue().equals(previous.get(field))) {
+          delta.put(field, entry.getValue());
+        }
+      }
+      changed.pushMap(new ConstraintsMap(delta));
+    }
+    ConstraintsArray removed = new ConstraintsArray();
+    Iterator<Map.Entry<String, Map<String, Object>>> it = reportedTransceivers.entrySet().iterator();
+    while (it.hasNext()) {
+      Map.Entry<String, Map<String, Object>> entry = it.next();
+      if (!present.contains(entry.getKey())) {
+        removed.pushString((String) entry.getValue().get("transceiverId"));
+        unnegotiatedTransceiverIds.remove(entry.getKey());
+        it.remove();
+      }
+    }
+    ConstraintsMap params = new ConstraintsMap();
+    params.putArray("transceivers", changed.toArrayList());
+    params.putArray("removed", removed.toArrayList());
+    result.success(params.toMap());
+  }
+
   protected MediaStreamTrack getTransceiversTrack(String trackId) {
     if (this.configuration.sdpSemantics != PeerConnection.SdpSemantics.UNIFIED_PLAN) {
       return null;
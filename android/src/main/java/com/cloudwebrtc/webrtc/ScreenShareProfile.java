@@ -0,0 +1,123 @@
+package com.cloudwebrtc.webrtc;
+
+import org.webrtc.RtpParameters;
+
+/**
+ * Chooses between a detail mode (full resolution, low frame rate, keeps text legible) and a
+ * motion mode (half resolution, full frame rate) for a screen share, from how often large parts
+ * of the screen change. Fed once per captured frame with the changed fraction reported by
+ * {@link com.cloudwebrtc.webrtc.video.ScreenContentAnalyzer}; decisions are made per one second
+ * window with hysteresis, so a single scroll does not flip the encoder back and forth.
+ */
+class ScreenShareProfile {
+    enum Mode {
+        DETAIL(1.0, 5, 0.1, RtpParameters.DegradationPreference.MAINTAIN_RESOLUTION),
+        MOTION(0.5, 30, 0.07, RtpParameters.DegradationPreference.MAINTAIN_FRAMERATE);
+
+        final double scale;
+        final int maxFramerate;
+        // Bits per pixel and frame for the bitrate cap.
+        final double bitsPerPixel;
+        final RtpParameters.DegradationPreference degradationPreference;
+
+        Mode(double scale, int maxFramerate, double bitsPerPixel,
+                RtpParameters.DegradationPreference degradationPreference) {
+            this.scale = scale;
+            this.maxFramerate = maxFramerate;
+            this.bitsPerPixel = bitsPerPixel;
+            this.degradationPreference = degradationPreference;
+        }
+    }
+
+    interface Listener {
+        /**
+         * Called on the capture thread after the capture format was changed to {@code profile},
+         * capped at {@code maxFramerate}.
+         */
+        void onModeChanged(ScreenShareProfile profile, int maxFramerate);
+    }
+
+    private static final long WINDOW_MS = 1000;
+    // A frame counts as motion when at least this fraction of the screen changed.
+    private static final float MOTION_AREA = 0.01f;
+    private static final int MOTION_FPS_ENTER = 8;
+    private static final int MOTION_FPS_EXIT = 3;
+    private static final int WINDOWS_TO_ENTER = 2;
+    private static final int WINDOWS_TO_EXIT = 3;
+
+    // Capture size the app asked for, the largest size either mode uses.
+    private int baseWidth;
+    private int baseHeight;
+    private Mode mode = Mode.DETAIL;
+    private long windowStartMs = -1;
+    private int motionFrames = 0;
+    private int pendingWindows = 0;
+
+    ScreenShareProfile(int baseWidth, int baseHeight) {
+        this.baseWidth = baseWidth;
+        this.baseHeight = baseHeight;
+    }
+
+    /** Follows a new capture size requested by the app. */
+    void setBaseSize(int baseWidth, int baseHeight) {
+        this.baseWidth = baseWidth;
+        this.baseHeight = baseHeight;
+    }
+
+    Mode getMode() {
+        return mode;
+    }
+
+    int getWidth() {
+        return scaled(baseWidth);
+    }
+
+    int getHeight() {
+        return scaled(baseHeight);
+    }
+
+    /** Bitrate cap of the current mode at {@code framerate}. */
+    int getMaxBitrateBps(int framerate) {
+        return (int) Math.min(Integer.MAX_VALUE,
+                (long) getWidth() * getHeight() * framerate * mode.bitsPerPixel);
+    }
+
+    /** Returns true when the mode changed with this frame. */
+    boolean onFrame(float changedFraction, long nowMs) {
+        if (windowStartMs < 0) {
+            windowStartMs = nowMs;
+        }
+        if (changedFraction >= MOTION_AREA) {
+            motionFrames++;
+        }
+        if (nowMs - windowStartMs < WINDOW_MS) {
+            return false;
+        }
+        final int motionFps = (int) (motionFrames * 1000 / (nowMs - windowStartMs));
+        windowStartMs = nowMs;
+        motionFrames = 0;
+        return onWindow(motionFps);
+    }
+
+    private boolean onWindow(int motionFps) {
+        final boolean towardsOther = mode == Mode.DETAIL
+                ? motionFps >= MOTION_FPS_ENTER
+                : motionFps <= MOTION_FPS_EXIT;
+        if (!towardsOther) {
+            pendingWindows = 0;
+            return false;
+        }
+        pendingWindows++;
+        if (pendingWindows < (mode == Mode.DETAIL ? WINDOWS_TO_ENTER : WINDOWS_TO_EXIT)) {
+            return false;
+        }
+        pendingWindows = 0;
+        mode = mode == Mode.DETAIL ? Mode.MOTION : Mode.DETAIL;
+        return true;
+    }
+
+    // Even dimensions, encoders reject odd sizes.
+    private int scaled(int size) {
+        return Math.max(2, (int) Math.round(size * mode.scale) & ~1);
+    }
+}
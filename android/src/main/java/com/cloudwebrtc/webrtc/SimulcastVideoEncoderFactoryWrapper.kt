@@ -1,6 +1,7 @@
 package com.cloudwebrtc.webrtc
 
 import org.webrtc.*
+import org.webrtc.video.EncoderSelectionPolicy
 import java.util.concurrent.Callable
 import java.util.concurrent.ExecutorService
 import java.util.concurrent.Executors
@@ -24,7 +25,9 @@ limitations under the License.
 internal class SimulcastVideoEncoderFactoryWrapper(
     sharedContext: EglBase.Context?,
     enableIntelVp8Encoder: Boolean,
-    enableH264HighProfile: Boolean
+    enableH264HighProfile: Boolean,
+    private val selectionPolicy: EncoderSelectionPolicy? = null,
+    bitrateAdjusterFactory: BitrateAdjusterFactory? = null
 ) : VideoEncoderFactory {
 
     /**
@@ -65,11 +68,17 @@ internal class SimulcastVideoEncoderFactoryWrapper(
             }
         }
 
-        override fun getSupportedCodecs(): Array<VideoCodecInfo> {
+        // The software and hardware lists never change during the process lifetime,
+        // so concatenate them once instead of re-enumerating on every call.
+        private val cachedCodecs: Array<VideoCodecInfo> by lazy {
             val supportedCodecInfos: MutableList<VideoCodecInfo> = mutableListOf()
             supportedCodecInfos.addAll(softwareVideoEncoderFactory.supportedCodecs)
             supportedCodecInfos.addAll(hardwareVideoEncoderFactory.supportedCodecs)
-            return supportedCodecInfos.toTypedArray()
+            supportedCodecInfos.toTypedArray()
+        }
+
+        override fun getSupportedCodecs(): Array<VideoCodecInfo> {
+            return cachedCodecs
         }
 
     }
@@ -80,17 +89,39 @@ internal class SimulcastVideoEncoderFactoryWrapper(
      * - When the width/height from [initEncode] doesn't match the frame buffer's,
      *   scales the frame prior to encoding.
      * - Always calls the encoder on the thread.
+     * - When a [selectionPolicy] is set, asks it whether the hardware encoder should be used
+     *   at the resolution from [initEncode], and reports hardware failures to it.
      */
-    private class StreamEncoderWrapper(private val encoder: VideoEncoder) : VideoEncoder {
+    private class StreamEncoderWrapper(
+        private val encoder: VideoEncoder,
+        private val codecName: String?,
+        private val selectionPolicy: EncoderSelectionPolicy?
+    ) : VideoEncoder {
 
         val executor: ExecutorService = Executors.newSingleThreadExecutor()
         var streamSettings: VideoEncoder.Settings? = null
+        private var failureReported = false
+
+        private fun checkHealth(status: VideoCodecStatus): VideoCodecStatus {
+            if (status.number < 0 && !failureReported && codecName != null && encoder.isHardwareEncoder) {
+                failureReported = true
+                selectionPolicy?.reportHardwareFailure(codecName, status.name)
+            }
+            return status
+        }
 
         override fun initEncode(
             settings: VideoEncoder.Settings,
             callback: VideoEncoder.Callback?
         ): VideoCodecStatus {
             streamSettings = settings
+            if (selectionPolicy != null && codecName != null && encoder.isHardwareEncoder) {
+                val decision = selectionPolicy.selectForResolution(codecName, settings.width, settings.height)
+                if (!decision.useHardware) {
+                    // Declining makes the software fallback wrapper in libwebrtc take over this stream.
+                    return VideoCodecStatus.FALLBACK_SOFTWARE
+                }
+            }
             val future = executor.submit(Callable {
             //     LKLog.i {
             //         """initEncode() thread=${Thread.currentThread().name} [${Thread.currentThread().id}]
@@ -108,7 +139,7 @@ internal class SimulcastVideoEncoderFactoryWrapper(
             //     }
                 return@Callable encoder.initEncode(settings, callback)
             })
-            return future.get()
+            return checkHealth(future.get())
         }
 
         override fun release(): VideoCodecStatus {
@@ -142,7 +173,7 @@ internal class SimulcastVideoEncoderFactoryWrapper(
                     return@Callable result
                 }
             })
-            return future.get()
+            return checkHealth(future.get())
         }
 
         override fun setRateAllocation(
@@ -194,8 +225,13 @@ internal class SimulcastVideoEncoderFactoryWrapper(
         }
     }
 
-    private class StreamEncoderWrapperFactory(private val factory: VideoEncoderFactory) :
-        VideoEncoderFactory {
+    private class StreamEncoderWrapperFactory(
+        private val factory: VideoEncoderFactory,
+        private val selectionPolicy: EncoderSelectionPolicy? = null
+    ) : VideoEncoderFactory {
+
+        private val cachedCodecs: Array<VideoCodecInfo> by lazy { factory.supportedCodecs }
+
         override fun createEncoder(videoCodecInfo: VideoCodecInfo?): VideoEncoder? {
             val encoder = factory.createEncoder(videoCodecInfo)
             if (encoder == null) {
@@ -204,11 +240,11 @@ internal class SimulcastVideoEncoderFactoryWrapper(
             if (encoder is WrappedNativeVideoEncoder) {
               return encoder
             }
-            return StreamEncoderWrapper(encoder)
+            return StreamEncoderWrapper(encoder, videoCodecInfo?.name, selectionPolicy)
         }
 
         override fun getSupportedCodecs(): Array<VideoCodecInfo> {
-            return factory.supportedCodecs
+            return cachedCodecs
         }
     }
 
@@ -219,9 +255,9 @@ internal class SimulcastVideoEncoderFactoryWrapper(
 
     init {
         val hardwareVideoEncoderFactory = HardwareVideoEncoderFactory(
-            sharedContext, enableIntelVp8Encoder, enableH264HighProfile
+            sharedContext, enableIntelVp8Encoder, enableH264HighProfile, null, bitrateAdjusterFactory
         )
-        primary = StreamEncoderWrapperFactory(hardwareVideoEncoderFactory)
+        primary = StreamEncoderWrapperFactory(hardwareVideoEncoderFactory, selectionPolicy)
         fallback = StreamEncoderWrapperFactory(FallbackFactory(primary))
         native = SimulcastVideoEncoderFactory(primary, fallback)
     }
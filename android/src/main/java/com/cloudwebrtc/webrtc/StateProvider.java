@@ -32,6 +32,8 @@ public interface StateProvider {
 
   PeerConnectionObserver getPeerConnectionObserver(String peerConnectionId);
 
+  MediaObjectRegistry getRegistry();
+
   @Nullable
   Activity getActivity();
 
@@ -41,4 +43,7 @@ public interface StateProvider {
   BinaryMessenger getMessenger();
 
   void removeStreamFromAllRenderers(String streamId);
+
+  /** Runs {@code task} in order with the calls on {@code peerConnectionId}. */
+  void runOnPeerConnectionQueue(String peerConnectionId, Runnable task);
 }
@@ -5,11 +5,15 @@ import android.view.Surface;
 
 import org.webrtc.EglBase;
 import org.webrtc.EglRenderer;
+import org.webrtc.EglThread;
 import org.webrtc.GlRectDrawer;
+import org.webrtc.RenderSynchronizer;
 import org.webrtc.RendererCommon;
 import org.webrtc.ThreadUtils;
 import org.webrtc.VideoFrame;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
 import io.flutter.view.TextureRegistry;
@@ -23,7 +27,7 @@ import io.flutter.view.TextureRegistry;
  * Interaction from SurfaceHolder lifecycle in surfaceCreated, surfaceChanged, and surfaceDestroyed.
  */
 public class SurfaceTextureRenderer extends EglRenderer {
-  // Callback for reporting renderer events. Read-only after initilization so no lock required.
+  // Callback for reporting renderer events. Replaced under layoutLock on track switches.
   private RendererCommon.RendererEvents rendererEvents;
   private final Object layoutLock = new Object();
   private boolean isRenderingPaused;
@@ -31,9 +35,39 @@ public class SurfaceTextureRenderer extends EglRenderer {
   private int rotatedFrameWidth;
   private int rotatedFrameHeight;
   private int frameRotation;
+  // On-screen size of the widget showing this renderer in pixels, 0 when unknown.
+  private int viewportWidth;
+  private int viewportHeight;
   // Guard to avoid operations after disposal/release
   private volatile boolean disposed = false;
 
+  // Display refresh driven pacing, one synchronizer per refresh rate shared by the renderers.
+  private static final float DEFAULT_REFRESH_RATE_FPS = 60f;
+  private static final Map<Integer, RenderSynchronizer> renderSynchronizers = new HashMap<>();
+  private final RenderSynchronizer.Listener vsyncListener = new RenderSynchronizer.Listener() {
+    @Override
+    public void onRenderWindowOpen() {
+      renderPendingFrame();
+    }
+
+    @Override
+    public void onRenderWindowClose() {}
+  };
+  private boolean vsyncPaced = false;
+  // Synchronizer vsyncListener is registered with while paced.
+  private RenderSynchronizer renderSynchronizer;
+
+  // Targets the refresh rate itself, so every refresh cycle opens a render window.
+  private static synchronized RenderSynchronizer getRenderSynchronizer(float refreshRateFps) {
+    int key = Math.round(refreshRateFps > 0 ? refreshRateFps : DEFAULT_REFRESH_RATE_FPS);
+    RenderSynchronizer synchronizer = renderSynchronizers.get(key);
+    if (synchronizer == null) {
+      synchronizer = new RenderSynchronizer(key);
+      renderSynchronizers.put(key, synchronizer);
+    }
+    return synchronizer;
+  }
+
   /**
    * In order to render something, you must first call init().
    */
@@ -57,14 +91,43 @@ public class SurfaceTextureRenderer extends EglRenderer {
                    RendererCommon.GlDrawer drawer) {
     ThreadUtils.checkIsOnMainThread();
     this.rendererEvents = rendererEvents;
+    resetFrameState();
+    super.init(sharedContext, configAttributes, drawer);
+  }
+  /**
+   * Initialize this class on a render thread shared with other renderers, see
+   * {@link com.cloudwebrtc.webrtc.video.RenderThreadPool}. Only the EGL surface is owned by this
+   * renderer; the context belongs to |eglThread|.
+   */
+  public void init(EglThread eglThread, RendererCommon.RendererEvents rendererEvents,
+                   RendererCommon.GlDrawer drawer) {
+    ThreadUtils.checkIsOnMainThread();
+    this.rendererEvents = rendererEvents;
+    resetFrameState();
+    super.init(eglThread, drawer, false /* usePresentationTimeStamp */);
+  }
+
+  /**
+   * Prepares for frames of a different track without tearing down the EGL state: first-frame
+   * and resolution events are reported again, to |rendererEvents|.
+   */
+  public void switchTrack(RendererCommon.RendererEvents rendererEvents) {
+    synchronized (layoutLock) {
+      this.rendererEvents = rendererEvents;
+    }
+    resetFrameState();
+    clearImage();
+  }
+
+  private void resetFrameState() {
     synchronized (layoutLock) {
       isFirstFrameRendered = false;
       rotatedFrameWidth = 0;
       rotatedFrameHeight = 0;
       frameRotation = -1;
     }
-    super.init(sharedContext, configAttributes, drawer);
   }
+
   @Override
   public void init(final EglBase.Context sharedContext, final int[] configAttributes,
                    RendererCommon.GlDrawer drawer) {
@@ -97,6 +160,73 @@ public class SurfaceTextureRenderer extends EglRenderer {
     }
     super.pauseVideo();
   }
+  /**
+   * Latches frames to the display refresh: at most one frame is drawn per render window, always
+   * the newest one, and frames superseded before that are released right away. Render windows
+   * follow {@code refreshRateFps}, the refresh rate of the display showing the renderer; enabling
+   * again with a new rate moves the renderer to it.
+   */
+  public void setVsyncPaced(boolean enabled, float refreshRateFps) {
+    ThreadUtils.checkIsOnMainThread();
+    if (enabled && disposed) {
+      return;
+    }
+    RenderSynchronizer synchronizer = enabled ? getRenderSynchronizer(refreshRateFps) : null;
+    if (vsyncPaced == enabled && renderSynchronizer == synchronizer) {
+      return;
+    }
+    if (renderSynchronizer != null) {
+      renderSynchronizer.removeListener(vsyncListener);
+    }
+    vsyncPaced = enabled;
+    renderSynchronizer = synchronizer;
+    setExternallyPaced(enabled);
+    if (synchronizer != null) {
+      synchronizer.registerListener(vsyncListener);
+    }
+  }
+
+  public boolean isVsyncPaced() {
+    return vsyncPaced;
+  }
+
+  /**
+   * Sizes the texture to the on-screen pixels instead of the frame size. The frame aspect
+   * ratio is kept and the texture is never larger than the frame. Pass 0 to follow the frame.
+   */
+  public void setViewportSize(int width, int height) {
+    synchronized (layoutLock) {
+      viewportWidth = Math.max(0, width);
+      viewportHeight = Math.max(0, height);
+      if (rotatedFrameWidth > 0 && rotatedFrameHeight > 0) {
+        setProducerSize(rotatedFrameWidth, rotatedFrameHeight);
+      }
+    }
+  }
+
+  /** The texture size used for a frame of the given size, see {@link #setViewportSize}. */
+  public int[] getTextureSize(int frameWidth, int frameHeight) {
+    synchronized (layoutLock) {
+      if (viewportWidth <= 0 || viewportHeight <= 0 || frameWidth <= 0 || frameHeight <= 0) {
+        return new int[] {frameWidth, frameHeight};
+      }
+      // Cover the viewport so that no detail is lost when the widget crops the frame.
+      float scale = Math.min(1f, Math.max((float) viewportWidth / frameWidth,
+              (float) viewportHeight / frameHeight));
+      return new int[] {
+              Math.max(2, Math.round(frameWidth * scale) & ~1),
+              Math.max(2, Math.round(frameHeight * scale) & ~1)};
+    }
+  }
+
+  private void setProducerSize(int frameWidth, int frameHeight) {
+    TextureRegistry.SurfaceProducer producer = this.producer;
+    if (producer != null) {
+      int[] size = getTextureSize(frameWidth, frameHeight);
+      producer.setSize(size[0], size[1]);
+    }
+  }
+
   // VideoSink interface.
   @Override
   public void onFrame(VideoFrame frame) {
@@ -108,7 +238,7 @@ public class SurfaceTextureRenderer extends EglRenderer {
         // Producer not available; drop frame to avoid creating surfaces after disposal.
         return;
       }
-      producer.setSize(frame.getRotatedWidth(), frame.getRotatedHeight());
+      setProducerSize(frame.getRotatedWidth(), frame.getRotatedHeight());
       surface = producer.getSurface();
       createEglSurface(surface);
     }
@@ -154,6 +284,11 @@ public class SurfaceTextureRenderer extends EglRenderer {
   public void disposeAndStop() {
     // Mark disposed to stop any future onFrame/producer interactions.
     disposed = true;
+    if (vsyncPaced) {
+      vsyncPaced = false;
+      renderSynchronizer.removeListener(vsyncListener);
+      renderSynchronizer = null;
+    }
     // Clear references to help GC and avoid NPEs in guards.
     rendererEvents = null;
     producer = null;
@@ -185,9 +320,7 @@ public class SurfaceTextureRenderer extends EglRenderer {
         }
         rotatedFrameWidth = frame.getRotatedWidth();
         rotatedFrameHeight = frame.getRotatedHeight();
-        if (producer != null) {
-          producer.setSize(rotatedFrameWidth, rotatedFrameHeight);
-        }
+        setProducerSize(rotatedFrameWidth, rotatedFrameHeight);
         frameRotation = frame.getRotation();
       }
     }
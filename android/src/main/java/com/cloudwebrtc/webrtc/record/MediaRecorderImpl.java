@@ -3,6 +3,7 @@ package com.cloudwebrtc.webrtc.record;
 import androidx.annotation.Nullable;
 import android.util.Log;
 
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
 import com.cloudwebrtc.webrtc.utils.EglUtils;
 
 import org.webrtc.VideoTrack;
@@ -51,6 +52,13 @@ public class MediaRecorderImpl {
 
     public File getRecordFile() { return recordFile; }
 
+    /** Timestamp stats of the running recording, null when not recording video. */
+    @Nullable
+    public ConstraintsMap getClockStats() {
+        VideoFileRenderer renderer = videoFileRenderer;
+        return renderer != null ? renderer.getClockStats() : null;
+    }
+
     public void stopRecording() {
         isRunning = false;
         if (audioInterceptor != null)
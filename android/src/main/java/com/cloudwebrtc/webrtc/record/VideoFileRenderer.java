@@ -9,6 +9,9 @@ import android.os.HandlerThread;
 import android.util.Log;
 import android.view.Surface;
 
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.MediaClock;
+
 import org.webrtc.EglBase;
 import org.webrtc.GlRectDrawer;
 import org.webrtc.VideoFrame;
@@ -19,9 +22,19 @@ import org.webrtc.audio.JavaAudioDeviceModule.SamplesReadyCallback;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Records a video track, and optionally audio samples, to an mp4 file. Both streams are
+ * timestamped on the {@link MediaClock} timeline relative to the first sample of either, so they
+ * stay in sync however late the encoders start. Video frames already carry media time; audio is
+ * timed by counting samples from the capture time of the first buffer, and the drift of that
+ * count against later capture times is reported by {@link #getClockStats()}.
+ */
 class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
     private static final String TAG = "VideoFileRenderer";
+    // Audio is re-anchored to its capture time when the sample count drifts further than this.
+    private static final long AUDIO_RESYNC_US = 20000;
     private final HandlerThread renderThread;
     private final Handler renderThreadHandler;
     private final HandlerThread audioThread;
@@ -53,7 +66,13 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
 
     private boolean encoderStarted = false;
     private volatile boolean muxerStarted = false;
-    private long videoFrameStart = 0;
+    // Media time of the first recorded sample, audio or video, -1 until then.
+    private final AtomicLong startNs = new AtomicLong(-1);
+    private long lastVideoPtsNs = -1;
+    private long audioPtsUs = -1;
+    private final MediaClock.Drift audioDrift = new MediaClock.Drift();
+    private volatile long audioResyncs = 0;
+    private volatile long droppedAudioBuffers = 0;
     private volatile boolean isReleasing = false;
 
     VideoFileRenderer(String outputFile, final EglBase.Context sharedContext, boolean withAudio) throws IOException {
@@ -111,22 +130,44 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
     @Override
     public void onFrame(VideoFrame frame) {
         frame.retain();
+        final long mediaNs = frame.getTimestampNs();
         if (outputFileWidth == -1) {
             outputFileWidth = frame.getRotatedWidth();
             outputFileHeight = frame.getRotatedHeight();
             initVideoEncoder();
         }
-        renderThreadHandler.post(() -> renderFrameOnRenderThread(frame));
+        renderThreadHandler.post(() -> renderFrameOnRenderThread(frame, mediaNs));
     }
 
-    private void renderFrameOnRenderThread(VideoFrame frame) {
+    private void renderFrameOnRenderThread(VideoFrame frame, long mediaNs) {
         if (frameDrawer == null) {
             frameDrawer = new VideoFrameDrawer();
         }
         frameDrawer.drawFrame(frame, drawer, null, 0, 0, outputFileWidth, outputFileHeight);
         frame.release();
         drainEncoder();
-        eglBase.swapBuffers();
+        // The encoder takes the surface timestamp as presentation time, so the video track
+        // carries media time directly.
+        lastVideoPtsNs = Math.max(lastVideoPtsNs + 1, mediaNs - recordingStartNs(mediaNs));
+        eglBase.swapBuffers(lastVideoPtsNs);
+    }
+
+    private long recordingStartNs(long mediaNs) {
+        startNs.compareAndSet(-1, mediaNs);
+        return startNs.get();
+    }
+
+    /**
+     * {@code audio}: drift of the sample-counted audio time against the capture times, see
+     * {@link MediaClock.Drift}; {@code audioResyncs}: jumps ahead over lost samples;
+     * {@code droppedAudioBuffers}: buffers dropped because audio ran ahead of its capture times.
+     */
+    ConstraintsMap getClockStats() {
+        ConstraintsMap params = new ConstraintsMap();
+        params.putMap("audio", audioDrift.toConstraintsMap().toMap());
+        params.putLong("audioResyncs", audioResyncs);
+        params.putLong("droppedAudioBuffers", droppedAudioBuffers);
+        return params;
     }
 
     /**
@@ -228,10 +269,6 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                     // It's usually necessary to adjust the ByteBuffer values to match BufferInfo.
                     encodedData.position(bufferInfo.offset);
                     encodedData.limit(bufferInfo.offset + bufferInfo.size);
-                    if (videoFrameStart == 0 && bufferInfo.presentationTimeUs != 0) {
-                        videoFrameStart = bufferInfo.presentationTimeUs;
-                    }
-                    bufferInfo.presentationTimeUs -= videoFrameStart;
                     if (muxerStarted)
                         mediaMuxer.writeSampleData(trackIndex, encodedData, bufferInfo);
                     isRunning = isRunning && (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) == 0;
@@ -247,8 +284,6 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
         }
     }
 
-    private long presTime = 0L;
-
     private void drainAudio() {
         if (audioBufferInfo == null)
             audioBufferInfo = new MediaCodec.BufferInfo();
@@ -328,6 +363,15 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
     public void onWebRtcAudioRecordSamplesReady(JavaAudioDeviceModule.AudioSamples audioSamples) {
         if (!isRunning || isReleasing)
             return;
+        final int bytesPerFrame = 2 * audioSamples.getChannelCount();
+        final long durationUs = audioSamples.getData().length / bytesPerFrame * 1000000L
+                / audioSamples.getSampleRate();
+        // Capture time of the first frame of the buffer. When the recorder did not report one
+        // (remote audio), the arrival is taken as the end of the buffer.
+        final boolean timestamped = audioSamples.getCaptureTimeNs() > 0;
+        final long captureNs = timestamped
+                ? audioSamples.getCaptureTimeNs()
+                : MediaClock.nowNs() - durationUs * 1000;
         audioThreadHandler.post(() -> {
             if (isReleasing) return;
             
@@ -347,6 +391,26 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                 Log.wtf(TAG, exception);
             }
             
+            final long recordingStartNs = recordingStartNs(captureNs);
+            long measuredUs = (captureNs - recordingStartNs) / 1000;
+            if (audioPtsUs < 0 || measuredUs - audioPtsUs > AUDIO_RESYNC_US) {
+                // Start, or samples were lost: jump ahead and leave a gap.
+                if (audioPtsUs >= 0) {
+                    audioResyncs++;
+                }
+                audioPtsUs = Math.max(audioPtsUs, measuredUs);
+            } else if (audioPtsUs - measuredUs > AUDIO_RESYNC_US) {
+                // Audio runs ahead of its capture clock: drop the buffer to let the clock catch up,
+                // moving back in time would break the muxer.
+                droppedAudioBuffers++;
+                return;
+            }
+            if (audioPtsUs < 0) {
+                // Captured before the recording started.
+                audioPtsUs = -1;
+                return;
+            }
+
             try {
                 int bufferIndex = audioEncoder.dequeueInputBuffer(0);
                 if (bufferIndex >= 0) {
@@ -354,8 +418,11 @@ class VideoFileRenderer implements VideoSink, SamplesReadyCallback {
                     buffer.clear();
                     byte[] data = audioSamples.getData();
                     buffer.put(data);
-                    audioEncoder.queueInputBuffer(bufferIndex, 0, data.length, presTime, 0);
-                    presTime += data.length * 125 / 12; // 1000000 microseconds / 48000hz / 2 bytes
+                    audioEncoder.queueInputBuffer(bufferIndex, 0, data.length, audioPtsUs, 0);
+                    if (timestamped) {
+                        audioDrift.update(recordingStartNs + audioPtsUs * 1000, captureNs);
+                    }
+                    audioPtsUs += durationUs;
                 }
                 drainAudio();
             } catch (Exception e) {
@@ -0,0 +1,150 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Wire format of the {@code FlutterWebRTC.BinaryMethod} channel, mirrored by
+ * {@code lib/src/native/binary_call_codec.dart}.
+ *
+ * A call is an opcode byte followed by its arguments in a fixed order. Integers are unsigned
+ * LEB128 varints, doubles are little-endian float64, booleans are one byte, strings and byte
+ * arrays are a varint length followed by the bytes. Nullable strings store length + 1, with 0
+ * meaning null. A reply is a status byte, followed by an error code and message on error.
+ */
+public final class BinaryCallCodec {
+    public static final byte OP_ADD_CANDIDATE = 1;
+    public static final byte OP_DATA_CHANNEL_SEND = 2;
+    public static final byte OP_TRACK_SET_ENABLED = 3;
+    public static final byte OP_TRACK_SET_VOLUME = 4;
+    public static final byte OP_RENDERER_SET_VSYNC_PACED = 5;
+    public static final byte OP_RENDERER_SET_NIGHT_VISION = 6;
+    public static final byte OP_RENDERER_SET_NIGHT_VISION_INTENSITY = 7;
+
+    public static final byte REPLY_NULL = 0;
+    public static final byte REPLY_TRUE = 1;
+    public static final byte REPLY_FALSE = 2;
+    public static final byte REPLY_ERROR = 3;
+
+    private BinaryCallCodec() {}
+
+    /** Reads the arguments of a call, in the order they were written. */
+    public static final class Reader {
+        private final ByteBuffer buffer;
+
+        public Reader(ByteBuffer buffer) {
+            this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        public byte readByte() {
+            return buffer.get();
+        }
+
+        public boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        public long readVarint() {
+            long value = 0;
+            int shift = 0;
+            while (true) {
+                byte b = buffer.get();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+                shift += 7;
+                if (shift > 63) {
+                    throw new IllegalArgumentException("Malformed varint");
+                }
+            }
+        }
+
+        public int readInt() {
+            return (int) readVarint();
+        }
+
+        public double readDouble() {
+            return buffer.getDouble();
+        }
+
+        public String readString() {
+            int length = readInt();
+            return decodeString(length);
+        }
+
+        @Nullable
+        public String readNullableString() {
+            int length = readInt();
+            return length == 0 ? null : decodeString(length - 1);
+        }
+
+        /**
+         * Copies the next byte array into a new direct buffer, so it stays valid once the
+         * message buffer is released.
+         */
+        public ByteBuffer readBytes() {
+            int length = readInt();
+            ByteBuffer bytes = ByteBuffer.allocateDirect(length);
+            ByteBuffer slice = buffer.slice();
+            slice.limit(length);
+            bytes.put(slice);
+            bytes.flip();
+            buffer.position(buffer.position() + length);
+            return bytes;
+        }
+
+        private String decodeString(int length) {
+            String value;
+            if (buffer.hasArray()) {
+                value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length,
+                        StandardCharsets.UTF_8);
+            } else {
+                byte[] bytes = new byte[length];
+                buffer.duplicate().get(bytes);
+                value = new String(bytes, StandardCharsets.UTF_8);
+            }
+            buffer.position(buffer.position() + length);
+            return value;
+        }
+    }
+
+    public static ByteBuffer encodeReply(@Nullable Object value) {
+        byte status;
+        if (value == null) {
+            status = REPLY_NULL;
+        } else if (value instanceof Boolean) {
+            status = (Boolean) value ? REPLY_TRUE : REPLY_FALSE;
+        } else {
+            throw new IllegalArgumentException("Unsupported reply " + value.getClass().getName());
+        }
+        ByteBuffer reply = ByteBuffer.allocateDirect(1);
+        reply.put(status);
+        reply.flip();
+        return reply;
+    }
+
+    public static ByteBuffer encodeError(String code, @Nullable String message) {
+        byte[] codeBytes = code.getBytes(StandardCharsets.UTF_8);
+        byte[] messageBytes = (message == null ? "" : message).getBytes(StandardCharsets.UTF_8);
+        ByteBuffer reply = ByteBuffer.allocateDirect(1 + 10 + codeBytes.length + messageBytes.length);
+        reply.put(REPLY_ERROR);
+        putVarint(reply, codeBytes.length);
+        reply.put(codeBytes);
+        putVarint(reply, messageBytes.length);
+        reply.put(messageBytes);
+        reply.flip();
+        return reply;
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7f) != 0) {
+            buffer.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+}
@@ -0,0 +1,60 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import org.webrtc.TimestampAligner;
+
+/**
+ * The timeline recordings and generated sources are timestamped on, the libwebrtc rtc clock
+ * ({@link TimestampAligner#getRtcTimeNanos()}). Frames reaching a VideoSink already carry it,
+ * the capturer's video source aligns them, and AudioRecord timestamps use the same
+ * CLOCK_MONOTONIC base, so neither is translated again. What can drift is a clock derived from
+ * counting samples; each stream measures that with its own {@link Drift}.
+ */
+public final class MediaClock {
+    private MediaClock() {}
+
+    /** Current time on the media timeline. */
+    public static long nowNs() {
+        return TimestampAligner.getRtcTimeNanos();
+    }
+
+    /**
+     * Follows the offset between the clock of one stream and the media timeline. Not shared
+     * between streams: each owner feeds it the pairs of its own stream.
+     */
+    public static final class Drift {
+        private long samples = 0;
+        private long firstMediaNs;
+        private long firstOffsetNs;
+        private long lastMediaNs;
+        private long lastOffsetNs;
+
+        /** Records that {@code streamTimeNs} on the stream clock happened at {@code mediaTimeNs}. */
+        public synchronized void update(long streamTimeNs, long mediaTimeNs) {
+            long offsetNs = mediaTimeNs - streamTimeNs;
+            if (samples == 0) {
+                firstMediaNs = mediaTimeNs;
+                firstOffsetNs = offsetNs;
+            }
+            samples++;
+            lastMediaNs = mediaTimeNs;
+            lastOffsetNs = offsetNs;
+        }
+
+        /**
+         * {@code samples}, {@code offsetMs} (media time minus stream time), {@code driftMs}
+         * (change of that offset since the first sample) and {@code driftPpm}.
+         */
+        public synchronized ConstraintsMap toConstraintsMap() {
+            ConstraintsMap params = new ConstraintsMap();
+            params.putLong("samples", samples);
+            if (samples > 0) {
+                long driftNs = lastOffsetNs - firstOffsetNs;
+                long elapsedNs = lastMediaNs - firstMediaNs;
+                params.putDouble("offsetMs", lastOffsetNs / 1e6);
+                params.putDouble("driftMs", driftNs / 1e6);
+                params.putDouble("driftPpm", elapsedNs > 0 ? driftNs * 1e6 / elapsedNs : 0);
+            }
+            return params;
+        }
+    }
+}
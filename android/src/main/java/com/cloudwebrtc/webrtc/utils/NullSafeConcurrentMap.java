@@ -0,0 +1,24 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A {@link ConcurrentHashMap} that treats null keys like missing keys on lookup, the way the
+ * {@code HashMap}s it replaces did, instead of throwing. Ids coming from Dart may be null.
+ */
+public class NullSafeConcurrentMap<K, V> extends ConcurrentHashMap<K, V> {
+    @Override
+    public V get(Object key) {
+        return key == null ? null : super.get(key);
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return key != null && super.containsKey(key);
+    }
+
+    @Override
+    public V remove(Object key) {
+        return key == null ? null : super.remove(key);
+    }
+}
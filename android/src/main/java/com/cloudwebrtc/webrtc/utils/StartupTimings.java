@@ -0,0 +1,50 @@
+package com.cloudwebrtc.webrtc.utils;
+
+import android.os.SystemClock;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the time (in milliseconds since the plugin was attached) at which each
+ * startup phase was first reached, so that cold-start-to-first-offer can be measured.
+ */
+public final class StartupTimings {
+    public static final String PLUGIN_ATTACHED = "pluginAttached";
+    public static final String CODEC_CACHE_LOADED = "codecCacheLoaded";
+    public static final String INITIALIZE_STARTED = "initializeStarted";
+    public static final String FACTORY_CREATED = "peerConnectionFactoryCreated";
+    public static final String ENCODER_CODECS_READY = "encoderCodecsReady";
+    public static final String DECODER_CODECS_READY = "decoderCodecsReady";
+    public static final String FIRST_PEER_CONNECTION = "firstPeerConnectionCreated";
+    public static final String FIRST_OFFER = "firstOfferCreated";
+    public static final String CAMERA_PREWARMED = "cameraPrewarmed";
+    public static final String FIRST_LOCAL_VIDEO_FRAME = "firstLocalVideoFrame";
+
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+    private static long originMs = SystemClock.elapsedRealtime();
+
+    private StartupTimings() {}
+
+    /** Restarts the measurement, called when the plugin is attached to an engine. */
+    public static synchronized void reset() {
+        originMs = SystemClock.elapsedRealtime();
+        marks.clear();
+        marks.put(PLUGIN_ATTACHED, 0L);
+    }
+
+    /** Records the first time {@code phase} is reached, later calls are ignored. */
+    public static synchronized void mark(String phase) {
+        if (!marks.containsKey(phase)) {
+            marks.put(phase, SystemClock.elapsedRealtime() - originMs);
+        }
+    }
+
+    public static synchronized ConstraintsMap toConstraintsMap() {
+        ConstraintsMap params = new ConstraintsMap();
+        for (Map.Entry<String, Long> entry : marks.entrySet()) {
+            params.putLong(entry.getKey(), entry.getValue());
+        }
+        return params;
+    }
+}
@@ -0,0 +1,111 @@
+package com.cloudwebrtc.webrtc.video;
+
+import com.cloudwebrtc.webrtc.utils.MediaClock;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives a generated video source at a fixed frame rate on its own thread. Every frame is
+ * scheduled against the start time on the {@link MediaClock}, not against the previous frame, so
+ * scheduling errors do not accumulate. When the thread falls behind, the missed slots are reported
+ * as skipped instead of being delivered in a burst, as a camera would drop them.
+ */
+class FramePacer {
+    interface Callback {
+        /**
+         * Produces the frame of the slot at {@code timestampNs}, after {@code skipped} slots were
+         * missed. Returns false to stop pacing.
+         */
+        boolean onFrame(long timestampNs, int skipped);
+    }
+
+    private static final int DEFAULT_FPS = 30;
+
+    private final ScheduledExecutorService executor;
+    private final Callback callback;
+
+    // Only accessed on the executor.
+    private boolean running = false;
+    private ScheduledFuture<?> pendingTick;
+    private long periodNs;
+    private long startNs;
+    private long nextTick;
+    private volatile long skippedFrames = 0;
+
+    FramePacer(String threadName, Callback callback) {
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, threadName));
+        this.callback = callback;
+    }
+
+    /** (Re)starts pacing at {@code fps}; {@code onStarted} runs first unless already running. */
+    void start(int fps, Runnable onStarted) {
+        executor.execute(() -> {
+            if (!running) {
+                onStarted.run();
+            }
+            restart(fps);
+        });
+    }
+
+    void changeFramerate(int fps) {
+        executor.execute(() -> {
+            if (running) {
+                restart(fps);
+            }
+        });
+    }
+
+    /** Stops pacing and waits for a frame in progress; {@code onStopped} runs if it was running. */
+    void stop(Runnable onStopped) throws InterruptedException {
+        CountDownLatch stopped = new CountDownLatch(1);
+        executor.execute(() -> {
+            if (running) {
+                running = false;
+                pendingTick.cancel(false);
+                onStopped.run();
+            }
+            stopped.countDown();
+        });
+        stopped.await();
+    }
+
+    void dispose() {
+        executor.shutdownNow();
+    }
+
+    /** Frame slots missed because the thread fell behind. */
+    long getSkippedFrames() {
+        return skippedFrames;
+    }
+
+    private void restart(int fps) {
+        if (pendingTick != null) {
+            pendingTick.cancel(false);
+        }
+        periodNs = TimeUnit.SECONDS.toNanos(1) / (fps > 0 ? fps : DEFAULT_FPS);
+        startNs = MediaClock.nowNs();
+        nextTick = 0;
+        running = true;
+        pendingTick = executor.schedule(this::tick, 0, TimeUnit.NANOSECONDS);
+    }
+
+    private void tick() {
+        if (!running) {
+            return;
+        }
+        long tick = Math.max(nextTick, (MediaClock.nowNs() - startNs) / periodNs);
+        int skipped = (int) Math.min(Integer.MAX_VALUE, tick - nextTick);
+        skippedFrames += skipped;
+        if (!callback.onFrame(startNs + tick * periodNs, skipped)) {
+            running = false;
+            return;
+        }
+        nextTick = tick + 1;
+        long delayNs = startNs + nextTick * periodNs - MediaClock.nowNs();
+        pendingTick = executor.schedule(this::tick, Math.max(0, delayNs), TimeUnit.NANOSECONDS);
+    }
+}
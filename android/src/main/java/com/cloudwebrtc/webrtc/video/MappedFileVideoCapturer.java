@@ -0,0 +1,278 @@
+package com.cloudwebrtc.webrtc.video;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.webrtc.CapturerObserver;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoFrame;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Plays a Y4M (or headerless raw I420) file as a camera, for load tests and devices without one.
+ * Unlike {@link org.webrtc.FileVideoCapturer} the file is memory-mapped and every frame is a
+ * {@link JavaI420Buffer} over the mapping, so delivering a frame copies nothing and concurrent
+ * capturers of the same file share its pages. Playback is paced by a {@link FramePacer}.
+ */
+public class MappedFileVideoCapturer implements VideoCapturer {
+    private static final String TAG = "MappedFileVideoCapturer";
+    private static final String Y4M_MAGIC = "YUV4MPEG2";
+    private static final String FRAME_DELIMITER = "FRAME\n";
+    private static final int MAX_HEADER_LENGTH = 1024;
+
+    private final String path;
+    private final boolean loop;
+    private final int frameWidth;
+    private final int frameHeight;
+    // Frame rate declared by the Y4M header, 0 for raw files.
+    private final int fileFramerate;
+    private final int delimiterLength;
+    private final int frameSize;
+    private final int frameStride;
+    private final int frameCount;
+    private final int framesPerSegment;
+    // A single mapping is limited to 2 GB, longer files are mapped in several segments.
+    private final MappedByteBuffer[] segments;
+
+    private final FramePacer pacer = new FramePacer(TAG, this::onFrame);
+    private CapturerObserver capturerObserver;
+    // Only accessed on the pacer thread.
+    private int frameIndex = 0;
+
+    /**
+     * Maps {@code path}. A Y4M file describes its own format; any other file is read as raw I420
+     * frames of {@code rawWidth} x {@code rawHeight}. When {@code loop} is false, capture stops
+     * at the end of the file.
+     */
+    public MappedFileVideoCapturer(String path, int rawWidth, int rawHeight, boolean loop)
+            throws IOException {
+        this.path = path;
+        this.loop = loop;
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            String header = readHeader(file);
+            long dataStart;
+            int width = rawWidth;
+            int height = rawHeight;
+            int framerate = 0;
+            if (header != null) {
+                dataStart = header.length() + 1;
+                String colorSpace = "420jpeg";
+                for (String token : header.split(" ")) {
+                    if (token.isEmpty()) {
+                        continue;
+                    }
+                    switch (token.charAt(0)) {
+                        case 'W':
+                            width = Integer.parseInt(token.substring(1));
+                            break;
+                        case 'H':
+                            height = Integer.parseInt(token.substring(1));
+                            break;
+                        case 'F':
+                            framerate = parseFramerate(token.substring(1));
+                            break;
+                        case 'C':
+                            colorSpace = token.substring(1);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                if (!colorSpace.startsWith("420")) {
+                    throw new IllegalArgumentException("Unsupported Y4M color space " + colorSpace);
+                }
+                delimiterLength = FRAME_DELIMITER.length();
+            } else {
+                dataStart = 0;
+                delimiterLength = 0;
+            }
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Invalid frame size " + width + "x" + height);
+            }
+            frameWidth = width;
+            frameHeight = height;
+            fileFramerate = framerate;
+            frameSize = width * height + 2 * ((width + 1) / 2) * ((height + 1) / 2);
+            frameStride = delimiterLength + frameSize;
+            long frames = (file.length() - dataStart) / frameStride;
+            if (frames == 0) {
+                throw new IllegalArgumentException("No complete frame in " + path);
+            }
+            frameCount = (int) Math.min(Integer.MAX_VALUE, frames);
+            framesPerSegment = Integer.MAX_VALUE / frameStride;
+            segments = new MappedByteBuffer[(frameCount + framesPerSegment - 1) / framesPerSegment];
+            FileChannel channel = file.getChannel();
+            for (int i = 0; i < segments.length; i++) {
+                int first = i * framesPerSegment;
+                int count = Math.min(framesPerSegment, frameCount - first);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                        dataStart + (long) first * frameStride, (long) count * frameStride);
+            }
+            // The mappings stay valid after the file is closed.
+        }
+        Log.d(TAG, "Mapped " + path + ": " + frameWidth + "x" + frameHeight + ", " + frameCount
+                + " frames" + (fileFramerate > 0 ? " @" + fileFramerate : ""));
+    }
+
+    public int getWidth() {
+        return frameWidth;
+    }
+
+    public int getHeight() {
+        return frameHeight;
+    }
+
+    /** Frame rate of the Y4M header, 0 if the file does not declare one. */
+    public int getFileFramerate() {
+        return fileFramerate;
+    }
+
+    /**
+     * The rate playback runs at: the file's own, capped at {@code maxFramerate} when that is
+     * positive. Files without a rate play at {@code maxFramerate}.
+     */
+    public int getPlaybackFramerate(int maxFramerate) {
+        if (fileFramerate <= 0) {
+            return maxFramerate;
+        }
+        return maxFramerate > 0 ? Math.min(fileFramerate, maxFramerate) : fileFramerate;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /** Frames skipped because the capture thread fell behind. */
+    public long getSkippedFrames() {
+        return pacer.getSkippedFrames();
+    }
+
+    @Override
+    public void initialize(SurfaceTextureHelper surfaceTextureHelper, Context applicationContext,
+            CapturerObserver capturerObserver) {
+        this.capturerObserver = capturerObserver;
+    }
+
+    /**
+     * Width and height are those of the file; {@code framerate} caps the playback rate, see
+     * {@link #getPlaybackFramerate}.
+     */
+    @Override
+    public void startCapture(int width, int height, int framerate) {
+        pacer.start(getPlaybackFramerate(framerate),
+                () -> capturerObserver.onCapturerStarted(true));
+    }
+
+    @Override
+    public void stopCapture() throws InterruptedException {
+        pacer.stop(capturerObserver::onCapturerStopped);
+    }
+
+    @Override
+    public void changeCaptureFormat(int width, int height, int framerate) {
+        pacer.changeFramerate(getPlaybackFramerate(framerate));
+    }
+
+    @Override
+    public void dispose() {
+        pacer.dispose();
+    }
+
+    @Override
+    public boolean isScreencast() {
+        return false;
+    }
+
+    private boolean onFrame(long timestampNs, int skipped) {
+        // Skipped slots skip file frames too, playback stays in real time.
+        if (skipped > 0 && !advance((int) Math.min(skipped, frameCount))) {
+            return false;
+        }
+        JavaI420Buffer buffer = wrapFrame(frameIndex);
+        if (buffer == null) {
+            capturerObserver.onCapturerStopped();
+            return false;
+        }
+        VideoFrame frame = new VideoFrame(buffer, 0, timestampNs);
+        capturerObserver.onFrameCaptured(frame);
+        frame.release();
+        return advance(1);
+    }
+
+    /** Moves {@code frames} ahead in the file. Returns false when playback ended. */
+    private boolean advance(int frames) {
+        frameIndex += frames;
+        if (frameIndex < frameCount) {
+            return true;
+        }
+        if (loop) {
+            frameIndex %= frameCount;
+            return true;
+        }
+        Log.d(TAG, "End of " + path);
+        capturerObserver.onCapturerStopped();
+        return false;
+    }
+
+    /** Returns null if the frame is not where a file of constant frame size has it. */
+    @Nullable
+    private JavaI420Buffer wrapFrame(int index) {
+        ByteBuffer segment = segments[index / framesPerSegment];
+        int offset = (index % framesPerSegment) * frameStride;
+        if (delimiterLength > 0 && (segment.get(offset) != 'F'
+                || segment.get(offset + delimiterLength - 1) != '\n')) {
+            Log.e(TAG, "Frame " + index + " of " + path + " is not delimited by FRAME plus newline");
+            return null;
+        }
+        offset += delimiterLength;
+        int chromaWidth = (frameWidth + 1) / 2;
+        int sizeY = frameWidth * frameHeight;
+        int sizeUV = chromaWidth * ((frameHeight + 1) / 2);
+        // No release callback: the slices keep the mapping alive until the last frame is gone.
+        return JavaI420Buffer.wrap(frameWidth, frameHeight,
+                slice(segment, offset, sizeY), frameWidth,
+                slice(segment, offset + sizeY, sizeUV), chromaWidth,
+                slice(segment, offset + sizeY + sizeUV, sizeUV), chromaWidth,
+                null);
+    }
+
+    private static ByteBuffer slice(ByteBuffer segment, int offset, int length) {
+        ByteBuffer view = segment.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+
+    /** Returns the Y4M stream header without its newline, or null for a raw file. */
+    private static String readHeader(RandomAccessFile file) throws IOException {
+        StringBuilder header = new StringBuilder();
+        int c;
+        while ((c = file.read()) != -1 && c != '\n' && header.length() < MAX_HEADER_LENGTH) {
+            header.append((char) c);
+        }
+        if (!header.toString().startsWith(Y4M_MAGIC)) {
+            return null;
+        }
+        if (c != '\n') {
+            throw new IllegalArgumentException("Unterminated Y4M header");
+        }
+        return header.toString();
+    }
+
+    // "30000:1001" -> 30
+    private static int parseFramerate(String value) {
+        String[] parts = value.split(":");
+        int numerator = Integer.parseInt(parts[0]);
+        int denominator = parts.length > 1 ? Integer.parseInt(parts[1]) : 1;
+        return denominator > 0 ? Math.round((float) numerator / denominator) : 0;
+    }
+}
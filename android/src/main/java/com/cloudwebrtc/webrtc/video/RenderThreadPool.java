@@ -0,0 +1,114 @@
+package com.cloudwebrtc.webrtc.video;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.EglUtils;
+
+import org.webrtc.EglBase;
+import org.webrtc.EglThread;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small fixed set of render threads shared by all {@code FlutterRTCVideoRenderer}s.
+ *
+ * Without the pool every renderer owns an {@link EglThread} with its own EGL context, so a
+ * gallery of many tiles runs as many GL threads competing for the GPU. With the pool each
+ * renderer is assigned to the least loaded thread and only creates its own EGL surface on that
+ * thread's shared connection, so frames of all tiles on a thread are drawn one after another
+ * with a single context. Threads are created lazily and stay alive while the pool is enabled.
+ */
+public class RenderThreadPool {
+    private static final String TAG = "RenderThreadPool";
+
+    @Nullable
+    private static RenderThreadPool instance;
+
+    private final int size;
+    private final List<EglThread> threads = new ArrayList<>();
+    private final Map<EglThread, Integer> users = new HashMap<>();
+    private boolean shutdown = false;
+
+    private RenderThreadPool(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Enables pooled rendering with {@code size} threads, or disables it when {@code size} is 0.
+     * Renderers already running keep the thread they were assigned.
+     */
+    public static synchronized void configure(int size) {
+        if (instance != null && instance.size == size) {
+            return;
+        }
+        if (instance != null) {
+            instance.shutdown();
+        }
+        instance = size > 0 ? new RenderThreadPool(size) : null;
+    }
+
+    /** Returns the pool, or null when renderers should use their own render thread. */
+    @Nullable
+    public static synchronized RenderThreadPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the least loaded render thread. The caller hands it to
+     * {@code EglRenderer.init}; releasing the renderer releases its use of the thread.
+     */
+    public synchronized EglThread acquire() {
+        EglThread selected = null;
+        if (threads.size() < size) {
+            selected = EglThread.create(this::onRelease, EglUtils.getRootEglBaseContext(),
+                    EglBase.CONFIG_PLAIN);
+            threads.add(selected);
+            users.put(selected, 0);
+        } else {
+            for (EglThread thread : threads) {
+                if (selected == null || users.get(thread) < users.get(selected)) {
+                    selected = thread;
+                }
+            }
+        }
+        users.put(selected, users.get(selected) + 1);
+        return selected;
+    }
+
+    private synchronized boolean onRelease(EglThread thread) {
+        Integer count = users.get(thread);
+        if (count == null) {
+            // Released by shutdown().
+            return true;
+        }
+        count = Math.max(0, count - 1);
+        users.put(thread, count);
+        if (shutdown && count == 0) {
+            users.remove(thread);
+            threads.remove(thread);
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void shutdown() {
+        shutdown = true;
+        for (EglThread thread : new ArrayList<>(threads)) {
+            if (users.get(thread) == 0) {
+                users.remove(thread);
+                threads.remove(thread);
+                thread.release();
+            }
+        }
+        Log.d(TAG, "Render thread pool shut down, " + threads.size() + " threads still in use");
+    }
+
+    public synchronized int getThreadCount() {
+        return threads.size();
+    }
+}
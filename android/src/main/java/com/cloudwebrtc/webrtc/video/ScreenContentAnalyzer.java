@@ -0,0 +1,147 @@
+package com.cloudwebrtc.webrtc.video;
+
+import android.graphics.Matrix;
+import android.opengl.GLES20;
+
+import org.webrtc.GlRectDrawer;
+import org.webrtc.GlTextureFrameBuffer;
+import org.webrtc.GlUtil;
+import org.webrtc.RendererCommon;
+import org.webrtc.VideoFrame;
+import org.webrtc.VideoFrameDrawer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares consecutive screen frames on the GPU. Each frame is halved repeatedly down to
+ * {@value #SAMPLE_SIZE}x{@value #SAMPLE_SIZE}, every pass averaging 2x2 pixels with bilinear
+ * filtering, so every screen pixel contributes to its sample cell and a caret blink or a typed
+ * character still moves the cell it falls in. The sample (64 KB of RGBA) is read back and
+ * compared with the previous one. glReadPixels waits for the GPU, so samples are taken at most
+ * every {@value #MIN_SAMPLE_INTERVAL_MS} ms; frames in between are reported as
+ * {@link #NOT_SAMPLED} and callers that skip unchanged frames should sample again later.
+ *
+ * Must be used on the thread that owns the EGL context of the frames, the
+ * {@link org.webrtc.SurfaceTextureHelper} thread for screen capture.
+ */
+public class ScreenContentAnalyzer {
+    static final int SAMPLE_SIZE = 128;
+    static final long MIN_SAMPLE_INTERVAL_MS = 30;
+    /** Returned by {@link #analyze} for frames arriving too soon after the last sample. */
+    public static final float NOT_SAMPLED = -1f;
+    private static final int BYTES_PER_PIXEL = 4;
+    // Per channel difference below which a sample pixel counts as unchanged, absorbs dithering.
+    private static final int CHANNEL_TOLERANCE = 2;
+
+    private final Matrix identity = new Matrix();
+    private final float[] identityTexMatrix =
+            RendererCommon.convertMatrixFromAndroidGraphicsMatrix(identity);
+    private GlRectDrawer drawer;
+    // One framebuffer per downsampling pass, the last one is SAMPLE_SIZE square.
+    private final List<GlTextureFrameBuffer> passes = new ArrayList<>();
+    private ByteBuffer current;
+    private ByteBuffer previous;
+    private boolean hasPrevious = false;
+    private long lastSampleTimeMs = Long.MIN_VALUE;
+
+    /**
+     * Returns the fraction of sample pixels that changed since the previous sample, 1 for the
+     * first frame, or {@link #NOT_SAMPLED} if the previous sample was taken less than
+     * {@value #MIN_SAMPLE_INTERVAL_MS} ms before {@code nowMs}.
+     */
+    public float analyze(VideoFrame.TextureBuffer buffer, long nowMs) {
+        if (hasPrevious && nowMs - lastSampleTimeMs < MIN_SAMPLE_INTERVAL_MS) {
+            return NOT_SAMPLED;
+        }
+        lastSampleTimeMs = nowMs;
+        if (drawer == null) {
+            drawer = new GlRectDrawer();
+            current = ByteBuffer.allocateDirect(SAMPLE_SIZE * SAMPLE_SIZE * BYTES_PER_PIXEL)
+                    .order(ByteOrder.nativeOrder());
+            previous = ByteBuffer.allocateDirect(SAMPLE_SIZE * SAMPLE_SIZE * BYTES_PER_PIXEL)
+                    .order(ByteOrder.nativeOrder());
+        }
+
+        int width = nextPassSize(buffer.getWidth());
+        int height = nextPassSize(buffer.getHeight());
+        GlTextureFrameBuffer target = getPass(0, width, height);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, target.getFrameBufferId());
+        VideoFrameDrawer.drawTexture(drawer, buffer, identity, buffer.getWidth(), buffer.getHeight(),
+                0, 0, width, height);
+        for (int pass = 1; width != SAMPLE_SIZE || height != SAMPLE_SIZE; pass++) {
+            GlTextureFrameBuffer source = target;
+            int sourceWidth = width;
+            int sourceHeight = height;
+            width = nextPassSize(width);
+            height = nextPassSize(height);
+            target = getPass(pass, width, height);
+            GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, target.getFrameBufferId());
+            drawer.drawRgb(source.getTextureId(), identityTexMatrix, sourceWidth, sourceHeight,
+                    0, 0, width, height);
+        }
+        current.rewind();
+        GLES20.glReadPixels(0, 0, SAMPLE_SIZE, SAMPLE_SIZE, GLES20.GL_RGBA,
+                GLES20.GL_UNSIGNED_BYTE, current);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, 0);
+        GlUtil.checkNoGLES2Error("ScreenContentAnalyzer.analyze");
+
+        float changed = hasPrevious ? changedFraction(current, previous) : 1f;
+        ByteBuffer swap = previous;
+        previous = current;
+        current = swap;
+        hasPrevious = true;
+        return changed;
+    }
+
+    /** Milliseconds from {@code nowMs} until {@link #analyze} takes a sample again. */
+    public long getNextSampleDelayMs(long nowMs) {
+        return Math.max(0, lastSampleTimeMs + MIN_SAMPLE_INTERVAL_MS - nowMs);
+    }
+
+    // Halving keeps each bilinear tap an exact 2x2 average; the last pass shrinks by at most 2.
+    private static int nextPassSize(int size) {
+        return size / 2 >= SAMPLE_SIZE ? size / 2 : SAMPLE_SIZE;
+    }
+
+    private GlTextureFrameBuffer getPass(int pass, int width, int height) {
+        if (pass == passes.size()) {
+            passes.add(new GlTextureFrameBuffer(GLES20.GL_RGBA));
+        }
+        GlTextureFrameBuffer frameBuffer = passes.get(pass);
+        frameBuffer.setSize(width, height);
+        return frameBuffer;
+    }
+
+    /** Forgets the previous sample, the next frame counts as fully changed. */
+    public void reset() {
+        hasPrevious = false;
+    }
+
+    private static float changedFraction(ByteBuffer a, ByteBuffer b) {
+        int pixels = SAMPLE_SIZE * SAMPLE_SIZE;
+        int changed = 0;
+        for (int i = 0; i < pixels * BYTES_PER_PIXEL; i += BYTES_PER_PIXEL) {
+            if (Math.abs((a.get(i) & 0xff) - (b.get(i) & 0xff)) > CHANNEL_TOLERANCE
+                    || Math.abs((a.get(i + 1) & 0xff) - (b.get(i + 1) & 0xff)) > CHANNEL_TOLERANCE
+                    || Math.abs((a.get(i + 2) & 0xff) - (b.get(i + 2) & 0xff)) > CHANNEL_TOLERANCE) {
+                changed++;
+            }
+        }
+        return (float) changed / pixels;
+    }
+
+    public void release() {
+        if (drawer != null) {
+            drawer.release();
+            drawer = null;
+        }
+        for (GlTextureFrameBuffer frameBuffer : passes) {
+            frameBuffer.release();
+        }
+        passes.clear();
+        hasPrevious = false;
+    }
+}
@@ -0,0 +1,293 @@
+package com.cloudwebrtc.webrtc.video;
+
+import android.content.Context;
+
+import org.webrtc.CapturerObserver;
+import org.webrtc.JavaI420Buffer;
+import org.webrtc.SurfaceTextureHelper;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoFrame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Generates a moving test pattern for benchmarks without a camera: a scrolling gradient, bouncing
+ * boxes and noise, with the frame number and timestamp burned in at the top left. Apart from the
+ * timestamp, a frame depends only on its number, so runs are reproducible. {@code complexity}
+ * (0 to 1) sets the number of boxes and the bits of noise per sample, from flat content that
+ * encodes to almost nothing up to full entropy. Frames are drawn straight into pooled direct I420
+ * buffers, returned to the pool when the last consumer releases them, and paced by a
+ * {@link FramePacer}.
+ */
+public class TestPatternVideoCapturer implements VideoCapturer {
+    public enum Pattern {
+        GRADIENT,
+        BOXES,
+        NOISE,
+        MIXED
+    }
+
+    private static final String TAG = "TestPatternVideoCapturer";
+    private static final int MAX_POOLED_BUFFERS = 4;
+    private static final int MAX_BOXES = 16;
+    private static final byte BLACK = 16;
+    private static final byte WHITE = (byte) 235;
+    private static final byte GRAY = (byte) 128;
+    private static final byte NEUTRAL_CHROMA = (byte) 128;
+    private static final int TIMESTAMP_DIGITS = 8;
+    // 3x5 digit glyphs, one bit per cell, rows top to bottom.
+    private static final int[] DIGITS = {
+            0b111_101_101_101_111, 0b010_110_010_010_111, 0b111_001_111_100_111,
+            0b111_001_111_001_111, 0b101_101_111_001_001, 0b111_100_111_001_111,
+            0b111_100_111_101_111, 0b111_001_010_010_010, 0b111_101_111_101_111,
+            0b111_101_111_001_111,
+    };
+
+    private final Pattern pattern;
+    private final float complexity;
+    private final FramePacer pacer = new FramePacer(TAG, this::onFrame);
+    private final Queue<ByteBuffer> pool = new ConcurrentLinkedQueue<>();
+    private CapturerObserver capturerObserver;
+    private volatile int width;
+    private volatile int height;
+
+    // Only accessed on the pacer thread.
+    private long frameNumber = 0;
+    private byte[] ramp;
+    private byte[] row;
+
+    public TestPatternVideoCapturer(Pattern pattern, float complexity) {
+        this.pattern = pattern;
+        this.complexity = Math.max(0f, Math.min(1f, complexity));
+    }
+
+    /** Frame slots skipped because drawing fell behind. */
+    public long getSkippedFrames() {
+        return pacer.getSkippedFrames();
+    }
+
+    @Override
+    public void initialize(SurfaceTextureHelper surfaceTextureHelper, Context applicationContext,
+            CapturerObserver capturerObserver) {
+        this.capturerObserver = capturerObserver;
+    }
+
+    @Override
+    public void startCapture(int width, int height, int framerate) {
+        setSize(width, height);
+        pacer.start(framerate, () -> capturerObserver.onCapturerStarted(true));
+    }
+
+    @Override
+    public void stopCapture() throws InterruptedException {
+        pacer.stop(capturerObserver::onCapturerStopped);
+    }
+
+    @Override
+    public void changeCaptureFormat(int width, int height, int framerate) {
+        setSize(width, height);
+        pacer.changeFramerate(framerate);
+    }
+
+    @Override
+    public void dispose() {
+        pacer.dispose();
+        pool.clear();
+    }
+
+    @Override
+    public boolean isScreencast() {
+        return false;
+    }
+
+    // Even dimensions keep the chroma planes aligned with the boxes.
+    private void setSize(int width, int height) {
+        this.width = Math.max(16, width & ~1);
+        this.height = Math.max(16, height & ~1);
+    }
+
+    private boolean onFrame(long timestampNs, int skipped) {
+        // Skipped slots advance the animation too, motion stays in real time.
+        frameNumber += skipped;
+        final int width = this.width;
+        final int height = this.height;
+        final int chromaWidth = width / 2;
+        final int chromaHeight = height / 2;
+        final int sizeY = width * height;
+        final int sizeUV = chromaWidth * chromaHeight;
+        if (row == null || row.length < width) {
+            row = new byte[width];
+            ramp = new byte[width + 256];
+            for (int i = 0; i < ramp.length; i++) {
+                ramp[i] = (byte) i;
+            }
+        }
+
+        final ByteBuffer buffer = takeBuffer(sizeY + 2 * sizeUV);
+        ByteBuffer dataY = slice(buffer, 0, sizeY);
+        ByteBuffer dataU = slice(buffer, sizeY, sizeUV);
+        ByteBuffer dataV = slice(buffer, sizeY + sizeUV, sizeUV);
+
+        drawBackground(dataY, dataU, dataV, width, height);
+        if (pattern == Pattern.BOXES || pattern == Pattern.MIXED) {
+            drawBoxes(dataY, dataU, dataV, width, height);
+        }
+        if (pattern == Pattern.NOISE || pattern == Pattern.MIXED) {
+            drawNoise(dataY, width, height, 1);
+            drawNoise(dataU, chromaWidth, chromaHeight, 2);
+            drawNoise(dataV, chromaWidth, chromaHeight, 3);
+        }
+        drawCounters(dataY, dataU, dataV, width, height, timestampNs / 1000000);
+
+        JavaI420Buffer i420 = JavaI420Buffer.wrap(width, height, dataY, width, dataU, chromaWidth,
+                dataV, chromaWidth, () -> recycle(buffer));
+        VideoFrame frame = new VideoFrame(i420, 0, timestampNs);
+        capturerObserver.onFrameCaptured(frame);
+        frame.release();
+        frameNumber++;
+        return true;
+    }
+
+    private void drawBackground(ByteBuffer dataY, ByteBuffer dataU, ByteBuffer dataV,
+            int width, int height) {
+        if (pattern != Pattern.GRADIENT && pattern != Pattern.MIXED) {
+            byte luma = pattern == Pattern.NOISE ? GRAY : BLACK;
+            fillRect(dataY, width, 0, 0, width, height, luma);
+            fillRect(dataU, width / 2, 0, 0, width / 2, height / 2, NEUTRAL_CHROMA);
+            fillRect(dataV, width / 2, 0, 0, width / 2, height / 2, NEUTRAL_CHROMA);
+            return;
+        }
+        // Luma scrolls diagonally, U horizontally and V vertically.
+        for (int y = 0; y < height; y++) {
+            dataY.position(y * width);
+            dataY.put(ramp, (int) ((y + 2 * frameNumber) & 0xff), width);
+        }
+        for (int y = 0; y < height / 2; y++) {
+            dataU.position(y * (width / 2));
+            dataU.put(ramp, (int) (frameNumber & 0xff), width / 2);
+            Arrays.fill(row, 0, width / 2, (byte) (2 * y + frameNumber));
+            dataV.position(y * (width / 2));
+            dataV.put(row, 0, width / 2);
+        }
+    }
+
+    private void drawBoxes(ByteBuffer dataY, ByteBuffer dataU, ByteBuffer dataV,
+            int width, int height) {
+        int count = 1 + Math.round(complexity * (MAX_BOXES - 1));
+        int size = Math.max(8, Math.min(width, height) / 8) & ~1;
+        for (int i = 0; i < count; i++) {
+            int x = bounce(i * 97L + frameNumber * (3 + (i * 7) % 11), width - size) & ~1;
+            int y = bounce(i * 61L + frameNumber * (2 + (i * 5) % 9), height - size) & ~1;
+            fillRect(dataY, width, x, y, size, size, (byte) (40 + (i * 53) % 200));
+            fillRect(dataU, width / 2, x / 2, y / 2, size / 2, size / 2, (byte) (i * 89));
+            fillRect(dataV, width / 2, x / 2, y / 2, size / 2, size / 2, (byte) (i * 151));
+        }
+    }
+
+    /** XORs the low {@code complexity * 8} bits of every sample with a per-frame random stream. */
+    private void drawNoise(ByteBuffer plane, int width, int height, int seed) {
+        int bits = Math.round(complexity * 8);
+        if (bits == 0) {
+            return;
+        }
+        int mask = (1 << bits) - 1;
+        long state = (frameNumber * 3 + seed) * 0x9E3779B97F4A7C15L;
+        for (int y = 0; y < height; y++) {
+            plane.position(y * width);
+            plane.get(row, 0, width);
+            plane.position(y * width);
+            for (int x = 0; x < width; x += 8) {
+                // xorshift64
+                state ^= state << 13;
+                state ^= state >>> 7;
+                state ^= state << 17;
+                long random = state;
+                for (int b = x; b < Math.min(x + 8, width); b++) {
+                    row[b] ^= (byte) (random & mask);
+                    random >>>= 8;
+                }
+            }
+            plane.put(row, 0, width);
+        }
+    }
+
+    /** Frame number above the timestamp in milliseconds, both in decimal. */
+    private void drawCounters(ByteBuffer dataY, ByteBuffer dataU, ByteBuffer dataV,
+            int width, int height, long timestampMs) {
+        int scale = Math.max(2, height / 90) & ~1;
+        int digitWidth = 4 * scale;
+        int lineHeight = 6 * scale;
+        int boxWidth = Math.min(width, TIMESTAMP_DIGITS * digitWidth + 2 * scale);
+        int boxHeight = Math.min(height, 2 * lineHeight + 2 * scale);
+        fillRect(dataY, width, 0, 0, boxWidth, boxHeight, BLACK);
+        fillRect(dataU, width / 2, 0, 0, boxWidth / 2, boxHeight / 2, NEUTRAL_CHROMA);
+        fillRect(dataV, width / 2, 0, 0, boxWidth / 2, boxHeight / 2, NEUTRAL_CHROMA);
+        drawNumber(dataY, width, height, scale, scale, scale, frameNumber);
+        drawNumber(dataY, width, height, scale, scale + lineHeight, scale, timestampMs);
+    }
+
+    private void drawNumber(ByteBuffer dataY, int width, int height, int left, int top, int scale,
+            long value) {
+        long remaining = Math.abs(value);
+        for (int i = TIMESTAMP_DIGITS - 1; i >= 0; i--) {
+            int glyph = DIGITS[(int) (remaining % 10)];
+            remaining /= 10;
+            for (int cell = 0; cell < 15; cell++) {
+                if ((glyph & (1 << (14 - cell))) != 0) {
+                    int x = left + i * 4 * scale + (cell % 3) * scale;
+                    int y = top + (cell / 3) * scale;
+                    fillRect(dataY, width, x, y, Math.min(scale, width - x),
+                            Math.min(scale, height - y), WHITE);
+                }
+            }
+        }
+    }
+
+    private void fillRect(ByteBuffer plane, int stride, int x, int y, int w, int h, byte value) {
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        Arrays.fill(row, 0, w, value);
+        for (int r = y; r < y + h; r++) {
+            plane.position(r * stride + x);
+            plane.put(row, 0, w);
+        }
+    }
+
+    // Triangle wave over [0, range].
+    private static int bounce(long travel, int range) {
+        if (range <= 0) {
+            return 0;
+        }
+        long position = travel % (2L * range);
+        return (int) (position < range ? position : 2L * range - position);
+    }
+
+    private ByteBuffer takeBuffer(int size) {
+        ByteBuffer buffer;
+        while ((buffer = pool.poll()) != null) {
+            // Buffers of an earlier size are dropped.
+            if (buffer.capacity() == size) {
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    // Called by the last consumer of a frame, on any thread.
+    private void recycle(ByteBuffer buffer) {
+        if (pool.size() < MAX_POOLED_BUFFERS) {
+            pool.offer(buffer);
+        }
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int offset, int length) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset);
+        view.limit(offset + length);
+        return view.slice();
+    }
+}
@@ -3,19 +3,12 @@ package com.cloudwebrtc.webrtc.video.camera;
 import android.app.Activity;
 import android.graphics.Rect;
 import android.hardware.Camera;
-import android.hardware.camera2.CameraCaptureSession;
-import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CaptureRequest;
-import android.hardware.camera2.CameraAccessException;
 import android.hardware.camera2.CameraCharacteristics;
-import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.params.MeteringRectangle;
 import android.os.Build;
-import android.os.Handler;
 import android.util.Log;
-import android.util.Range;
 import android.util.Size;
-import android.view.Surface;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.RequiresApi;
@@ -26,7 +19,7 @@ import com.cloudwebrtc.webrtc.video.VideoCapturerInfo;
 
 import org.webrtc.Camera1Capturer;
 import org.webrtc.Camera2Capturer;
-import org.webrtc.CameraEnumerationAndroid;
+import org.webrtc.Camera2Control;
 
 import java.lang.reflect.Field;
 import java.util.List;
@@ -58,76 +51,28 @@ public class CameraUtils {
     }
 
     if (info.capturer instanceof Camera2Capturer) {
-      CameraCaptureSession captureSession;
-      CameraDevice cameraDevice;
-      CameraEnumerationAndroid.CaptureFormat captureFormat;
-      int fpsUnitFactor;
-      Surface surface;
-      Handler cameraThreadHandler;
-      CameraManager manager;
-
-      try {
-        Object session =
-                getPrivateProperty(
-                        Camera2Capturer.class.getSuperclass(), info.capturer, "currentSession");
-        manager =
-                (CameraManager)
-                        getPrivateProperty(Camera2Capturer.class, info.capturer, "cameraManager");
-        captureSession =
-                (CameraCaptureSession)
-                        getPrivateProperty(session.getClass(), session, "captureSession");
-        cameraDevice =
-                (CameraDevice) getPrivateProperty(session.getClass(), session, "cameraDevice");
-        captureFormat =
-                (CameraEnumerationAndroid.CaptureFormat) getPrivateProperty(session.getClass(), session, "captureFormat");
-        fpsUnitFactor = (int) getPrivateProperty(session.getClass(), session, "fpsUnitFactor");
-        surface = (Surface) getPrivateProperty(session.getClass(), session, "surface");
-        cameraThreadHandler =
-                (Handler) getPrivateProperty(session.getClass(), session, "cameraThreadHandler");
-      } catch (NoSuchFieldWithNameException e) {
-        // Most likely the upstream Camera2Capturer class have changed
-        resultError("setFocusMode", "[FocusMode] Failed to get `" + e.fieldName + "` from `" + e.className + "`", result);
+      Camera2Control control = ((Camera2Capturer) info.capturer).getCameraControl();
+      if (control == null) {
+        resultError("setFocusMode", "[FocusMode] Camera session is not running", result);
         return;
       }
 
-      try {
-        final CaptureRequest.Builder captureRequestBuilder =
-                cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_RECORD);
-        switch (mode) {
-          case "locked":
-            // When locking the auto-focus the camera device should do a one-time focus and afterwards
-            // set the auto-focus to idle. This is accomplished by setting the CONTROL_AF_MODE to
-            // CONTROL_AF_MODE_AUTO.
-            captureRequestBuilder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_AUTO);
-            break;
-          case "auto":
-            captureRequestBuilder.set(
-                    CaptureRequest.CONTROL_AF_MODE,
-                    CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_VIDEO);
-            break;
-          default:
-            break;
-        }
-
-        captureRequestBuilder.set(
-                CaptureRequest.FLASH_MODE,
-                isTorchOn ? CaptureRequest.FLASH_MODE_TORCH : CaptureRequest.FLASH_MODE_OFF);
-
-        captureRequestBuilder.set(
-                CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE,
-                new Range<>(
-                        captureFormat.framerate.min / fpsUnitFactor,
-                        captureFormat.framerate.max / fpsUnitFactor));
-
-        //captureRequestBuilder.set(CaptureRequest.CONTROL_AE_LOCK, false);
-        captureRequestBuilder.addTarget(surface);
-        captureSession.setRepeatingRequest(
-                captureRequestBuilder.build(), null, cameraThreadHandler);
-      } catch (CameraAccessException e) {
-        // Should never happen since we are already accessing the camera
-        throw new RuntimeException(e);
+      final int afMode;
+      switch (mode) {
+        case "locked":
+          // When locking the auto-focus the camera device should do a one-time focus and afterwards
+          // set the auto-focus to idle. This is accomplished by setting the CONTROL_AF_MODE to
+          // CONTROL_AF_MODE_AUTO.
+          afMode = CaptureRequest.CONTROL_AF_MODE_AUTO;
+          break;
+        case "auto":
+          afMode = CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_VIDEO;
+          break;
+        default:
+          result.success(null);
+          return;
       }
-
+      control.updateCaptureRequest(builder -> builder.set(CaptureRequest.CONTROL_AF_MODE, afMode));
 
       result.success(null);
       return;
@@ -177,59 +122,20 @@ public class CameraUtils {
     }
 
     if (info.capturer instanceof Camera2Capturer) {
-      CameraCaptureSession captureSession;
-      CameraDevice cameraDevice;
-      CameraEnumerationAndroid.CaptureFormat captureFormat;
-      int fpsUnitFactor;
-      Surface surface;
-      Handler cameraThreadHandler;
-      CameraManager manager;
-
-      try {
-        Object session =
-                getPrivateProperty(
-                        Camera2Capturer.class.getSuperclass(), info.capturer, "currentSession");
-        manager =
-                (CameraManager)
-                        getPrivateProperty(Camera2Capturer.class, info.capturer, "cameraManager");
-        captureSession =
-                (CameraCaptureSession)
-                        getPrivateProperty(session.getClass(), session, "captureSession");
-        cameraDevice =
-                (CameraDevice) getPrivateProperty(session.getClass(), session, "cameraDevice");
-        captureFormat =
-                (CameraEnumerationAndroid.CaptureFormat) getPrivateProperty(session.getClass(), session, "captureFormat");
-        fpsUnitFactor = (int) getPrivateProperty(session.getClass(), session, "fpsUnitFactor");
-        surface = (Surface) getPrivateProperty(session.getClass(), session, "surface");
-        cameraThreadHandler =
-                (Handler) getPrivateProperty(session.getClass(), session, "cameraThreadHandler");
-      } catch (NoSuchFieldWithNameException e) {
-        // Most likely the upstream Camera2Capturer class have changed
-        resultError("setFocusMode", "[FocusMode] Failed to get `" + e.fieldName + "` from `" + e.className + "`", result);
+      Camera2Control control = ((Camera2Capturer) info.capturer).getCameraControl();
+      if (control == null) {
+        resultError("setFocusMode", "[FocusMode] Camera session is not running", result);
         return;
       }
 
-      try {
-        final CameraCharacteristics cameraCharacteristics = manager.getCameraCharacteristics(cameraDevice.getId());
-        final CaptureRequest.Builder captureRequestBuilder =
-                cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_RECORD);
-        MeteringRectangle focusRectangle = null;
-        Size cameraBoundaries = CameraRegionUtils.getCameraBoundaries(cameraCharacteristics, captureRequestBuilder);
-        PlatformChannel.DeviceOrientation orientation = deviceOrientationManager.getLastUIOrientation();
-        focusRectangle =
+      final CameraCharacteristics cameraCharacteristics = control.getCameraCharacteristics();
+      final PlatformChannel.DeviceOrientation orientation = deviceOrientationManager.getLastUIOrientation();
+      control.updateCaptureRequest(builder -> {
+        Size cameraBoundaries = CameraRegionUtils.getCameraBoundaries(cameraCharacteristics, builder);
+        MeteringRectangle focusRectangle =
                 convertPointToMeteringRectangle(cameraBoundaries, focusPoint.x, focusPoint.y, orientation);
-
-        captureRequestBuilder.set(
-                CaptureRequest.CONTROL_AF_REGIONS,
-                captureRequestBuilder == null ? null : new MeteringRectangle[] {focusRectangle});
-        captureRequestBuilder.addTarget(surface);
-        captureSession.setRepeatingRequest(
-                captureRequestBuilder.build(), null, cameraThreadHandler);
-      } catch (CameraAccessException e) {
-        // Should never happen since we are already accessing the camera
-        throw new RuntimeException(e);
-      }
-
+        builder.set(CaptureRequest.CONTROL_AF_REGIONS, new MeteringRectangle[] {focusRectangle});
+      });
 
       result.success(null);
       return;
@@ -271,69 +177,25 @@ public class CameraUtils {
     }
 
     if (info.capturer instanceof Camera2Capturer) {
-      CameraCaptureSession captureSession;
-      CameraDevice cameraDevice;
-      CameraEnumerationAndroid.CaptureFormat captureFormat;
-      int fpsUnitFactor;
-      Surface surface;
-      Handler cameraThreadHandler;
-      CameraManager manager;
-
-      try {
-        Object session =
-                getPrivateProperty(
-                        Camera2Capturer.class.getSuperclass(), info.capturer, "currentSession");
-        manager =
-                (CameraManager)
-                        getPrivateProperty(Camera2Capturer.class, info.capturer, "cameraManager");
-        captureSession =
-                (CameraCaptureSession)
-                        getPrivateProperty(session.getClass(), session, "captureSession");
-        cameraDevice =
-                (CameraDevice) getPrivateProperty(session.getClass(), session, "cameraDevice");
-        captureFormat =
-                (CameraEnumerationAndroid.CaptureFormat) getPrivateProperty(session.getClass(), session, "captureFormat");
-        fpsUnitFactor = (int) getPrivateProperty(session.getClass(), session, "fpsUnitFactor");
-        surface = (Surface) getPrivateProperty(session.getClass(), session, "surface");
-        cameraThreadHandler =
-                (Handler) getPrivateProperty(session.getClass(), session, "cameraThreadHandler");
-      } catch (NoSuchFieldWithNameException e) {
-        // Most likely the upstream Camera2Capturer class have changed
-        resultError("setExposurePoint", "[setExposurePoint] Failed to get `" + e.fieldName + "` from `" + e.className + "`", result);
+      Camera2Control control = ((Camera2Capturer) info.capturer).getCameraControl();
+      if (control == null) {
+        resultError("setExposurePoint", "[setExposurePoint] Camera session is not running", result);
         return;
       }
 
-      try {
-        final CameraCharacteristics cameraCharacteristics = manager.getCameraCharacteristics(cameraDevice.getId());
-        final CaptureRequest.Builder captureRequestBuilder =
-                cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_RECORD);
-
-        if(CameraRegionUtils.getControlMaxRegionsAutoExposure(cameraCharacteristics) <= 0) {
-          resultError("setExposurePoint", "[setExposurePoint] Camera does not support auto exposure", result);
-          return;
-        }
-
-        MeteringRectangle exposureRectangle = null;
-        Size cameraBoundaries = CameraRegionUtils.getCameraBoundaries(cameraCharacteristics, captureRequestBuilder);
-        PlatformChannel.DeviceOrientation orientation = deviceOrientationManager.getLastUIOrientation();
-        exposureRectangle =
-                convertPointToMeteringRectangle(cameraBoundaries, exposurePoint.x, exposurePoint.y, orientation);
-        if (exposureRectangle != null) {
-          captureRequestBuilder.set(
-                  CaptureRequest.CONTROL_AE_REGIONS, new MeteringRectangle[] {exposureRectangle});
-        } else {
-          MeteringRectangle[] defaultRegions = captureRequestBuilder.get(CaptureRequest.CONTROL_AE_REGIONS);
-          captureRequestBuilder.set(CaptureRequest.CONTROL_AE_REGIONS, defaultRegions);
-        }
-
-        captureRequestBuilder.addTarget(surface);
-        captureSession.setRepeatingRequest(
-                captureRequestBuilder.build(), null, cameraThreadHandler);
-      } catch (CameraAccessException e) {
-        // Should never happen since we are already accessing the camera
-        throw new RuntimeException(e);
+      final CameraCharacteristics cameraCharacteristics = control.getCameraCharacteristics();
+      if (CameraRegionUtils.getControlMaxRegionsAutoExposure(cameraCharacteristics) <= 0) {
+        resultError("setExposurePoint", "[setExposurePoint] Camera does not support auto exposure", result);
+        return;
       }
 
+      final PlatformChannel.DeviceOrientation orientation = deviceOrientationManager.getLastUIOrientation();
+      control.updateCaptureRequest(builder -> {
+        Size cameraBoundaries = CameraRegionUtils.getCameraBoundaries(cameraCharacteristics, builder);
+        MeteringRectangle exposureRectangle =
+                convertPointToMeteringRectangle(cameraBoundaries, exposurePoint.x, exposurePoint.y, orientation);
+        builder.set(CaptureRequest.CONTROL_AE_REGIONS, new MeteringRectangle[] {exposureRectangle});
+      });
 
       result.success(null);
       return;
@@ -368,35 +230,15 @@ public class CameraUtils {
     }
 
     if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && info.capturer instanceof Camera2Capturer) {
-      CameraManager manager;
-      CameraDevice cameraDevice;
-
-      try {
-        Object session =
-                getPrivateProperty(
-                        Camera2Capturer.class.getSuperclass(), info.capturer, "currentSession");
-        manager =
-                (CameraManager)
-                        getPrivateProperty(Camera2Capturer.class, info.capturer, "cameraManager");
-        cameraDevice =
-                (CameraDevice) getPrivateProperty(session.getClass(), session, "cameraDevice");
-      } catch (NoSuchFieldWithNameException e) {
-        // Most likely the upstream Camera2Capturer class have changed
-        resultError("hasTorch", "[TORCH] Failed to get `" + e.fieldName + "` from `" + e.className + "`", result);
+      Camera2Control control = ((Camera2Capturer) info.capturer).getCameraControl();
+      if (control == null) {
+        resultError("hasTorch", "[TORCH] Camera session is not running", result);
         return;
       }
 
-      boolean flashIsAvailable;
-      try {
-        CameraCharacteristics characteristics =
-                manager.getCameraCharacteristics(cameraDevice.getId());
-        flashIsAvailable = characteristics.get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
-      } catch (CameraAccessException e) {
-        // Should never happen since we are already accessing the camera
-        throw new RuntimeException(e);
-      }
-
-      result.success(flashIsAvailable);
+      Boolean flashIsAvailable =
+              control.getCameraCharacteristics().get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+      result.success(flashIsAvailable != null && flashIsAvailable);
       return;
     }
 
@@ -434,77 +276,27 @@ public class CameraUtils {
     }
 
     if (info.capturer instanceof Camera2Capturer) {
-      CameraCaptureSession captureSession;
-      CameraDevice cameraDevice;
-      CameraEnumerationAndroid.CaptureFormat captureFormat;
-      int fpsUnitFactor;
-      Surface surface;
-      Handler cameraThreadHandler;
-      CameraManager manager;
-
-      try {
-        Object session =
-                getPrivateProperty(
-                        Camera2Capturer.class.getSuperclass(), info.capturer, "currentSession");
-        manager =
-                (CameraManager)
-                        getPrivateProperty(Camera2Capturer.class, info.capturer, "cameraManager");
-        captureSession =
-                (CameraCaptureSession)
-                        getPrivateProperty(session.getClass(), session, "captureSession");
-        cameraDevice =
-                (CameraDevice) getPrivateProperty(session.getClass(), session, "cameraDevice");
-        captureFormat =
-                (CameraEnumerationAndroid.CaptureFormat) getPrivateProperty(session.getClass(), session, "captureFormat");
-        fpsUnitFactor = (int) getPrivateProperty(session.getClass(), session, "fpsUnitFactor");
-        surface = (Surface) getPrivateProperty(session.getClass(), session, "surface");
-        cameraThreadHandler =
-                (Handler) getPrivateProperty(session.getClass(), session, "cameraThreadHandler");
-      } catch (NoSuchFieldWithNameException e) {
-        // Most likely the upstream Camera2Capturer class have changed
-        resultError("setZoom", "[ZOOM] Failed to get `" + e.fieldName + "` from `" + e.className + "`", result);
+      Camera2Control control = ((Camera2Capturer) info.capturer).getCameraControl();
+      if (control == null) {
+        resultError("setZoom", "[ZOOM] Camera session is not running", result);
         return;
       }
 
-      try {
-        final CaptureRequest.Builder captureRequestBuilder =
-                cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_RECORD);
-
-        final CameraCharacteristics cameraCharacteristics = manager.getCameraCharacteristics(cameraDevice.getId());
-        final Rect rect = cameraCharacteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
-        final double maxZoomLevel = cameraCharacteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
+      final CameraCharacteristics cameraCharacteristics = control.getCameraCharacteristics();
+      final Rect rect = cameraCharacteristics.get(CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+      final Float maxZoomLevel = cameraCharacteristics.get(CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
 
+      if (rect != null && maxZoomLevel != null) {
         final double desiredZoomLevel = Math.max(1.0, Math.min(zoomLevel, maxZoomLevel));
-
         float ratio = 1.0f / (float)desiredZoomLevel;
-
-        if (rect != null) {
-          int croppedWidth = rect.width() - Math.round((float) rect.width() * ratio);
-          int croppedHeight = rect.height() - Math.round((float) rect.height() * ratio);
-          final Rect desiredRegion = new Rect(croppedWidth / 2, croppedHeight / 2, rect.width() - croppedWidth / 2, rect.height() - croppedHeight / 2);
-          captureRequestBuilder.set(CaptureRequest.SCALER_CROP_REGION, desiredRegion);
-        }
-
-        captureRequestBuilder.set(
-                CaptureRequest.FLASH_MODE,
-                isTorchOn ? CaptureRequest.FLASH_MODE_TORCH : CaptureRequest.FLASH_MODE_OFF);
-        captureRequestBuilder.set(
-                CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE,
-                new Range<>(
-                        captureFormat.framerate.min / fpsUnitFactor,
-                        captureFormat.framerate.max / fpsUnitFactor));
-        captureRequestBuilder.set(
-                CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-        captureRequestBuilder.set(CaptureRequest.CONTROL_AE_LOCK, false);
-        captureRequestBuilder.addTarget(surface);
-        captureSession.setRepeatingRequest(
-                captureRequestBuilder.build(), null, cameraThreadHandler);
-      } catch (CameraAccessException e) {
-        // Should never happen since we are already accessing the camera
-        throw new RuntimeException(e);
+        int croppedWidth = rect.width() - Math.round((float) rect.width() * ratio);
+        int croppedHeight = rect.height() - Math.round((float) rect.height() * ratio);
+        final Rect desiredRegion = new Rect(croppedWidth / 2, croppedHeight / 2, rect.width() - croppedWidth / 2, rect.height() - croppedHeight / 2);
+        // Pinch gestures call this for every touch event, the session applies the last region
+        // once per frame.
+        control.updateCaptureRequest(builder -> builder.set(CaptureRequest.SCALER_CROP_REGION, desiredRegion));
       }
 
-
       result.success(null);
       return;
     }
@@ -544,58 +336,15 @@ public class CameraUtils {
       return;
     }
     if (info.capturer instanceof Camera2Capturer) {
-      CameraCaptureSession captureSession;
-      CameraDevice cameraDevice;
-      CameraEnumerationAndroid.CaptureFormat captureFormat;
-      int fpsUnitFactor;
-      Surface surface;
-      Handler cameraThreadHandler;
-
-      try {
-        Object session =
-                getPrivateProperty(
-                        Camera2Capturer.class.getSuperclass(), info.capturer, "currentSession");
-        CameraManager manager =
-                (CameraManager)
-                        getPrivateProperty(Camera2Capturer.class, info.capturer, "cameraManager");
-        captureSession =
-                (CameraCaptureSession)
-                        getPrivateProperty(session.getClass(), session, "captureSession");
-        cameraDevice =
-                (CameraDevice) getPrivateProperty(session.getClass(), session, "cameraDevice");
-        captureFormat =
-                (CameraEnumerationAndroid.CaptureFormat) getPrivateProperty(session.getClass(), session, "captureFormat");
-        fpsUnitFactor = (int) getPrivateProperty(session.getClass(), session, "fpsUnitFactor");
-        surface = (Surface) getPrivateProperty(session.getClass(), session, "surface");
-        cameraThreadHandler =
-                (Handler) getPrivateProperty(session.getClass(), session, "cameraThreadHandler");
-      } catch (NoSuchFieldWithNameException e) {
-        // Most likely the upstream Camera2Capturer class have changed
-        resultError("setTorch", "[TORCH] Failed to get `" + e.fieldName + "` from `" + e.className + "`", result);
+      Camera2Control control = ((Camera2Capturer) info.capturer).getCameraControl();
+      if (control == null) {
+        resultError("setTorch", "[TORCH] Camera session is not running", result);
         return;
       }
 
-      try {
-        final CaptureRequest.Builder captureRequestBuilder =
-                cameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_RECORD);
-        captureRequestBuilder.set(
-                CaptureRequest.FLASH_MODE,
-                torch ? CaptureRequest.FLASH_MODE_TORCH : CaptureRequest.FLASH_MODE_OFF);
-        captureRequestBuilder.set(
-                CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE,
-                new Range<>(
-                        captureFormat.framerate.min / fpsUnitFactor,
-                        captureFormat.framerate.max / fpsUnitFactor));
-        captureRequestBuilder.set(
-                CaptureRequest.CONTROL_AE_MODE, CaptureRequest.CONTROL_AE_MODE_ON);
-        captureRequestBuilder.set(CaptureRequest.CONTROL_AE_LOCK, false);
-        captureRequestBuilder.addTarget(surface);
-        captureSession.setRepeatingRequest(
-                captureRequestBuilder.build(), null, cameraThreadHandler);
-      } catch (CameraAccessException e) {
-        // Should never happen since we are already accessing the camera
-        throw new RuntimeException(e);
-      }
+      control.updateCaptureRequest(builder -> builder.set(
+              CaptureRequest.FLASH_MODE,
+              torch ? CaptureRequest.FLASH_MODE_TORCH : CaptureRequest.FLASH_MODE_OFF));
 
       result.success(null);
       isTorchOn = torch;
@@ -1,9 +1,13 @@
 package org.webrtc;
 
-interface BitrateAdjuster {
-   void setTargets(int var1, double var2);
-
-   void reportEncodedFrame(int var1);
+/**
+ * Adjusts the bitrate/framerate handed to a MediaCodec encoder based on the targets set by
+ * libwebrtc and the sizes of the frames the encoder actually produces.
+ */
+public interface BitrateAdjuster {
+   void setTargets(int targetBitrateBps, double targetFramerateFps);
+
+   void reportEncodedFrame(int size);
 
    int getAdjustedBitrateBps();
 
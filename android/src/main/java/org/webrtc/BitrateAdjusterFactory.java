@@ -0,0 +1,41 @@
+package org.webrtc;
+
+/**
+ * Creates the {@link BitrateAdjuster} used by each {@link HardwareVideoEncoder}.
+ *
+ * {@code codecType} is the codec name as reported by {@link VideoCodecInfo#getName()}
+ * (e.g. "VP8", "H264") and {@code codecName} the MediaCodec component name
+ * (e.g. "OMX.qcom.video.encoder.vp8").
+ */
+public interface BitrateAdjusterFactory {
+   /** Vendor heuristics libwebrtc ships with: Exynos encoders get a correcting adjuster. */
+   BitrateAdjusterFactory DEFAULT = (codecType, codecName) -> {
+      if (codecName.startsWith("OMX.Exynos.")) {
+         return (BitrateAdjuster)("VP8".equals(codecType) ? new DynamicBitrateAdjuster() : new FramerateBitrateAdjuster());
+      } else {
+         return new BaseBitrateAdjuster();
+      }
+   };
+
+   BitrateAdjuster createBitrateAdjuster(String codecType, String codecName);
+
+   /** Uses the target bitrate as is. */
+   static BitrateAdjusterFactory base() {
+      return (codecType, codecName) -> new BaseBitrateAdjuster();
+   }
+
+   /** Always uses a fixed framerate and scales the bitrate accordingly. */
+   static BitrateAdjusterFactory framerate() {
+      return (codecType, codecName) -> new FramerateBitrateAdjuster();
+   }
+
+   /** Slowly corrects the long term deviation between encoded and target bitrate. */
+   static BitrateAdjusterFactory dynamic(double adjustmentSec) {
+      return (codecType, codecName) -> new DynamicBitrateAdjuster(adjustmentSec);
+   }
+
+   /** Corrects overshoot measured over short windows, see {@link LatencyAwareBitrateAdjuster}. */
+   static BitrateAdjusterFactory latencyAware(int windowMs, double overshootTolerance) {
+      return (codecType, codecName) -> new LatencyAwareBitrateAdjuster(windowMs, overshootTolerance);
+   }
+}
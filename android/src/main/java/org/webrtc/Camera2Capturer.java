@@ -15,6 +15,13 @@ public class Camera2Capturer extends CameraCapturer {
       this.cameraManager = (CameraManager)context.getSystemService("camera");
    }
 
+   /** Controls of the running session, or null while no session is open. */
+   @Nullable
+   public Camera2Control getCameraControl() {
+      CameraSession session = this.getCurrentSession();
+      return session instanceof Camera2Control ? (Camera2Control)session : null;
+   }
+
    protected void createCameraSession(CameraSession.CreateSessionCallback createSessionCallback, CameraSession.Events events, Context applicationContext, SurfaceTextureHelper surfaceTextureHelper, String cameraName, int width, int height, int framerate) {
       Camera2Session.create(createSessionCallback, events, applicationContext, this.cameraManager, surfaceTextureHelper, cameraName, width, height, framerate);
    }
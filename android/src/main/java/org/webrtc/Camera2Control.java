@@ -0,0 +1,29 @@
+package org.webrtc;
+
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CaptureRequest;
+
+/**
+ * Direct access to the repeating request of a running {@link Camera2Session}, for zoom, torch,
+ * focus and exposure controls. The session keeps one {@link CaptureRequest.Builder} with the
+ * current control state; updates are applied to it on the camera thread and flushed with a single
+ * {@code setRepeatingRequest} on the next captured frame, so a burst of updates (a pinch gesture)
+ * costs one request per frame.
+ */
+public interface Camera2Control {
+   String getCameraId();
+
+   /** Characteristics read once when the session started. */
+   CameraCharacteristics getCameraCharacteristics();
+
+   /**
+    * Runs {@code update} on the camera thread against the persistent request builder. Updates
+    * posted before the capture session is configured are applied when it is; updates posted after
+    * the session stopped are dropped.
+    */
+   void updateCaptureRequest(Camera2Control.RequestUpdate update);
+
+   public interface RequestUpdate {
+      void apply(CaptureRequest.Builder builder);
+   }
+}
@@ -15,11 +15,12 @@ import android.os.Handler;
 import android.util.Range;
 import android.view.Surface;
 import androidx.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-class Camera2Session implements CameraSession {
+class Camera2Session implements CameraSession, Camera2Control {
    private static final String TAG = "Camera2Session";
    private static final Histogram camera2StartTimeMsHistogram = Histogram.createCounts("WebRTC.Android.Camera2.StartTimeMs", 1, 10000, 50);
    private static final Histogram camera2StopTimeMsHistogram = Histogram.createCounts("WebRTC.Android.Camera2.StopTimeMs", 1, 10000, 50);
@@ -47,6 +48,11 @@ class Camera2Session implements CameraSession {
    private CameraCaptureSession captureSession;
    private Camera2Session.SessionState state;
    private boolean firstFrameReported;
+   @Nullable
+   private Builder captureRequestBuilder;
+   private final List<Camera2Control.RequestUpdate> pendingRequestUpdates = new ArrayList();
+   private boolean captureRequestDirty;
+   private final Camera2Session.CameraCaptureCallback captureCallback = new Camera2Session.CameraCaptureCallback();
    private final long constructionTimeNs;
 
    public static void create(CameraSession.CreateSessionCallback callback, CameraSession.Events events, Context applicationContext, CameraManager cameraManager, SurfaceTextureHelper surfaceTextureHelper, String cameraId, int width, int height, int framerate) {
@@ -133,9 +139,48 @@ class Camera2Session implements CameraSession {
 
    }
 
+   public String getCameraId() {
+      return this.cameraId;
+   }
+
+   public CameraCharacteristics getCameraCharacteristics() {
+      return this.cameraCharacteristics;
+   }
+
+   public void updateCaptureRequest(Camera2Control.RequestUpdate update) {
+      this.cameraThreadHandler.post(() -> {
+         if (this.state != Camera2Session.SessionState.RUNNING) {
+            return;
+         }
+
+         if (this.captureRequestBuilder == null) {
+            this.pendingRequestUpdates.add(update);
+         } else {
+            update.apply(this.captureRequestBuilder);
+            this.captureRequestDirty = true;
+         }
+      });
+   }
+
+   private void flushCaptureRequest() {
+      this.checkIsOnCameraThread();
+      if (this.captureRequestDirty && this.captureSession != null && this.captureRequestBuilder != null) {
+         this.captureRequestDirty = false;
+
+         try {
+            this.captureSession.setRepeatingRequest(this.captureRequestBuilder.build(), this.captureCallback, this.cameraThreadHandler);
+         } catch (IllegalStateException | CameraAccessException var2) {
+            Logging.w("Camera2Session", "Failed to update capture request: " + var2);
+         }
+      }
+   }
+
    private void stopInternal() {
       Logging.d("Camera2Session", "Stop internal");
       this.checkIsOnCameraThread();
+      this.captureRequestBuilder = null;
+      this.pendingRequestUpdates.clear();
+      this.captureRequestDirty = false;
       this.surfaceTextureHelper.stopListening();
       if (this.captureSession != null) {
          this.captureSession.close();
@@ -281,7 +326,13 @@ class Camera2Session implements CameraSession {
             this.chooseStabilizationMode(captureRequestBuilder);
             this.chooseFocusMode(captureRequestBuilder);
             captureRequestBuilder.addTarget(Camera2Session.this.surface);
-            session.setRepeatingRequest(captureRequestBuilder.build(), new Camera2Session.CameraCaptureCallback(), Camera2Session.this.cameraThreadHandler);
+            for (Camera2Control.RequestUpdate update : Camera2Session.this.pendingRequestUpdates) {
+               update.apply(captureRequestBuilder);
+            }
+
+            Camera2Session.this.pendingRequestUpdates.clear();
+            session.setRepeatingRequest(captureRequestBuilder.build(), Camera2Session.this.captureCallback, Camera2Session.this.cameraThreadHandler);
+            Camera2Session.this.captureRequestBuilder = captureRequestBuilder;
          } catch (CameraAccessException var3) {
             Camera2Session.this.reportError("Failed to start capture request. " + var3);
             return;
@@ -292,6 +343,7 @@ class Camera2Session implements CameraSession {
             if (Camera2Session.this.state != Camera2Session.SessionState.RUNNING) {
                Logging.d("Camera2Session", "Texture frame captured but camera is no longer running.");
             } else {
+               Camera2Session.this.flushCaptureRequest();
                if (!Camera2Session.this.firstFrameReported) {
                   Camera2Session.this.firstFrameReported = true;
                   int startTimeMs = (int)TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - Camera2Session.this.constructionTimeNs);
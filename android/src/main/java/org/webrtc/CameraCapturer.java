@@ -481,6 +481,13 @@ abstract class CameraCapturer implements CameraVideoCapturer {
       }
    }
 
+   @Nullable
+   CameraSession getCurrentSession() {
+      synchronized(this.stateLock) {
+         return this.currentSession;
+      }
+   }
+
    protected String getCameraName() {
       synchronized(this.stateLock) {
          return this.cameraName;
@@ -1,14 +1,23 @@
 package org.webrtc;
 
 class DynamicBitrateAdjuster extends BaseBitrateAdjuster {
-   private static final double BITRATE_ADJUSTMENT_SEC = 3.0D;
+   static final double DEFAULT_BITRATE_ADJUSTMENT_SEC = 3.0D;
    private static final double BITRATE_ADJUSTMENT_MAX_SCALE = 4.0D;
    private static final int BITRATE_ADJUSTMENT_STEPS = 20;
    private static final double BITS_PER_BYTE = 8.0D;
+   private final double bitrateAdjustmentMs;
    private double deviationBytes;
    private double timeSinceLastAdjustmentMs;
    private int bitrateAdjustmentScaleExp;
 
+   DynamicBitrateAdjuster() {
+      this(DEFAULT_BITRATE_ADJUSTMENT_SEC);
+   }
+
+   DynamicBitrateAdjuster(double bitrateAdjustmentSec) {
+      this.bitrateAdjustmentMs = bitrateAdjustmentSec * 1000.0D;
+   }
+
    public void setTargets(int targetBitrateBps, double targetFramerateFps) {
       if (this.targetBitrateBps > 0 && targetBitrateBps < this.targetBitrateBps) {
          this.deviationBytes = this.deviationBytes * (double)targetBitrateBps / (double)this.targetBitrateBps;
@@ -19,24 +28,24 @@ class DynamicBitrateAdjuster extends BaseBitrateAdjuster {
 
    public void reportEncodedFrame(int size) {
       if (this.targetFramerateFps != 0.0D) {
-         double expectedBytesPerFrame = (double)this.targetBitrateBps / 8.0D / this.targetFramerateFps;
+         double expectedBytesPerFrame = (double)this.targetBitrateBps / BITS_PER_BYTE / this.targetFramerateFps;
          this.deviationBytes += (double)size - expectedBytesPerFrame;
          this.timeSinceLastAdjustmentMs += 1000.0D / this.targetFramerateFps;
-         double deviationThresholdBytes = (double)this.targetBitrateBps / 8.0D;
-         double deviationCap = 3.0D * deviationThresholdBytes;
+         double deviationThresholdBytes = (double)this.targetBitrateBps / BITS_PER_BYTE;
+         double deviationCap = (this.bitrateAdjustmentMs / 1000.0D) * deviationThresholdBytes;
          this.deviationBytes = Math.min(this.deviationBytes, deviationCap);
          this.deviationBytes = Math.max(this.deviationBytes, -deviationCap);
-         if (!(this.timeSinceLastAdjustmentMs <= 3000.0D)) {
+         if (!(this.timeSinceLastAdjustmentMs <= this.bitrateAdjustmentMs)) {
             int bitrateAdjustmentInc;
             if (this.deviationBytes > deviationThresholdBytes) {
                bitrateAdjustmentInc = (int)(this.deviationBytes / deviationThresholdBytes + 0.5D);
                this.bitrateAdjustmentScaleExp -= bitrateAdjustmentInc;
-               this.bitrateAdjustmentScaleExp = Math.max(this.bitrateAdjustmentScaleExp, -20);
+               this.bitrateAdjustmentScaleExp = Math.max(this.bitrateAdjustmentScaleExp, -BITRATE_ADJUSTMENT_STEPS);
                this.deviationBytes = deviationThresholdBytes;
             } else if (this.deviationBytes < -deviationThresholdBytes) {
                bitrateAdjustmentInc = (int)(-this.deviationBytes / deviationThresholdBytes + 0.5D);
                this.bitrateAdjustmentScaleExp += bitrateAdjustmentInc;
-               this.bitrateAdjustmentScaleExp = Math.min(this.bitrateAdjustmentScaleExp, 20);
+               this.bitrateAdjustmentScaleExp = Math.min(this.bitrateAdjustmentScaleExp, BITRATE_ADJUSTMENT_STEPS);
                this.deviationBytes = -deviationThresholdBytes;
             }
 
@@ -46,7 +55,7 @@ class DynamicBitrateAdjuster extends BaseBitrateAdjuster {
    }
 
    private double getBitrateAdjustmentScale() {
-      return Math.pow(4.0D, (double)this.bitrateAdjustmentScaleExp / 20.0D);
+      return Math.pow(BITRATE_ADJUSTMENT_MAX_SCALE, (double)this.bitrateAdjustmentScaleExp / (double)BITRATE_ADJUSTMENT_STEPS);
    }
 
    public int getAdjustedBitrateBps() {
@@ -39,6 +39,7 @@ public class EglRenderer implements VideoSink {
    private final Object frameLock;
    @Nullable
    private VideoFrame pendingFrame;
+   private volatile boolean externallyPaced;
    private final Object layoutLock;
    private float layoutAspectRatio;
    private boolean mirrorHorizontally;
@@ -319,7 +320,9 @@ public class EglRenderer implements VideoSink {
 
             this.pendingFrame = frame;
             this.pendingFrame.retain();
-            this.eglThread.getHandler().post(this::renderFrameOnRenderThread);
+            if (!this.externallyPaced) {
+               this.eglThread.getHandler().post(this::renderFrameOnRenderThread);
+            }
          }
       }
 
@@ -331,6 +334,31 @@ public class EglRenderer implements VideoSink {
 
    }
 
+   /**
+    * When paced externally, incoming frames only replace the pending frame (releasing the one
+    * they supersede) and are drawn when {@link #renderPendingFrame()} is called, e.g. once per
+    * display refresh.
+    */
+   public void setExternallyPaced(boolean externallyPaced) {
+      this.externallyPaced = externallyPaced;
+      if (!externallyPaced) {
+         this.renderPendingFrame();
+      }
+   }
+
+   /** Draws the newest pending frame, if any, on the render thread. */
+   public void renderPendingFrame() {
+      synchronized(this.threadLock) {
+         if (this.eglThread != null) {
+            synchronized(this.frameLock) {
+               if (this.pendingFrame != null) {
+                  this.eglThread.getHandler().post(this::renderFrameOnRenderThread);
+               }
+            }
+         }
+      }
+   }
+
    public void releaseEglSurface(Runnable completionCallback) {
       this.eglSurfaceCreationRunnable.setSurface((Object)null);
       synchronized(this.threadLock) {
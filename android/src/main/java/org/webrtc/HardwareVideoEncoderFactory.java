@@ -22,12 +22,17 @@ public class HardwareVideoEncoderFactory implements VideoEncoderFactory {
    private final boolean enableH264HighProfile;
    @Nullable
    private final Predicate<MediaCodecInfo> codecAllowedPredicate;
+   private final BitrateAdjusterFactory bitrateAdjusterFactory;
 
    public HardwareVideoEncoderFactory(EglBase.Context sharedContext, boolean enableIntelVp8Encoder, boolean enableH264HighProfile) {
       this(sharedContext, enableIntelVp8Encoder, enableH264HighProfile, (Predicate)null);
    }
 
    public HardwareVideoEncoderFactory(EglBase.Context sharedContext, boolean enableIntelVp8Encoder, boolean enableH264HighProfile, @Nullable Predicate<MediaCodecInfo> codecAllowedPredicate) {
+      this(sharedContext, enableIntelVp8Encoder, enableH264HighProfile, codecAllowedPredicate, (BitrateAdjusterFactory)null);
+   }
+
+   public HardwareVideoEncoderFactory(EglBase.Context sharedContext, boolean enableIntelVp8Encoder, boolean enableH264HighProfile, @Nullable Predicate<MediaCodecInfo> codecAllowedPredicate, @Nullable BitrateAdjusterFactory bitrateAdjusterFactory) {
       if (sharedContext instanceof EglBase14.Context) {
          this.sharedContext = (EglBase14.Context)sharedContext;
       } else {
@@ -38,6 +43,7 @@ public class HardwareVideoEncoderFactory implements VideoEncoderFactory {
       this.enableIntelVp8Encoder = enableIntelVp8Encoder;
       this.enableH264HighProfile = enableH264HighProfile;
       this.codecAllowedPredicate = codecAllowedPredicate;
+      this.bitrateAdjusterFactory = bitrateAdjusterFactory != null ? bitrateAdjusterFactory : BitrateAdjusterFactory.DEFAULT;
    }
 
    /** @deprecated */
@@ -179,11 +185,7 @@ public class HardwareVideoEncoderFactory implements VideoEncoderFactory {
    }
 
    private BitrateAdjuster createBitrateAdjuster(VideoCodecMimeType type, String codecName) {
-      if (codecName.startsWith("OMX.Exynos.")) {
-         return (BitrateAdjuster)(type == VideoCodecMimeType.VP8 ? new DynamicBitrateAdjuster() : new FramerateBitrateAdjuster());
-      } else {
-         return new BaseBitrateAdjuster();
-      }
+      return this.bitrateAdjusterFactory.createBitrateAdjuster(type.name(), codecName);
    }
 
    private boolean isH264HighProfileSupported(MediaCodecInfo info) {
@@ -0,0 +1,105 @@
+package org.webrtc;
+
+import java.util.ArrayDeque;
+
+/**
+ * Bitrate adjuster for latency sensitive sessions.
+ *
+ * Many hardware encoders overshoot the configured bitrate for seconds at a time, which fills
+ * network queues and shows up as delay long before {@link DynamicBitrateAdjuster} (3 second
+ * averaging) reacts. This adjuster measures the encoded bytes per second over a short sliding
+ * window and scales the bitrate handed to MediaCodec down as soon as the measured rate exceeds
+ * the target by more than the tolerance, so overshoot is corrected within a few frames.
+ * Undershoot is recovered slowly to avoid oscillation. Single frames far larger than the
+ * expected frame size (key frames) are capped so they do not trigger a correction on their own.
+ *
+ * Targets are set on the encode thread while frames are reported on the output thread, so the
+ * entry points are synchronized. Small target changes keep the measured window; only a change
+ * larger than {@link #TARGET_CHANGE_RESET_RATIO} starts a new one.
+ */
+class LatencyAwareBitrateAdjuster extends BaseBitrateAdjuster {
+   static final int DEFAULT_WINDOW_MS = 500;
+   static final double DEFAULT_OVERSHOOT_TOLERANCE = 0.1D;
+   private static final double BITS_PER_BYTE = 8.0D;
+   private static final double MIN_SCALE = 0.25D;
+   private static final double MAX_SCALE = 1.5D;
+   private static final double RECOVERY_STEP = 1.05D;
+   private static final double MAX_FRAME_SIZE_RATIO = 4.0D;
+   private static final int MIN_FRAMES_PER_ADJUSTMENT = 3;
+   private static final long MIN_MEASUREMENT_NS = 100_000_000L;
+   static final double TARGET_CHANGE_RESET_RATIO = 0.2D;
+   private final long windowNs;
+   private final double overshootTolerance;
+   private final ArrayDeque<long[]> frames = new ArrayDeque<>();
+   private long windowBytes;
+   private double scale = 1.0D;
+
+   LatencyAwareBitrateAdjuster() {
+      this(DEFAULT_WINDOW_MS, DEFAULT_OVERSHOOT_TOLERANCE);
+   }
+
+   LatencyAwareBitrateAdjuster(int windowMs, double overshootTolerance) {
+      this.windowNs = Math.max(100, windowMs) * 1_000_000L;
+      this.overshootTolerance = Math.max(0.0D, overshootTolerance);
+   }
+
+   public synchronized void setTargets(int targetBitrateBps, double targetFramerateFps) {
+      if ((double)Math.abs(targetBitrateBps - this.targetBitrateBps) > TARGET_CHANGE_RESET_RATIO * (double)this.targetBitrateBps) {
+         this.resetWindow();
+      }
+
+      super.setTargets(targetBitrateBps, targetFramerateFps);
+   }
+
+   public void reportEncodedFrame(int size) {
+      this.reportEncodedFrame(size, System.nanoTime());
+   }
+
+   synchronized void reportEncodedFrame(int size, long nowNs) {
+      if (this.targetBitrateBps <= 0 || this.targetFramerateFps <= 0.0D) {
+         return;
+      }
+
+      double targetBytesPerSec = (double)this.targetBitrateBps / BITS_PER_BYTE;
+      long cappedSize = (long)Math.min((double)size, MAX_FRAME_SIZE_RATIO * targetBytesPerSec / this.targetFramerateFps);
+      this.frames.addLast(new long[]{nowNs, cappedSize});
+      this.windowBytes += cappedSize;
+
+      while (!this.frames.isEmpty() && nowNs - this.frames.peekFirst()[0] > this.windowNs) {
+         this.windowBytes -= this.frames.removeFirst()[1];
+      }
+
+      if (this.frames.size() < MIN_FRAMES_PER_ADJUSTMENT) {
+         return;
+      }
+
+      // Rate over the window including one frame interval for the oldest frame.
+      long spanNs = nowNs - this.frames.peekFirst()[0] + (long)(1e9D / this.targetFramerateFps);
+      if (spanNs < MIN_MEASUREMENT_NS) {
+         return;
+      }
+
+      double actualBytesPerSec = (double)this.windowBytes * 1e9D / (double)spanNs;
+      double ratio = actualBytesPerSec / targetBytesPerSec;
+      if (ratio > 1.0D + this.overshootTolerance) {
+         this.scale = Math.max(MIN_SCALE, this.scale / ratio);
+         this.resetWindow();
+      } else if (ratio < 1.0D - this.overshootTolerance && this.scale < MAX_SCALE) {
+         this.scale = Math.min(MAX_SCALE, this.scale * RECOVERY_STEP);
+         this.resetWindow();
+      }
+   }
+
+   private void resetWindow() {
+      this.frames.clear();
+      this.windowBytes = 0L;
+   }
+
+   public synchronized int getAdjustedBitrateBps() {
+      return (int)((double)this.targetBitrateBps * this.scale);
+   }
+
+   public synchronized double getAdjustedFramerateFps() {
+      return this.targetFramerateFps;
+   }
+}
@@ -304,12 +304,18 @@ public class JavaAudioDeviceModule implements AudioDeviceModule {
       private final int channelCount;
       private final int sampleRate;
       private final byte[] data;
+      private final long captureTimeNs;
 
       public AudioSamples(int audioFormat, int channelCount, int sampleRate, byte[] data) {
+         this(audioFormat, channelCount, sampleRate, data, 0L);
+      }
+
+      public AudioSamples(int audioFormat, int channelCount, int sampleRate, byte[] data, long captureTimeNs) {
          this.audioFormat = audioFormat;
          this.channelCount = channelCount;
          this.sampleRate = sampleRate;
          this.data = data;
+         this.captureTimeNs = captureTimeNs;
       }
 
       public int getAudioFormat() {
@@ -327,6 +333,11 @@ public class JavaAudioDeviceModule implements AudioDeviceModule {
       public byte[] getData() {
          return this.data;
       }
+
+      /** Capture time of the first frame of the buffer on the CLOCK_MONOTONIC timebase, 0 if unknown. */
+      public long getCaptureTimeNs() {
+         return this.captureTimeNs;
+      }
    }
 
    public interface AudioRecordStateCallback {
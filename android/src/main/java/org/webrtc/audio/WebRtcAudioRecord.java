@@ -551,6 +551,10 @@ class WebRtcAudioRecord {
          if (VERSION.SDK_INT >= 24) {
             audioTimestamp = new AudioTimestamp();
          }
+         // Frames read since the start, on the same count as AudioTimestamp.framePosition.
+         long framesRead = 0L;
+         int bytesPerFrame = WebRtcAudioRecord.this.audioRecord.getChannelCount() * WebRtcAudioRecord.getBytesPerSample(WebRtcAudioRecord.this.audioFormat);
+         int sampleRate = WebRtcAudioRecord.this.audioRecord.getSampleRate();
 
          while(this.keepAlive) {
             int bytesRead = WebRtcAudioRecord.this.audioRecord.read(WebRtcAudioRecord.this.byteBuffer, WebRtcAudioRecord.this.byteBuffer.capacity());
@@ -560,18 +564,22 @@ class WebRtcAudioRecord {
                   WebRtcAudioRecord.this.byteBuffer.put(WebRtcAudioRecord.this.emptyBytes);
                }
 
+               long captureTimeNs = 0L;
+               long bufferStartNs = 0L;
                if (this.keepAlive) {
-                  long captureTimeNs = 0L;
                   if (VERSION.SDK_INT >= 24 && WebRtcAudioRecord.this.audioRecord.getTimestamp(audioTimestamp, 0) == 0) {
                      captureTimeNs = audioTimestamp.nanoTime;
+                     // nanoTime is the capture time of framePosition, not of this buffer.
+                     bufferStartNs = captureTimeNs + (framesRead - audioTimestamp.framePosition) * 1000000000L / sampleRate;
                   }
 
                   WebRtcAudioRecord.this.nativeDataIsRecorded(WebRtcAudioRecord.this.nativeAudioRecord, bytesRead, captureTimeNs);
                }
+               framesRead += bytesRead / bytesPerFrame;
 
                if (WebRtcAudioRecord.this.audioSamplesReadyCallback != null) {
                   byte[] data = Arrays.copyOfRange(WebRtcAudioRecord.this.byteBuffer.array(), WebRtcAudioRecord.this.byteBuffer.arrayOffset(), WebRtcAudioRecord.this.byteBuffer.capacity() + WebRtcAudioRecord.this.byteBuffer.arrayOffset());
-                  WebRtcAudioRecord.this.audioSamplesReadyCallback.onWebRtcAudioRecordSamplesReady(new JavaAudioDeviceModule.AudioSamples(WebRtcAudioRecord.this.audioRecord.getAudioFormat(), WebRtcAudioRecord.this.audioRecord.getChannelCount(), WebRtcAudioRecord.this.audioRecord.getSampleRate(), data));
+                  WebRtcAudioRecord.this.audioSamplesReadyCallback.onWebRtcAudioRecordSamplesReady(new JavaAudioDeviceModule.AudioSamples(WebRtcAudioRecord.this.audioRecord.getAudioFormat(), WebRtcAudioRecord.this.audioRecord.getChannelCount(), WebRtcAudioRecord.this.audioRecord.getSampleRate(), data, bufferStartNs));
                }
             } else {
                String errorMessage = "AudioRecord.read failed: " + bytesRead;
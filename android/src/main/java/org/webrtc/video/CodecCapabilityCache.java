@@ -0,0 +1,200 @@
+package org.webrtc.video;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.StartupTimings;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.webrtc.VideoCodecInfo;
+import org.webrtc.WebrtcBuildVersion;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide cache of the codec lists reported by the video encoder/decoder factories.
+ *
+ * Enumerating {@code MediaCodecList} is slow on some devices and the factories are asked for
+ * their supported codecs several times between {@code initialize} and the first offer. The
+ * lists only change with the device firmware, OS build or libwebrtc version, so they are
+ * persisted in {@link SharedPreferences} keyed by those values and loaded on a background
+ * thread when the plugin is attached.
+ */
+public class CodecCapabilityCache {
+    private static final String TAG = "CodecCapabilityCache";
+    private static final String PREFS_NAME = "flutter_webrtc_codec_capabilities";
+    private static final String KEY_FINGERPRINT = "fingerprint";
+    private static final String KEY_CODECS = "codecs";
+    private static final long LOAD_WAIT_TIMEOUT_MS = 500;
+
+    private static final CodecCapabilityCache instance = new CodecCapabilityCache();
+
+    private final Map<String, VideoCodecInfo[]> codecs = new ConcurrentHashMap<>();
+    private volatile CountDownLatch loadLatch = new CountDownLatch(0);
+    @Nullable
+    private volatile SharedPreferences preferences;
+
+    public static CodecCapabilityCache getInstance() {
+        return instance;
+    }
+
+    private CodecCapabilityCache() {}
+
+    /**
+     * Starts loading the persisted codec lists on a background thread. Lookups made while the
+     * load is still running wait for it for a short while before enumerating codecs themselves.
+     */
+    public synchronized void preload(Context context) {
+        if (preferences != null) {
+            return;
+        }
+        final Context applicationContext = context.getApplicationContext();
+        final CountDownLatch latch = new CountDownLatch(1);
+        loadLatch = latch;
+        Thread thread = new Thread(() -> {
+            try {
+                SharedPreferences prefs =
+                        applicationContext.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+                load(prefs);
+                preferences = prefs;
+            } finally {
+                latch.countDown();
+                StartupTimings.mark(StartupTimings.CODEC_CACHE_LOADED);
+            }
+        }, "CodecCapabilityCache");
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Returns the cached codec list stored under {@code key}, falling back to {@code loader}
+     * (and persisting its result) on a miss.
+     */
+    public VideoCodecInfo[] getSupportedCodecs(String key, Supplier<VideoCodecInfo[]> loader) {
+        VideoCodecInfo[] cached = codecs.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        awaitLoad();
+        cached = codecs.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        VideoCodecInfo[] loaded = loader.get();
+        codecs.put(key, loaded);
+        persist();
+        return loaded;
+    }
+
+    /** Drops all in-memory and persisted entries. */
+    public void clear() {
+        codecs.clear();
+        SharedPreferences prefs = preferences;
+        if (prefs != null) {
+            prefs.edit().clear().apply();
+        }
+    }
+
+    private void awaitLoad() {
+        try {
+            if (!loadLatch.await(LOAD_WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Timed out waiting for persisted codec capabilities");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void load(SharedPreferences prefs) {
+        if (!deviceFingerprint().equals(prefs.getString(KEY_FINGERPRINT, null))) {
+            Log.d(TAG, "No codec capabilities cached for this device build");
+            return;
+        }
+        String json = prefs.getString(KEY_CODECS, null);
+        if (json == null) {
+            return;
+        }
+        try {
+            JSONObject root = new JSONObject(json);
+            Iterator<String> keys = root.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                codecs.putIfAbsent(key, codecsFromJson(root.getJSONArray(key)));
+            }
+        } catch (JSONException e) {
+            Log.w(TAG, "Discarding corrupt codec capability cache", e);
+            prefs.edit().clear().apply();
+        }
+    }
+
+    private void persist() {
+        SharedPreferences prefs = preferences;
+        if (prefs == null) {
+            return;
+        }
+        try {
+            JSONObject root = new JSONObject();
+            for (Map.Entry<String, VideoCodecInfo[]> entry : codecs.entrySet()) {
+                root.put(entry.getKey(), codecsToJson(entry.getValue()));
+            }
+            prefs.edit()
+                    .putString(KEY_FINGERPRINT, deviceFingerprint())
+                    .putString(KEY_CODECS, root.toString())
+                    .apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Failed to persist codec capabilities", e);
+        }
+    }
+
+    private static String deviceFingerprint() {
+        return Build.FINGERPRINT + "|" + Build.VERSION.SDK_INT + "|" + Build.VERSION.INCREMENTAL
+                + "|" + WebrtcBuildVersion.webrtc_revision;
+    }
+
+    private static JSONArray codecsToJson(VideoCodecInfo[] infos) throws JSONException {
+        JSONArray array = new JSONArray();
+        for (VideoCodecInfo info : infos) {
+            JSONObject codec = new JSONObject();
+            codec.put("name", info.name);
+            codec.put("params", new JSONObject(info.params));
+            codec.put("scalabilityModes", new JSONArray(info.scalabilityModes));
+            array.put(codec);
+        }
+        return array;
+    }
+
+    private static VideoCodecInfo[] codecsFromJson(JSONArray array) throws JSONException {
+        VideoCodecInfo[] infos = new VideoCodecInfo[array.length()];
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject codec = array.getJSONObject(i);
+            Map<String, String> params = new HashMap<>();
+            JSONObject paramsJson = codec.getJSONObject("params");
+            Iterator<String> keys = paramsJson.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                params.put(key, paramsJson.getString(key));
+            }
+            List<String> scalabilityModes = new ArrayList<>();
+            JSONArray modesJson = codec.getJSONArray("scalabilityModes");
+            for (int j = 0; j < modesJson.length(); j++) {
+                scalabilityModes.add(modesJson.getString(j));
+            }
+            infos[i] = new VideoCodecInfo(codec.getString("name"), params, scalabilityModes);
+        }
+        return infos;
+    }
+}
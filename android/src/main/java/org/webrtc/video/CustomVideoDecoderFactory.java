@@ -2,6 +2,8 @@ package org.webrtc.video;
 
 import androidx.annotation.Nullable;
 
+import com.cloudwebrtc.webrtc.utils.StartupTimings;
+
 import org.webrtc.EglBase;
 import org.webrtc.SoftwareVideoDecoderFactory;
 import org.webrtc.VideoCodecInfo;
@@ -47,9 +49,14 @@ public class CustomVideoDecoderFactory implements VideoDecoderFactory {
 
     @Override
     public VideoCodecInfo[] getSupportedCodecs() {
+        CodecCapabilityCache cache = CodecCapabilityCache.getInstance();
+        VideoCodecInfo[] codecs;
         if(forceSWCodec && forceSWCodecs.isEmpty()) {
-            return softwareVideoDecoderFactory.getSupportedCodecs();
+            codecs = cache.getSupportedCodecs("decoder/software", softwareVideoDecoderFactory::getSupportedCodecs);
+        } else {
+            codecs = cache.getSupportedCodecs("decoder", wrappedVideoDecoderFactory::getSupportedCodecs);
         }
-        return wrappedVideoDecoderFactory.getSupportedCodecs();
+        StartupTimings.mark(StartupTimings.DECODER_CODECS_READY);
+        return codecs;
     }
 }
@@ -1,61 +1,119 @@
 package org.webrtc.video;
 
+import android.util.Log;
+
 import androidx.annotation.Nullable;
 
 import com.cloudwebrtc.webrtc.SimulcastVideoEncoderFactoryWrapper;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.ObjectType;
+import com.cloudwebrtc.webrtc.utils.StartupTimings;
 
+import org.webrtc.BitrateAdjusterFactory;
 import org.webrtc.EglBase;
 import org.webrtc.SoftwareVideoEncoderFactory;
 import org.webrtc.VideoCodecInfo;
 import org.webrtc.VideoEncoder;
 import org.webrtc.VideoEncoderFactory;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 
 public class CustomVideoEncoderFactory implements VideoEncoderFactory {
+    private static final String TAG = "CustomVideoEncoderFactory";
+
     private SoftwareVideoEncoderFactory softwareVideoEncoderFactory = new SoftwareVideoEncoderFactory();
     private SimulcastVideoEncoderFactoryWrapper simulcastVideoEncoderFactoryWrapper;
 
-    private boolean forceSWCodec  = false;
+    private final EncoderSelectionPolicy selectionPolicy = new EncoderSelectionPolicy();
 
-    private List<String> forceSWCodecs = new ArrayList<>();
+    private final String codecCacheKey;
 
     public CustomVideoEncoderFactory(EglBase.Context sharedContext,
                                      boolean enableIntelVp8Encoder,
                                      boolean enableH264HighProfile) {
-        this.simulcastVideoEncoderFactoryWrapper = new SimulcastVideoEncoderFactoryWrapper(sharedContext, enableIntelVp8Encoder, enableH264HighProfile);
+        this(sharedContext, enableIntelVp8Encoder, enableH264HighProfile, null);
+    }
+
+    /**
+     * @param bitrateAdjuster the {@code bitrateAdjuster} option passed to {@code initialize}, see
+     *                        {@link #createBitrateAdjusterFactory(ConstraintsMap)}.
+     */
+    public CustomVideoEncoderFactory(EglBase.Context sharedContext,
+                                     boolean enableIntelVp8Encoder,
+                                     boolean enableH264HighProfile,
+                                     @Nullable ConstraintsMap bitrateAdjuster) {
+        this.simulcastVideoEncoderFactoryWrapper = new SimulcastVideoEncoderFactoryWrapper(sharedContext, enableIntelVp8Encoder, enableH264HighProfile, selectionPolicy, createBitrateAdjusterFactory(bitrateAdjuster));
+        this.codecCacheKey = "encoder/" + enableIntelVp8Encoder + "/" + enableH264HighProfile;
+    }
+
+    /**
+     * Builds the bitrate adjuster used by hardware encoders from {@code type} ("default", "base",
+     * "framerate", "dynamic" or "latencyAware") and its optional tuning values: {@code adjustmentSec}
+     * for "dynamic", {@code windowMs} and {@code overshootTolerance} for "latencyAware".
+     */
+    @Nullable
+    static BitrateAdjusterFactory createBitrateAdjusterFactory(@Nullable ConstraintsMap config) {
+        if (config == null || config.getString("type") == null) {
+            return null;
+        }
+        switch (config.getString("type").toLowerCase(Locale.ROOT)) {
+            case "default":
+                return BitrateAdjusterFactory.DEFAULT;
+            case "base":
+                return BitrateAdjusterFactory.base();
+            case "framerate":
+                return BitrateAdjusterFactory.framerate();
+            case "dynamic":
+                return BitrateAdjusterFactory.dynamic(getDouble(config, "adjustmentSec", 3.0));
+            case "latencyaware":
+                return BitrateAdjusterFactory.latencyAware(
+                        (int) getDouble(config, "windowMs", 500),
+                        getDouble(config, "overshootTolerance", 0.1));
+            default:
+                Log.w(TAG, "Unknown bitrateAdjuster type " + config.getString("type") + ", using default");
+                return null;
+        }
+    }
+
+    private static double getDouble(ConstraintsMap config, String key, double defaultValue) {
+        return config.getType(key) == ObjectType.Number
+                ? ((Number) config.toMap().get(key)).doubleValue() : defaultValue;
     }
 
     public void setForceSWCodec(boolean forceSWCodec) {
-        this.forceSWCodec = forceSWCodec;
+        selectionPolicy.setForceSoftware(forceSWCodec);
     }
 
     public void setForceSWCodecList(List<String> forceSWCodecs) {
-        this.forceSWCodecs = forceSWCodecs;
+        selectionPolicy.setForceSoftwareCodecs(forceSWCodecs);
+    }
+
+    public EncoderSelectionPolicy getSelectionPolicy() {
+        return selectionPolicy;
     }
 
     @Nullable
     @Override
     public VideoEncoder createEncoder(VideoCodecInfo videoCodecInfo) {
-        if(forceSWCodec) {
+        EncoderSelectionPolicy.Decision decision = selectionPolicy.selectForCodec(videoCodecInfo.name);
+        if(!decision.useHardware) {
             return softwareVideoEncoderFactory.createEncoder(videoCodecInfo);
         }
 
-        if(!forceSWCodecs.isEmpty()) {
-            if(forceSWCodecs.contains(videoCodecInfo.name)) {
-                return softwareVideoEncoderFactory.createEncoder(videoCodecInfo);
-            }
-        }
-
         return simulcastVideoEncoderFactoryWrapper.createEncoder(videoCodecInfo);
     }
 
     @Override
     public VideoCodecInfo[] getSupportedCodecs() {
-        if(forceSWCodec && forceSWCodecs.isEmpty()) {
-            return softwareVideoEncoderFactory.getSupportedCodecs();
+        CodecCapabilityCache cache = CodecCapabilityCache.getInstance();
+        VideoCodecInfo[] codecs;
+        if(selectionPolicy.isForceSoftwareOnly()) {
+            codecs = cache.getSupportedCodecs("encoder/software", softwareVideoEncoderFactory::getSupportedCodecs);
+        } else {
+            codecs = cache.getSupportedCodecs(codecCacheKey, simulcastVideoEncoderFactoryWrapper::getSupportedCodecs);
         }
-        return simulcastVideoEncoderFactoryWrapper.getSupportedCodecs();
+        StartupTimings.mark(StartupTimings.ENCODER_CODECS_READY);
+        return codecs;
     }
 }
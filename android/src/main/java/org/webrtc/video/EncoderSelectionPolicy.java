@@ -0,0 +1,303 @@
+package org.webrtc.video;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.cloudwebrtc.webrtc.utils.ConstraintsArray;
+import com.cloudwebrtc.webrtc.utils.ConstraintsMap;
+import com.cloudwebrtc.webrtc.utils.ObjectType;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decides per codec and per resolution tier whether a hardware or a software encoder is used.
+ *
+ * The codec-level decision is taken when an encoder is created; the resolution-level decision is
+ * taken when a hardware encoder is initialized, where declining makes libwebrtc fall back to the
+ * software encoder for that stream. Hardware encoder failures are counted per codec and, once
+ * {@code hardwareFailureThreshold} is reached, all future encoders for that codec use software
+ * for the rest of the session. Every decision is recorded together with its reason.
+ */
+public class EncoderSelectionPolicy {
+    private static final String TAG = "EncoderSelectionPolicy";
+    private static final int DEFAULT_HARDWARE_FAILURE_THRESHOLD = 3;
+    private static final int MAX_REPORTED_DECISIONS = 32;
+
+    public enum Tier {
+        LOW("low", 320 * 240),
+        MEDIUM("medium", 640 * 480),
+        HIGH("high", 1280 * 720),
+        FULL("full", Integer.MAX_VALUE);
+
+        public final String name;
+        private final int maxPixels;
+
+        Tier(String name, int maxPixels) {
+            this.name = name;
+            this.maxPixels = maxPixels;
+        }
+
+        public static Tier forResolution(int width, int height) {
+            int pixels = width * height;
+            for (Tier tier : values()) {
+                if (pixels <= tier.maxPixels) {
+                    return tier;
+                }
+            }
+            return FULL;
+        }
+
+        @Nullable
+        static Tier fromName(String name) {
+            for (Tier tier : values()) {
+                if (tier.name.equalsIgnoreCase(name)) {
+                    return tier;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static class Decision {
+        public final String codec;
+        @Nullable
+        public final Tier tier;
+        public final boolean useHardware;
+        public final String reason;
+        final long timestampMs;
+
+        Decision(String codec, @Nullable Tier tier, boolean useHardware, String reason) {
+            this.codec = codec;
+            this.tier = tier;
+            this.useHardware = useHardware;
+            this.reason = reason;
+            this.timestampMs = SystemClock.elapsedRealtime();
+        }
+
+        ConstraintsMap toConstraintsMap() {
+            ConstraintsMap params = new ConstraintsMap();
+            params.putString("codec", codec);
+            if (tier != null) {
+                params.putString("tier", tier.name);
+            }
+            params.putString("encoder", useHardware ? "hardware" : "software");
+            params.putString("reason", reason);
+            params.putLong("timestamp", timestampMs);
+            return params;
+        }
+    }
+
+    /**
+     * A device rule. Device fields are matched case-insensitively as prefixes of the
+     * corresponding {@link Build} values; absent fields match any device.
+     */
+    static class DeviceRule {
+        @Nullable String codec;
+        @Nullable String manufacturer;
+        @Nullable String model;
+        @Nullable String hardware;
+        final Set<Tier> tiers = new HashSet<>();
+
+        boolean matches(String codecName, @Nullable Tier tier) {
+            if (codec != null && !codec.equals("*") && !codec.equalsIgnoreCase(codecName)) {
+                return false;
+            }
+            if (tier == null ? !tiers.isEmpty() : !tiers.isEmpty() && !tiers.contains(tier)) {
+                return false;
+            }
+            return matchesPrefix(manufacturer, Build.MANUFACTURER)
+                    && matchesPrefix(model, Build.MODEL)
+                    && matchesPrefix(hardware, Build.HARDWARE);
+        }
+
+        private static boolean matchesPrefix(@Nullable String expected, String actual) {
+            return expected == null || (actual != null
+                    && actual.toLowerCase(Locale.ROOT).startsWith(expected.toLowerCase(Locale.ROOT)));
+        }
+
+        static DeviceRule fromMap(ConstraintsMap map) {
+            DeviceRule rule = new DeviceRule();
+            rule.codec = map.getString("codec");
+            rule.manufacturer = map.getString("manufacturer");
+            rule.model = map.getString("model");
+            rule.hardware = map.getString("hardware");
+            if (map.getType("tiers") == ObjectType.Array) {
+                for (Object name : map.getListArray("tiers")) {
+                    Tier tier = Tier.fromName(name.toString());
+                    if (tier != null) {
+                        rule.tiers.add(tier);
+                    }
+                }
+            }
+            return rule;
+        }
+    }
+
+    private boolean forceSoftware = false;
+    private List<String> forceSoftwareCodecs = new ArrayList<>();
+    private int hardwareFailureThreshold = DEFAULT_HARDWARE_FAILURE_THRESHOLD;
+    private final List<DeviceRule> allowlist = new ArrayList<>();
+    private final List<DeviceRule> blocklist = new ArrayList<>();
+    private final Map<String, Set<Tier>> softwareTiers = new HashMap<>();
+    private final Map<String, Integer> hardwareFailures = new HashMap<>();
+    private final ArrayDeque<Decision> decisions = new ArrayDeque<>();
+
+    public synchronized void setForceSoftware(boolean forceSoftware) {
+        this.forceSoftware = forceSoftware;
+    }
+
+    public synchronized void setForceSoftwareCodecs(List<String> codecs) {
+        this.forceSoftwareCodecs = codecs;
+    }
+
+    public synchronized boolean isForceSoftwareOnly() {
+        return forceSoftware && forceSoftwareCodecs.isEmpty();
+    }
+
+    /**
+     * Applies the {@code encoderSelectionPolicy} map passed to {@code initialize}:
+     * {@code hardwareFailureThreshold}, {@code allowlist}, {@code blocklist} (lists of device
+     * rules with optional {@code codec}, {@code manufacturer}, {@code model}, {@code hardware}
+     * and {@code tiers}) and {@code softwareTiers} (codec name to list of tier names).
+     */
+    public synchronized void configure(ConstraintsMap config) {
+        if (config.getType("hardwareFailureThreshold") == ObjectType.Number) {
+            hardwareFailureThreshold = Math.max(1, config.getInt("hardwareFailureThreshold"));
+        }
+        parseRules(config.getArray("allowlist"), allowlist);
+        parseRules(config.getArray("blocklist"), blocklist);
+        ConstraintsMap tiers = config.getMap("softwareTiers");
+        if (tiers != null) {
+            for (Map.Entry<String, Object> entry : tiers.toMap().entrySet()) {
+                if (!(entry.getValue() instanceof List)) {
+                    continue;
+                }
+                Set<Tier> set = new HashSet<>();
+                for (Object name : (List<?>) entry.getValue()) {
+                    Tier tier = Tier.fromName(name.toString());
+                    if (tier != null) {
+                        set.add(tier);
+                    }
+                }
+                softwareTiers.put(entry.getKey().toUpperCase(Locale.ROOT), set);
+            }
+        }
+    }
+
+    private static void parseRules(@Nullable ConstraintsArray array, List<DeviceRule> rules) {
+        rules.clear();
+        if (array == null) {
+            return;
+        }
+        for (int i = 0; i < array.size(); i++) {
+            if (array.getType(i) == ObjectType.Map) {
+                rules.add(DeviceRule.fromMap(array.getMap(i)));
+            }
+        }
+    }
+
+    /**
+     * Codec-level decision, taken when the encoder factory is asked for an encoder. The first
+     * matching reason wins: {@code forceSWCodec}, then {@code forceSWCodecList}, the hardware
+     * failure threshold, the blocklist and last the allowlist, so an allowlist rule never
+     * overrides a codec the app forced to software.
+     */
+    public synchronized Decision selectForCodec(String codec) {
+        Decision decision;
+        if (forceSoftware) {
+            decision = new Decision(codec, null, false, "forceSWCodec");
+        } else if (forceSoftwareCodecs.contains(codec)) {
+            decision = new Decision(codec, null, false, "forceSWCodecList");
+        } else if (getHardwareFailures(codec) >= hardwareFailureThreshold) {
+            decision = new Decision(codec, null, false,
+                    "hardwareFailures(" + getHardwareFailures(codec) + ")");
+        } else if (matchesAny(blocklist, codec, null)) {
+            decision = new Decision(codec, null, false, "blocklist");
+        } else if (matchesAny(allowlist, codec, null)) {
+            decision = new Decision(codec, null, true, "allowlist");
+        } else {
+            decision = new Decision(codec, null, true, "default");
+        }
+        record(decision);
+        return decision;
+    }
+
+    /**
+     * Resolution-level decision, taken when a hardware encoder is initialized. Returning a
+     * software decision makes the hardware encoder decline so libwebrtc uses its fallback.
+     */
+    public synchronized Decision selectForResolution(String codec, int width, int height) {
+        Tier tier = Tier.forResolution(width, height);
+        Decision decision;
+        if (matchesAny(blocklist, codec, tier)) {
+            decision = new Decision(codec, tier, false, "blocklist");
+        } else if (matchesAny(allowlist, codec, tier)) {
+            decision = new Decision(codec, tier, true, "allowlist");
+        } else if (softwareTiers.containsKey(codec.toUpperCase(Locale.ROOT))
+                && softwareTiers.get(codec.toUpperCase(Locale.ROOT)).contains(tier)) {
+            decision = new Decision(codec, tier, false, "softwareTier");
+        } else {
+            decision = new Decision(codec, tier, true, "default");
+        }
+        record(decision);
+        return decision;
+    }
+
+    /** Called once per hardware encoder instance that fails to initialize or encode. */
+    public synchronized void reportHardwareFailure(String codec, String status) {
+        int failures = getHardwareFailures(codec) + 1;
+        hardwareFailures.put(codec, failures);
+        Log.w(TAG, "Hardware " + codec + " encoder failed with " + status + " (" + failures + "/"
+                + hardwareFailureThreshold + ")");
+        if (failures == hardwareFailureThreshold) {
+            Log.w(TAG, "Switching future " + codec + " encoders to software for this session");
+        }
+    }
+
+    private int getHardwareFailures(String codec) {
+        Integer failures = hardwareFailures.get(codec);
+        return failures == null ? 0 : failures;
+    }
+
+    private static boolean matchesAny(List<DeviceRule> rules, String codec, @Nullable Tier tier) {
+        for (DeviceRule rule : rules) {
+            if (rule.matches(codec, tier)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void record(Decision decision) {
+        if (decisions.size() == MAX_REPORTED_DECISIONS) {
+            decisions.removeFirst();
+        }
+        decisions.addLast(decision);
+    }
+
+    public synchronized ConstraintsMap toConstraintsMap() {
+        ConstraintsArray decisionArray = new ConstraintsArray();
+        for (Decision decision : decisions) {
+            decisionArray.pushMap(decision.toConstraintsMap());
+        }
+        ConstraintsMap failures = new ConstraintsMap();
+        for (Map.Entry<String, Integer> entry : hardwareFailures.entrySet()) {
+            failures.putInt(entry.getKey(), entry.getValue());
+        }
+        ConstraintsMap params = new ConstraintsMap();
+        params.putArray("decisions", decisionArray.toArrayList());
+        params.putMap("hardwareFailures", failures.toMap());
+        params.putInt("hardwareFailureThreshold", hardwareFailureThreshold);
+        return params;
+    }
+}
@@ -0,0 +1,64 @@
+// Compares the cost of an addCandidate call encoded as a method call and as a
+// binary call. Not part of the unit suite; run it on its own with
+//
+//   flutter test benchmark/binary_call_codec_benchmark.dart
+//
+// The codecs come from package:flutter, which needs dart:ui, so a plain
+// `dart run` cannot load them.
+
+// ignore_for_file: avoid_print
+
+import 'package:flutter/services.dart';
+
+import 'package:flutter_test/flutter_test.dart';
+
+import 'package:flutter_webrtc/src/native/binary_call_codec.dart';
+
+const _iterations = 20000;
+const _peerConnectionId = '4f1c3a52-9d0e-4b8f-a1f2-6c7d8e9f0a1b';
+const _candidate =
+    'candidate:842163049 1 udp 1677729535 203.0.113.7 53705 typ srflx raddr 192.168.1.20 rport 53705 generation 0 ufrag 7Qx3 network-cost 999';
+
+void main() {
+  test('addCandidate encode/decode, method call vs binary', () {
+    const methodCodec = StandardMethodCodec();
+
+    final methodWatch = Stopwatch()..start();
+    var methodBytes = 0;
+    for (var i = 0; i < _iterations; i++) {
+      final encoded = methodCodec.encodeMethodCall(
+          MethodCall('addCandidate', <String, dynamic>{
+        'peerConnectionId': _peerConnectionId,
+        'candidate': <String, dynamic>{
+          'candidate': _candidate,
+          'sdpMid': '0',
+          'sdpMLineIndex': i & 1,
+        },
+      }));
+      methodCodec.decodeMethodCall(encoded);
+      methodBytes = encoded.lengthInBytes;
+    }
+    methodWatch.stop();
+
+    final binaryWatch = Stopwatch()..start();
+    var binaryBytes = 0;
+    for (var i = 0; i < _iterations; i++) {
+      final encoded = BinaryCalls.encodeAddCandidate(
+          _peerConnectionId, _candidate, '0', i & 1);
+      final reader = BinaryCallReader(encoded);
+      reader.readByte();
+      reader.readString();
+      reader.readString();
+      reader.readNullableString();
+      reader.readVarint();
+      binaryBytes = encoded.lengthInBytes;
+    }
+    binaryWatch.stop();
+
+    print('addCandidate x$_iterations: '
+        'method call ${methodWatch.elapsedMicroseconds / _iterations} us/op, '
+        '$methodBytes bytes; '
+        'binary ${binaryWatch.elapsedMicroseconds / _iterations} us/op, '
+        '$binaryBytes bytes');
+  });
+}
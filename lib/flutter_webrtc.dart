@@ -7,7 +7,15 @@ export 'src/desktop_capturer.dart';
 export 'src/media_devices.dart';
 export 'src/media_recorder.dart';
 export 'src/native/factory_impl.dart' if (dart.library.js_interop) 'src/web/factory_impl.dart';
-export 'src/native/factory_impl.dart' show disposeAll, disposeGetUserMedia, stopAll;
+export 'src/native/factory_impl.dart'
+    show
+        disposeAll,
+        disposeGetUserMedia,
+        stopAll,
+        getStartupTimings,
+        getEncoderSelectionReport,
+        getCameraMetrics,
+        getMediaClockStats;
 export 'src/native/rtc_video_renderer_impl.dart'
     if (dart.library.js_interop) 'src/web/rtc_video_renderer_impl.dart';
 export 'src/native/rtc_video_view_impl.dart'
@@ -21,3 +29,5 @@ export 'src/native/ios/audio_configuration.dart';
 export 'src/native/rtc_video_platform_view_controller.dart';
 export 'src/native/rtc_video_platform_view.dart';
 export 'rtc_video_renderer_extensions.dart';
+export 'src/native/rtc_peerconnection_extensions.dart'
+    if (dart.library.js_interop) 'src/web/rtc_peerconnection_extensions_web.dart';
@@ -200,6 +200,31 @@ class Helper {
     ),
   );
 
+  /// Prepares a camera so that the next matching [openCamera] starts faster
+  /// (Android only).
+  ///
+  /// Caches the camera enumeration and capture format data and creates the
+  /// texture thread ahead of time. `constraints` takes the video constraints
+  /// of the later `getUserMedia` call (`facingMode`, `width`, `height`,
+  /// `frameRate`); with `'open': true` the camera is also started and handed
+  /// to the next `getUserMedia` for the same camera, or stopped after
+  /// `keepAliveMs` (default 10000) if none claims it. Opening requires the
+  /// camera permission and an initialized factory.
+  ///
+  /// Completes with the `deviceId`, whether it was `opened` and the
+  /// `timings` in milliseconds of each step.
+  static Future<Map<String, dynamic>> prewarmCamera(
+      {String? deviceId, Map<String, dynamic> constraints = const {}}) async {
+    if (!WebRTC.platformIsAndroid) {
+      throw Exception('prewarmCamera only support for Android');
+    }
+    final response = await WebRTC.invokeMethod<Map<dynamic, dynamic>, dynamic>(
+      'prewarmCamera',
+      <String, dynamic>{'deviceId': deviceId, 'constraints': constraints},
+    );
+    return Map<String, dynamic>.from(response ?? {});
+  }
+
   /// Request capture permission for Android
   static Future<bool> requestCapturePermission() async {
     if (WebRTC.platformIsAndroid) {
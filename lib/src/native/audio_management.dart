@@ -3,6 +3,7 @@ import 'package:flutter/services.dart';
 
 import 'package:webrtc_interface/webrtc_interface.dart';
 
+import 'binary_call_codec.dart';
 import 'media_stream_track_impl.dart';
 import 'utils.dart';
 
@@ -35,6 +36,11 @@ class NativeAudioManagement {
         final constraints = track.getConstraints();
         constraints['volume'] = volume;
         await track.applyConstraints(constraints);
+      } else if (BinaryCalls.supported) {
+        await BinaryCalls.send(BinaryCalls.encodeTrackSetVolume(
+            track.id!,
+            track is MediaStreamTrackNative ? track.peerConnectionId : null,
+            volume));
       } else {
         await WebRTC.invokeMethod('setVolume', <String, dynamic>{
           'trackId': track.id,
@@ -0,0 +1,235 @@
+import 'dart:convert';
+import 'dart:typed_data';
+
+import 'package:flutter/services.dart';
+
+import 'utils.dart';
+
+/// Opcodes of the `FlutterWebRTC.BinaryMethod` channel, mirrored by
+/// `com.cloudwebrtc.webrtc.utils.BinaryCallCodec` on Android.
+class BinaryCallOp {
+  static const int addCandidate = 1;
+  static const int dataChannelSend = 2;
+  static const int trackSetEnabled = 3;
+  static const int trackSetVolume = 4;
+  static const int rendererSetVsyncPaced = 5;
+  static const int rendererSetNightVision = 6;
+  static const int rendererSetNightVisionIntensity = 7;
+}
+
+class _BinaryReply {
+  static const int nullValue = 0;
+  static const int trueValue = 1;
+  static const int falseValue = 2;
+  static const int error = 3;
+}
+
+/// Writes a binary call: an opcode followed by its arguments in a fixed
+/// order. Integers are unsigned LEB128 varints, doubles little-endian float64,
+/// strings and bytes a varint length followed by the bytes. Nullable strings
+/// store length + 1, with 0 meaning null.
+class BinaryCallWriter {
+  BinaryCallWriter(int opcode) {
+    writeByte(opcode);
+  }
+
+  Uint8List _buffer = Uint8List(64);
+  late ByteData _data = ByteData.sublistView(_buffer);
+  int _length = 0;
+
+  void _reserve(int bytes) {
+    if (_length + bytes <= _buffer.length) {
+      return;
+    }
+    var capacity = _buffer.length * 2;
+    while (capacity < _length + bytes) {
+      capacity *= 2;
+    }
+    _buffer = Uint8List(capacity)..setRange(0, _length, _buffer);
+    _data = ByteData.sublistView(_buffer);
+  }
+
+  void writeByte(int value) {
+    _reserve(1);
+    _buffer[_length++] = value;
+  }
+
+  void writeBool(bool value) => writeByte(value ? 1 : 0);
+
+  void writeVarint(int value) {
+    _reserve(10);
+    while (value & ~0x7f != 0) {
+      _buffer[_length++] = (value & 0x7f) | 0x80;
+      value = value >>> 7;
+    }
+    _buffer[_length++] = value;
+  }
+
+  void writeDouble(double value) {
+    _reserve(8);
+    _data.setFloat64(_length, value, Endian.little);
+    _length += 8;
+  }
+
+  void writeString(String value) => writeBytes(utf8.encode(value));
+
+  void writeNullableString(String? value) {
+    if (value == null) {
+      writeVarint(0);
+      return;
+    }
+    final bytes = utf8.encode(value);
+    writeVarint(bytes.length + 1);
+    _writeRaw(bytes);
+  }
+
+  void writeBytes(List<int> bytes) {
+    writeVarint(bytes.length);
+    _writeRaw(bytes);
+  }
+
+  void _writeRaw(List<int> bytes) {
+    _reserve(bytes.length);
+    _buffer.setRange(_length, _length + bytes.length, bytes);
+    _length += bytes.length;
+  }
+
+  ByteData done() => ByteData.sublistView(_buffer, 0, _length);
+}
+
+/// Reads values in the layout written by [BinaryCallWriter].
+class BinaryCallReader {
+  BinaryCallReader(this._data);
+
+  final ByteData _data;
+  int _position = 0;
+
+  bool get hasRemaining => _position < _data.lengthInBytes;
+
+  int readByte() => _data.getUint8(_position++);
+
+  bool readBool() => readByte() != 0;
+
+  int readVarint() {
+    var value = 0;
+    var shift = 0;
+    while (true) {
+      final b = readByte();
+      value |= (b & 0x7f) << shift;
+      if (b & 0x80 == 0) {
+        return value;
+      }
+      shift += 7;
+    }
+  }
+
+  double readDouble() {
+    final value = _data.getFloat64(_position, Endian.little);
+    _position += 8;
+    return value;
+  }
+
+  String readString() => utf8.decode(_readRaw(readVarint()));
+
+  String? readNullableString() {
+    final length = readVarint();
+    return length == 0 ? null : utf8.decode(_readRaw(length - 1));
+  }
+
+  Uint8List readBytes() => Uint8List.fromList(_readRaw(readVarint()));
+
+  Uint8List _readRaw(int length) {
+    final bytes = Uint8List.sublistView(_data, _position, _position + length);
+    _position += length;
+    return bytes;
+  }
+}
+
+/// Sends the high-frequency calls in binary form instead of as method calls
+/// with map arguments. Only Android implements the channel.
+class BinaryCalls {
+  static const BasicMessageChannel<ByteData> _channel =
+      BasicMessageChannel<ByteData>('FlutterWebRTC.BinaryMethod', BinaryCodec());
+
+  static bool get supported => WebRTC.platformIsAndroid;
+
+  static Future<Object?> send(ByteData message) async {
+    await WebRTC.initialize();
+    return decodeReply(await _channel.send(message));
+  }
+
+  static Object? decodeReply(ByteData? reply) {
+    if (reply == null) {
+      throw MissingPluginException('Binary call not implemented');
+    }
+    final reader = BinaryCallReader(reply);
+    switch (reader.readByte()) {
+      case _BinaryReply.nullValue:
+        return null;
+      case _BinaryReply.trueValue:
+        return true;
+      case _BinaryReply.falseValue:
+        return false;
+      case _BinaryReply.error:
+        final code = reader.readString();
+        final message = reader.readString();
+        throw PlatformException(code: code, message: message);
+      default:
+        throw PlatformException(
+            code: 'binaryCall', message: 'Malformed binary reply');
+    }
+  }
+
+  static ByteData encodeAddCandidate(String peerConnectionId, String candidate,
+      String? sdpMid, int? sdpMLineIndex) {
+    return (BinaryCallWriter(BinaryCallOp.addCandidate)
+          ..writeString(peerConnectionId)
+          ..writeString(candidate)
+          ..writeNullableString(sdpMid)
+          ..writeVarint(sdpMLineIndex ?? 0))
+        .done();
+  }
+
+  static ByteData encodeDataChannelSend(String peerConnectionId,
+      String dataChannelId, bool isBinary, List<int> data) {
+    return (BinaryCallWriter(BinaryCallOp.dataChannelSend)
+          ..writeString(peerConnectionId)
+          ..writeString(dataChannelId)
+          ..writeBool(isBinary)
+          ..writeBytes(data))
+        .done();
+  }
+
+  static ByteData encodeTrackSetEnabled(
+      String trackId, String? peerConnectionId, bool enabled) {
+    return (BinaryCallWriter(BinaryCallOp.trackSetEnabled)
+          ..writeString(trackId)
+          ..writeNullableString(peerConnectionId)
+          ..writeBool(enabled))
+        .done();
+  }
+
+  static ByteData encodeTrackSetVolume(
+      String trackId, String? peerConnectionId, double volume) {
+    return (BinaryCallWriter(BinaryCallOp.trackSetVolume)
+          ..writeString(trackId)
+          ..writeNullableString(peerConnectionId)
+          ..writeDouble(volume))
+        .done();
+  }
+
+  static ByteData encodeRendererFlag(int opcode, int textureId, bool enabled) {
+    return (BinaryCallWriter(opcode)
+          ..writeVarint(textureId)
+          ..writeBool(enabled))
+        .done();
+  }
+
+  static ByteData encodeRendererSetNightVisionIntensity(
+      int textureId, double intensity) {
+    return (BinaryCallWriter(BinaryCallOp.rendererSetNightVisionIntensity)
+          ..writeVarint(textureId)
+          ..writeDouble(intensity))
+        .done();
+  }
+}
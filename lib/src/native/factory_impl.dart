@@ -94,8 +94,9 @@ class RTCFactoryNative extends RTCFactory {
   /// This method can be used to clean up all WebRTC resources when
   /// the application is being closed or when WebRTC functionality
   /// is no longer needed.
-  Future<void> disposeAll() async {
-    await WebRTC.invokeMethod('disposeAll');
+  Future<Map<String, dynamic>> disposeAll() async {
+    final response = await WebRTC.invokeMethod('disposeAll');
+    return Map<String, dynamic>.from(response ?? {});
   }
 
   /// Disposes only of the getUserMedia resources
@@ -116,8 +117,9 @@ class RTCFactoryNative extends RTCFactory {
   /// - Close all streams
   /// But it maintains the PeerConnection factory and core infrastructure
   /// so you can easily start playing or watching new streams without reinitializing everything.
-  Future<void> stopAll() async {
-    await WebRTC.invokeMethod('stopAll');
+  Future<Map<String, dynamic>> stopAll() async {
+    final response = await WebRTC.invokeMethod('stopAll');
+    return Map<String, dynamic>.from(response ?? {});
   }
 }
 
@@ -157,8 +159,14 @@ FrameCryptorFactory get frameCryptorFactory => FrameCryptorFactoryImpl.instance;
 /// This method can be used to clean up all WebRTC resources when
 /// the application is being closed or when WebRTC functionality
 /// is no longer needed.
-Future<void> disposeAll() async {
-  await WebRTC.invokeMethod('disposeAll');
+///
+/// Android tears peer connections, streams, tracks and capturers down in
+/// parallel off the main thread and completes with the duration of each
+/// stage: `stages` (stage name to milliseconds), `totalMs` and `timedOut`.
+/// After a stage timed out, the shared native objects its tasks may still use
+/// are not disposed; their stages are listed in `skipped`.
+Future<Map<String, dynamic>> disposeAll() async {
+  return RTCFactoryNative.instance.disposeAll();
 }
 
 /// Disposes only of the getUserMedia resources
@@ -179,6 +187,59 @@ Future<void> disposeGetUserMedia() async {
 /// - Close all streams
 /// But it maintains the PeerConnection factory and core infrastructure
 /// so you can easily start playing or watching new streams without reinitializing everything.
-Future<void> stopAll() async {
-  await WebRTC.invokeMethod('stopAll');
+///
+/// Completes with the stage timings described in [disposeAll] on Android.
+Future<Map<String, dynamic>> stopAll() async {
+  return RTCFactoryNative.instance.stopAll();
+}
+
+/// Returns the startup phase timings recorded by the native plugin (Android only).
+///
+/// Each entry maps a phase name (e.g. `peerConnectionFactoryCreated`,
+/// `firstOfferCreated`) to the milliseconds elapsed since the plugin was
+/// attached to the engine, so cold-start-to-first-offer can be measured.
+Future<Map<String, int>> getStartupTimings() async {
+  final response =
+      await WebRTC.invokeMethod<Map<dynamic, dynamic>, dynamic>('getStartupTimings');
+  return response?.map((key, value) => MapEntry(key as String, value as int)) ??
+      <String, int>{};
+}
+
+/// Returns why each video encoder was created as hardware or software (Android only).
+///
+/// The result contains the recent `decisions` (codec, tier, encoder, reason),
+/// the per-codec `hardwareFailures` observed in this session and the
+/// configured `hardwareFailureThreshold`.
+Future<Map<String, dynamic>> getEncoderSelectionReport() async {
+  final response = await WebRTC.invokeMethod<Map<dynamic, dynamic>, dynamic>(
+      'getEncoderSelectionReport');
+  return Map<String, dynamic>.from(response ?? {});
+}
+
+/// Returns camera open/close latencies recorded by the native plugin (Android only).
+///
+/// `cameras` maps each active camera track id to its `state` and
+/// `openLatencyMs` (start of capture to first frame). A camera leaves
+/// `cameras` as soon as it starts stopping; `closing` counts cameras still
+/// being released and, once one has closed, `lastCloseLatencyMs` reports how
+/// long that took. `lastOpenLatencyMs` describes the most recent camera
+/// opened.
+Future<Map<String, dynamic>> getCameraMetrics() async {
+  final response =
+      await WebRTC.invokeMethod<Map<dynamic, dynamic>, dynamic>('getCameraMetrics');
+  return Map<String, dynamic>.from(response ?? {});
+}
+
+/// Returns the timestamp stats of each running recording, keyed by recorder
+/// id (Android only).
+///
+/// Video frames already carry media clock time. Audio time is counted in
+/// samples; `audio` reports how that count drifts against the capture times:
+/// the number of `samples`, the current `offsetMs`, `driftMs` since the first
+/// sample and `driftPpm`. `audioResyncs` counts jumps over lost samples and
+/// `droppedAudioBuffers` the buffers dropped while audio ran ahead.
+Future<Map<String, dynamic>> getMediaClockStats() async {
+  final response =
+      await WebRTC.invokeMethod<Map<dynamic, dynamic>, dynamic>('getMediaClockStats');
+  return Map<String, dynamic>.from(response ?? {});
 }
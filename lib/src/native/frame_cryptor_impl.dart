@@ -124,6 +124,52 @@ class KeyProviderImpl implements KeyProvider {
     }
   }
 
+  /// Sets the keys of many participants in one call. With [setKeyIndex] the
+  /// frame cryptors of those participants switch to [index] as well.
+  Future<void> setKeys({
+    required Map<String, Uint8List> keys,
+    int index = 0,
+    bool setKeyIndex = false,
+  }) async {
+    try {
+      await WebRTC.invokeMethod('keyProviderSetKeys', <String, dynamic>{
+        'keyProviderId': _id,
+        'keyIndex': index,
+        'setKeyIndex': setKeyIndex,
+        'keys': keys.entries
+            .map((e) => <String, dynamic>{
+                  'participantId': e.key,
+                  'key': e.value,
+                })
+            .toList(),
+      });
+    } on PlatformException catch (e) {
+      throw 'Unable to KeyProviderImpl::setKeys: ${e.message}';
+    }
+  }
+
+  /// Ratchets the key at [index] for [participantIds], or for every
+  /// participant known to this key provider when omitted. Returns the new key
+  /// per participant; participants whose ratchet failed are left out.
+  Future<Map<String, Uint8List>> ratchetKeys({
+    List<String>? participantIds,
+    int index = 0,
+  }) async {
+    try {
+      final response =
+          await WebRTC.invokeMethod('keyProviderRatchetKeys', <String, dynamic>{
+        'keyProviderId': _id,
+        'keyIndex': index,
+        if (participantIds != null) 'participantIds': participantIds,
+      });
+      final ids = List<String>.from(response['participantIds']);
+      final keys = List<Uint8List>.from(response['keys']);
+      return Map<String, Uint8List>.fromIterables(ids, keys);
+    } on PlatformException catch (e) {
+      throw 'Unable to KeyProviderImpl::ratchetKeys: ${e.message}';
+    }
+  }
+
   @override
   Future<void> dispose() async {
     try {
@@ -207,6 +253,23 @@ class FrameCryptorFactoryImpl implements FrameCryptorFactory {
       throw 'Unable to FrameCryptorFactory::createKeyProvider: ${e.message}';
     }
   }
+
+  /// Sets the key index of [frameCryptors], or of all frame cryptors when
+  /// omitted, in one call.
+  Future<void> setKeyIndexes(int index,
+      {List<FrameCryptor>? frameCryptors}) async {
+    try {
+      await WebRTC.invokeMethod('frameCryptorSetKeyIndexes', <String, dynamic>{
+        'keyIndex': index,
+        if (frameCryptors != null)
+          'frameCryptorIds': frameCryptors
+              .map((c) => (c as FrameCryptorImpl)._frameCryptorId)
+              .toList(),
+      });
+    } on PlatformException catch (e) {
+      throw 'Unable to FrameCryptorFactory::setKeyIndexes: ${e.message}';
+    }
+  }
 }
 
 class FrameCryptorImpl extends FrameCryptor {
@@ -6,6 +6,7 @@ import 'package:path_provider/path_provider.dart';
 import 'package:webrtc_interface/webrtc_interface.dart';
 
 import '../helper.dart';
+import 'binary_call_codec.dart';
 import 'utils.dart';
 
 class MediaStreamTrackNative extends MediaStreamTrack {
@@ -42,11 +43,16 @@ class MediaStreamTrackNative extends MediaStreamTrack {
 
   @override
   set enabled(bool enabled) {
-    WebRTC.invokeMethod('mediaStreamTrackSetEnable', <String, dynamic>{
-      'trackId': _trackId,
-      'enabled': enabled,
-      'peerConnectionId': _peerConnectionId,
-    });
+    if (BinaryCalls.supported) {
+      BinaryCalls.send(BinaryCalls.encodeTrackSetEnabled(
+          _trackId, _peerConnectionId, enabled));
+    } else {
+      WebRTC.invokeMethod('mediaStreamTrackSetEnable', <String, dynamic>{
+        'trackId': _trackId,
+        'enabled': enabled,
+        'peerConnectionId': _peerConnectionId,
+      });
+    }
     _enabled = enabled;
 
     if (kind == 'audio') {
@@ -1,9 +1,11 @@
 import 'dart:async';
+import 'dart:convert';
 
 import 'package:flutter/services.dart';
 
 import 'package:webrtc_interface/webrtc_interface.dart';
 
+import 'binary_call_codec.dart';
 import 'utils.dart';
 
 final _typeStringToMessageType = <String, MessageType>{
@@ -122,6 +124,14 @@ class RTCDataChannelNative extends RTCDataChannel {
 
   @override
   Future<void> send(RTCDataChannelMessage message) async {
+    if (BinaryCalls.supported) {
+      await BinaryCalls.send(BinaryCalls.encodeDataChannelSend(
+          _peerConnectionId,
+          _flutterId,
+          message.isBinary,
+          message.isBinary ? message.binary : utf8.encode(message.text)));
+      return;
+    }
     await WebRTC.invokeMethod('dataChannelSend', <String, dynamic>{
       'peerConnectionId': _peerConnectionId,
       'dataChannelId': _flutterId,
@@ -0,0 +1,38 @@
+import 'package:webrtc_interface/webrtc_interface.dart';
+
+import 'rtc_peerconnection_impl.dart';
+import 'utils.dart';
+
+/// Candidate batching for [RTCPeerConnection].
+///
+/// Local candidates are batched natively on Android when the configuration
+/// passed to `createPeerConnection` contains `candidateBatchWindowMs`: the
+/// candidates gathered within that window, or until gathering completes, are
+/// delivered together and then reported one by one to `onIceCandidate`.
+extension RTCPeerConnectionCandidateBatching on RTCPeerConnection {
+  /// Adds a burst of remote candidates in one platform call.
+  Future<void> addCandidates(List<RTCIceCandidate> candidates) async {
+    final pc = this;
+    if (pc is RTCPeerConnectionNative) {
+      await pc.addCandidates(candidates);
+      return;
+    }
+    for (var candidate in candidates) {
+      await addCandidate(candidate);
+    }
+  }
+}
+
+/// Diagnostics of the native event delivery of [RTCPeerConnection].
+extension RTCPeerConnectionEventStats on RTCPeerConnection {
+  /// Android: `queueDepth`, `maxQueueDepth`, `batches`, `priorityFlushes`
+  /// (deliveries moved ahead by a state change), `delivered`, `dropped`,
+  /// `averageLatencyMs` and `maxLatencyMs`. Empty on other platforms.
+  Future<Map<String, dynamic>> getEventBusStats() async {
+    final pc = this;
+    if (pc is RTCPeerConnectionNative && WebRTC.platformIsAndroid) {
+      return pc.getEventBusStats();
+    }
+    return <String, dynamic>{};
+  }
+}
@@ -4,6 +4,7 @@ import 'package:flutter/services.dart';
 
 import 'package:webrtc_interface/webrtc_interface.dart';
 
+import 'binary_call_codec.dart';
 import 'media_stream_impl.dart';
 import 'media_stream_track_impl.dart';
 import 'rtc_data_channel_impl.dart';
@@ -136,6 +137,11 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
    * PeerConnection event listener.
    */
   void eventListener(dynamic event) {
+    if (event is List) {
+      // Events batched by the native event bus, in delivery order.
+      event.forEach(eventListener);
+      return;
+    }
     final Map<dynamic, dynamic> map = event;
 
     switch (map['event']) {
@@ -161,6 +167,12 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
             cand['candidate'], cand['sdpMid'], cand['sdpMLineIndex']);
         onIceCandidate?.call(candidate);
         break;
+      case 'onCandidates':
+        for (Map<dynamic, dynamic> cand in map['candidates']) {
+          onIceCandidate?.call(RTCIceCandidate(
+              cand['candidate'], cand['sdpMid'], cand['sdpMLineIndex']));
+        }
+        break;
       case 'onAddStream':
         String streamId = map['streamId'];
 
@@ -439,6 +451,11 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
   @override
   Future<void> addCandidate(RTCIceCandidate candidate) async {
     try {
+      if (BinaryCalls.supported) {
+        await BinaryCalls.send(BinaryCalls.encodeAddCandidate(_peerConnectionId,
+            candidate.candidate ?? '', candidate.sdpMid, candidate.sdpMLineIndex));
+        return;
+      }
       await WebRTC.invokeMethod('addCandidate', <String, dynamic>{
         'peerConnectionId': _peerConnectionId,
         'candidate': candidate.toMap(),
@@ -448,6 +465,31 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
     }
   }
 
+  /// Applies several remote candidates with one platform call, e.g. a burst
+  /// received from signaling. Resolves to whether each candidate was added.
+  Future<List<bool>> addCandidates(List<RTCIceCandidate> candidates) async {
+    try {
+      final response = await WebRTC.invokeMethod(
+          'addCandidates', <String, dynamic>{
+        'peerConnectionId': _peerConnectionId,
+        'candidates': candidates.map((c) => c.toMap()).toList(),
+      });
+      return List<bool>.from(response);
+    } on PlatformException catch (e) {
+      throw 'Unable to RTCPeerConnection::addCandidates: ${e.message}';
+    }
+  }
+
+  /// Android: queue depth, batch and priority flush counts and delivery
+  /// latency of this connection's native event bus.
+  Future<Map<String, dynamic>> getEventBusStats() async {
+    final response = await WebRTC.invokeMethod(
+        'getEventBusStats', <String, dynamic>{
+      'peerConnectionId': _peerConnectionId,
+    });
+    return Map<String, dynamic>.from(response);
+  }
+
   @override
   Future<List<StatsReport>> getStats([MediaStreamTrack? track]) async {
     try {
@@ -563,6 +605,20 @@ class RTCPeerConnectionNative extends RTCPeerConnection {
     }
   }
 
+  /// Returns, for each transceiver, its `transceiverId`, `mid` and only the
+  /// fields (`direction`, `sender`, `receiver`) that changed since the last
+  /// call, plus the ids of `removed` transceivers. The first call returns
+  /// everything.
+  Future<Map<String, dynamic>> getTransceiverChanges() async {
+    try {
+      final response = await WebRTC.invokeMethod('getTransceiverChanges',
+          <String, dynamic>{'peerConnectionId': _peerConnectionId});
+      return Map<String, dynamic>.from(response);
+    } on PlatformException catch (e) {
+      throw 'Unable to RTCPeerConnection::getTransceiverChanges: ${e.message}';
+    }
+  }
+
   @override
   Future<RTCRtpSender> addTrack(MediaStreamTrack track,
       [MediaStream? stream]) async {
@@ -1,6 +1,8 @@
 import 'package:flutter_webrtc/flutter_webrtc.dart';
 import 'package:webrtc_interface/webrtc_interface.dart';
 
+import 'binary_call_codec.dart';
+
 /// Extension methods for RTCVideoRenderer to add night vision functionality
 extension RTCVideoRendererNightVision on RTCVideoRenderer {
   /// Enable/disable night vision on this renderer.
@@ -13,6 +15,11 @@ extension RTCVideoRendererNightVision on RTCVideoRenderer {
       throw Exception('Cannot set night vision: RTCVideoRenderer not initialized');
     }
 
+    if (BinaryCalls.supported) {
+      await BinaryCalls.send(BinaryCalls.encodeRendererFlag(
+          BinaryCallOp.rendererSetNightVision, textureId!, enabled));
+      return;
+    }
     await WebRTC.invokeMethod('videoRendererSetNightVision', <String, dynamic>{
       'textureId': textureId,
       'enabled': enabled,
@@ -32,6 +39,11 @@ extension RTCVideoRendererNightVision on RTCVideoRenderer {
       throw Exception('Night vision intensity must be between 0.0 and 1.0');
     }
 
+    if (BinaryCalls.supported) {
+      await BinaryCalls.send(
+          BinaryCalls.encodeRendererSetNightVisionIntensity(textureId!, intensity));
+      return;
+    }
     await WebRTC.invokeMethod('videoRendererSetNightVisionIntensity', <String, dynamic>{
       'textureId': textureId,
       'intensity': intensity,
@@ -40,6 +52,51 @@ extension RTCVideoRendererNightVision on RTCVideoRenderer {
   }
 }
 
+/// Extension methods for RTCVideoRenderer to control how frames are paced.
+extension RTCVideoRendererPacing on RTCVideoRenderer {
+  /// Android: draw at most one frame per display refresh, always the newest,
+  /// instead of drawing every frame as soon as it is decoded. Frames that are
+  /// superseded before the next refresh are released without being drawn.
+  Future<void> setVsyncPaced(bool enabled) async {
+    if (textureId == null) {
+      throw Exception('Cannot set vsync pacing: RTCVideoRenderer not initialized');
+    }
+
+    if (BinaryCalls.supported) {
+      await BinaryCalls.send(BinaryCalls.encodeRendererFlag(
+          BinaryCallOp.rendererSetVsyncPaced, textureId!, enabled));
+      return;
+    }
+    await WebRTC.invokeMethod('videoRendererSetVsyncPaced', <String, dynamic>{
+      'textureId': textureId,
+      'enabled': enabled,
+    });
+  }
+
+  /// Android: tells the renderer how its tile is shown. [width] and [height]
+  /// are on-screen physical pixels (logical size times devicePixelRatio). The
+  /// texture is sized to them, small tiles are drawn at a reduced frame rate
+  /// and nothing is drawn while [visible] is false.
+  ///
+  /// Returns `desiredWidth`, `desiredHeight` and `maxFps` (0 for no cap),
+  /// which can be used to request a matching simulcast layer.
+  Future<Map<String, dynamic>> setViewport(
+      {required int width, required int height, bool visible = true}) async {
+    if (textureId == null) {
+      throw Exception('Cannot set viewport: RTCVideoRenderer not initialized');
+    }
+
+    final response =
+        await WebRTC.invokeMethod('videoRendererSetViewport', <String, dynamic>{
+      'textureId': textureId,
+      'width': width,
+      'height': height,
+      'visible': visible,
+    });
+    return Map<String, dynamic>.from(response ?? {});
+  }
+}
+
 /// Extension methods for MediaStreamTrack to add night vision functionality
 extension MediaStreamTrackNightVision on MediaStreamTrack {
   /// Enable/disable CPU-based night vision on a local video track.
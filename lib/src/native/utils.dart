@@ -50,6 +50,23 @@ class WebRTC {
   /// "androidAudioConfiguration": an AndroidAudioConfiguration object mapped with toMap()
   ///
   /// "bypassVoiceProcessing": a boolean that bypasses the audio processing for the audio device.
+  ///
+  /// "encoderSelectionPolicy": a map choosing hardware or software video encoders per codec
+  /// and resolution tier ("low", "medium", "high", "full"). Keys: "hardwareFailureThreshold"
+  /// (failures before a codec switches to software for the session, default 3),
+  /// "allowlist"/"blocklist" (lists of rules with optional "codec", "manufacturer", "model",
+  /// "hardware" and "tiers") and "softwareTiers" (codec name to list of tiers). Codecs in
+  /// "forceSWCodecList" stay on software even when an allowlist rule matches them.
+  ///
+  /// "bitrateAdjuster": how Android hardware encoders correct the gap between the target and
+  /// the produced bitrate. Either a type name or a map with "type" and tuning values. Types:
+  /// "default" (libwebrtc vendor heuristics), "base", "framerate", "dynamic" ("adjustmentSec",
+  /// default 3) and "latencyAware" ("windowMs", default 500, and "overshootTolerance", default
+  /// 0.1), which corrects overshoot measured over short windows within a few frames.
+  ///
+  /// "videoRendererThreads": number of render threads shared by all video renderers on
+  /// Android. Each thread draws many renderers with one EGL context, which suits galleries
+  /// with many tiles. 0 (default) gives every renderer its own render thread.
   static Future<void> initialize({Map<String, dynamic>? options}) async {
     if (!initialized) {
       await _channel.invokeMethod<void>('initialize', <String, dynamic>{
@@ -0,0 +1,18 @@
+import 'package:webrtc_interface/webrtc_interface.dart';
+
+/// Candidate batching for [RTCPeerConnection].
+extension RTCPeerConnectionCandidateBatching on RTCPeerConnection {
+  Future<void> addCandidates(List<RTCIceCandidate> candidates) async {
+    for (var candidate in candidates) {
+      await addCandidate(candidate);
+    }
+  }
+}
+
+/// Diagnostics of the native event delivery of [RTCPeerConnection].
+extension RTCPeerConnectionEventStats on RTCPeerConnection {
+  Future<Map<String, dynamic>> getEventBusStats() async {
+    // Empty implementation for web
+    return <String, dynamic>{};
+  }
+}
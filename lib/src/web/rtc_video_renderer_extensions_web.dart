@@ -11,6 +11,19 @@ extension RTCVideoRendererNightVision on RTCVideoRenderer {
   }
 }
 
+/// Extension methods for RTCVideoRenderer to control how frames are paced.
+extension RTCVideoRendererPacing on RTCVideoRenderer {
+  Future<void> setVsyncPaced(bool enabled) async {
+    // Empty implementation for web
+  }
+
+  Future<Map<String, dynamic>> setViewport(
+      {required int width, required int height, bool visible = true}) async {
+    // Empty implementation for web
+    return <String, dynamic>{};
+  }
+}
+
 /// Extension methods for MediaStreamTrack to add night vision functionality
 extension MediaStreamTrackNightVision on MediaStreamTrack {
   Future<void> setNightVision(bool enabled, {String? peerConnectionId}) async {
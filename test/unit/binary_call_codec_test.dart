@@ -0,0 +1,58 @@
+import 'dart:typed_data';
+
+import 'package:flutter/services.dart';
+
+import 'package:flutter_test/flutter_test.dart';
+
+import 'package:flutter_webrtc/src/native/binary_call_codec.dart';
+
+const _peerConnectionId = '4f1c3a52-9d0e-4b8f-a1f2-6c7d8e9f0a1b';
+const _candidate =
+    'candidate:842163049 1 udp 1677729535 203.0.113.7 53705 typ srflx raddr 192.168.1.20 rport 53705 generation 0 ufrag 7Qx3 network-cost 999';
+
+void main() {
+  test('addCandidate round-trips through the binary layout', () {
+    final reader = BinaryCallReader(
+        BinaryCalls.encodeAddCandidate(_peerConnectionId, _candidate, '0', 1));
+    expect(reader.readByte(), BinaryCallOp.addCandidate);
+    expect(reader.readString(), _peerConnectionId);
+    expect(reader.readString(), _candidate);
+    expect(reader.readNullableString(), '0');
+    expect(reader.readVarint(), 1);
+    expect(reader.hasRemaining, isFalse);
+  });
+
+  test('null strings, varints, doubles and bytes round-trip', () {
+    final data = (BinaryCallWriter(BinaryCallOp.dataChannelSend)
+          ..writeNullableString(null)
+          ..writeNullableString('')
+          ..writeVarint(300)
+          ..writeVarint(0x7fffffff)
+          ..writeDouble(0.25)
+          ..writeBool(true)
+          ..writeBytes(Uint8List.fromList(List<int>.generate(200, (i) => i))))
+        .done();
+    final reader = BinaryCallReader(data);
+    expect(reader.readByte(), BinaryCallOp.dataChannelSend);
+    expect(reader.readNullableString(), isNull);
+    expect(reader.readNullableString(), '');
+    expect(reader.readVarint(), 300);
+    expect(reader.readVarint(), 0x7fffffff);
+    expect(reader.readDouble(), 0.25);
+    expect(reader.readBool(), isTrue);
+    expect(reader.readBytes(), List<int>.generate(200, (i) => i));
+    expect(reader.hasRemaining, isFalse);
+  });
+
+  test('error replies are thrown as PlatformException', () {
+    final reply = (BinaryCallWriter(3)
+          ..writeString('addCandidate')
+          ..writeString('peerConnection is null'))
+        .done();
+    expect(
+        () => BinaryCalls.decodeReply(reply),
+        throwsA(isA<PlatformException>()
+            .having((e) => e.message, 'message', 'peerConnection is null')));
+    expect(BinaryCalls.decodeReply((BinaryCallWriter(1)).done()), isTrue);
+  });
+}